@@ -0,0 +1,182 @@
+package by.project.turamyzba.events;
+
+import by.project.turamyzba.cache.AnnouncementQueryCache;
+import by.project.turamyzba.dto.requests.AnnouncementFilterRequest;
+import by.project.turamyzba.dto.responses.AnnouncementResponse;
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.readmodel.AnnouncementCardProjection;
+import by.project.turamyzba.repositories.AnnouncementRepository;
+import by.project.turamyzba.search.AnnouncementFacetIndex;
+import by.project.turamyzba.search.AnnouncementTextIndex;
+import by.project.turamyzba.search.GreatDealsIndex;
+import by.project.turamyzba.search.RelevanceIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Обработка одной пачки импорта (chunk-size строк) после коммита: индексы, карточки и кэш запросов
+ * получают событие на каждую строку против одного AnnouncementBatchChangedEvent на пачку.
+ * Индексы и карточки заранее загружены announcements объявлениями, в кэше cachedPages страниц по районам.
+ * Репозиторий - заглушка в памяти, поэтому чтение карточек в замер попадает без стоимости запроса к БД:
+ * в приложении на каждую строку добавляется еще и отдельная транзакция с запросом.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AnnouncementImportEventsBenchmark {
+    private static final int DISTRICTS = 50;
+
+    @Param("20000")
+    private int announcements;
+
+    @Param("500")
+    private int chunkSize;
+
+    @Param("1000")
+    private int cachedPages;
+
+    private final List<Announcement> rows = new ArrayList<>();
+    private AnnouncementFacetIndex facetIndex;
+    private AnnouncementTextIndex textIndex;
+    private RelevanceIndex relevanceIndex;
+    private GreatDealsIndex greatDealsIndex;
+    private AnnouncementCardProjection cardProjection;
+    private AnnouncementQueryCache queryCache;
+    private List<AnnouncementChangedEvent> chunk;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (long id = 1; id <= announcements; id++) {
+            rows.add(announcement(id));
+        }
+        AnnouncementRepository repository = repository();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        facetIndex = new AnnouncementFacetIndex(repository);
+        textIndex = new AnnouncementTextIndex(repository);
+        relevanceIndex = new RelevanceIndex(repository);
+        greatDealsIndex = new GreatDealsIndex(repository, meterRegistry);
+        cardProjection = new AnnouncementCardProjection(repository, transactionManager(), meterRegistry);
+        queryCache = new AnnouncementQueryCache(3600, cachedPages, cardProjection, meterRegistry);
+        facetIndex.rebuild();
+        textIndex.rebuild();
+        relevanceIndex.rebuild();
+        greatDealsIndex.rebuild();
+        cardProjection.rebuild();
+
+        // Пачка агентства: последние объявления одного района заново сохранены
+        chunk = rows.subList(rows.size() - chunkSize, rows.size()).stream()
+                .map(AnnouncementChangedEvent::new)
+                .toList();
+    }
+
+    // Каждый замер начинается с полного кэша: сброс страниц - часть измеряемой работы
+    @Setup(Level.Invocation)
+    public void fillCache() {
+        for (int page = 0; page < cachedPages; page++) {
+            AnnouncementFilterRequest filter = AnnouncementFilterRequest.builder()
+                    .region("Алматы")
+                    .district("Район " + page % DISTRICTS)
+                    .build();
+            List<AnnouncementResponse> content = List.of(AnnouncementResponse.builder().id((long) page + 1).build());
+            queryCache.get(AnnouncementQueryCache.key("all", filter, page), filter, () -> content);
+        }
+    }
+
+    @Benchmark
+    public void eventPerRow() {
+        for (AnnouncementChangedEvent change : chunk) {
+            facetIndex.onAnnouncementChanged(change);
+            textIndex.onAnnouncementChanged(change);
+            relevanceIndex.onAnnouncementChanged(change);
+            greatDealsIndex.onAnnouncementChanged(change);
+            cardProjection.onAnnouncementChanged(change);
+            queryCache.onAnnouncementChanged(change);
+        }
+    }
+
+    @Benchmark
+    public void eventPerChunk() {
+        AnnouncementBatchChangedEvent event = new AnnouncementBatchChangedEvent(chunk);
+        facetIndex.onAnnouncementsChanged(event);
+        textIndex.onAnnouncementsChanged(event);
+        relevanceIndex.onAnnouncementsChanged(event);
+        greatDealsIndex.onAnnouncementsChanged(event);
+        cardProjection.onAnnouncementsChanged(event);
+        queryCache.onAnnouncementsChanged(event);
+    }
+
+    private Announcement announcement(long id) {
+        return Announcement.builder()
+                .id(id)
+                .title("Комната " + id)
+                .apartmentsInfo("Светлая квартира рядом с метро, комната для студентки")
+                .selectedGender(id % 2 == 0 ? "Женский" : "Мужской")
+                .region("Алматы")
+                .district("Район " + id % DISTRICTS)
+                .cost(60_000 + (int) (id % 100) * 1_000)
+                .areaOfTheApartment(40 + (int) (id % 60))
+                .minAge(18)
+                .maxAge(35)
+                .arriveDate(LocalDate.of(2026, 9, 1))
+                .createdAt(LocalDateTime.of(2026, 1, 1, 0, 0).plusMinutes(id))
+                .updatedAt(LocalDateTime.of(2026, 1, 1, 0, 0).plusMinutes(id))
+                .isDeleted(false)
+                .isArchived(false)
+                .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private AnnouncementRepository repository() {
+        return (AnnouncementRepository) Proxy.newProxyInstance(AnnouncementRepository.class.getClassLoader(),
+                new Class<?>[]{AnnouncementRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "findActiveAfter" -> {
+                        int from = Math.toIntExact((Long) args[0]);
+                        yield rows.subList(Math.min(from, rows.size()), Math.min(from + ((Pageable) args[1]).getPageSize(), rows.size()));
+                    }
+                    case "findAllByIdInOrderByIdAsc" -> ((Collection<Long>) args[0]).stream()
+                            .sorted()
+                            .map(id -> rows.get(Math.toIntExact(id) - 1))
+                            .toList();
+                    case "countPhotos" -> List.of();
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static PlatformTransactionManager transactionManager() {
+        return new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                return new SimpleTransactionStatus();
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+            }
+        };
+    }
+}
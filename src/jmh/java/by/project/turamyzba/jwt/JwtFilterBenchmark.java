@@ -0,0 +1,103 @@
+package by.project.turamyzba.jwt;
+
+import by.project.turamyzba.services.TokenBlacklistService;
+import by.project.turamyzba.services.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость аутентификации запроса в JwtFilter.
+ * coldParse - кэш проверенных токенов выключен: каждый запрос проверяет HMAC и разбирает JSON токена.
+ * cacheHit - токен уже проверен, principal уже в PrincipalCache: SHA-256 токена и два поиска в кэшах.
+ * Черный список и БД заменены заглушками, чтобы мерить только сам фильтр.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JwtFilterBenchmark {
+    private static final String SECRET = Base64.getEncoder().encodeToString("0123456789abcdef0123456789abcdef".getBytes());
+    private static final String EMAIL = "owner@turamyzba.kz";
+
+    private final FilterChain chain = (request, response) -> {
+    };
+
+    private JwtFilter coldFilter;
+    private JwtFilter cachedFilter;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setUp() throws Exception {
+        JwtService cachingJwtService = new JwtService(SECRET, 10_000);
+        UserService userService = userService(new PrincipalCache(60, 10_000, new SimpleMeterRegistry()));
+        TokenBlacklistService blacklist = new TokenBlacklistService() {
+            @Override
+            public void addTokenToBlacklist(String token, Date expirationTime) {
+            }
+
+            @Override
+            public boolean isTokenBlacklisted(String token) {
+                return false;
+            }
+        };
+        coldFilter = new JwtFilter(new JwtService(SECRET, 0), userService, blacklist);
+        cachedFilter = new JwtFilter(cachingJwtService, userService, blacklist);
+
+        request = new MockHttpServletRequest("GET", "/api/announcement/all");
+        request.addHeader("Authorization", "Bearer " + cachingJwtService.generateTokens(EMAIL).get("accessToken"));
+        response = new MockHttpServletResponse();
+        // Прогрев кэшей для cacheHit
+        cacheHit();
+        if (cacheHit() == null) {
+            throw new IllegalStateException("Token was not accepted");
+        }
+    }
+
+    @Benchmark
+    public Authentication coldParse() throws Exception {
+        return authenticate(coldFilter);
+    }
+
+    @Benchmark
+    public Authentication cacheHit() throws Exception {
+        return authenticate(cachedFilter);
+    }
+
+    private Authentication authenticate(JwtFilter filter) throws Exception {
+        try {
+            filter.doFilterInternal(request, response, chain);
+            return SecurityContextHolder.getContext().getAuthentication();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    // Как UserServiceImpl.loadPrincipal, загрузка из БД заменена готовым principal
+    private static UserService userService(PrincipalCache principalCache) {
+        AuthenticatedUser principal = new AuthenticatedUser(7L, EMAIL, null, "Женщина", LocalDate.of(2001, 5, 12));
+        return (UserService) Proxy.newProxyInstance(UserService.class.getClassLoader(), new Class<?>[]{UserService.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("loadPrincipal")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    return principalCache.get((String) args[0], email -> principal);
+                });
+    }
+}
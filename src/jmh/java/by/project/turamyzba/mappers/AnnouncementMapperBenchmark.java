@@ -0,0 +1,99 @@
+package by.project.turamyzba.mappers;
+
+import by.project.turamyzba.dto.responses.AnnouncementResponse;
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.entities.Image;
+import by.project.turamyzba.entities.User;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость маппинга одной карточки объявления: AnnouncementMapper против прежнего ModelMapper.
+ * Объявление заполнено как типичная карточка списка: 5 фото, 3 предпочтения и владелец.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AnnouncementMapperBenchmark {
+    private ModelMapper modelMapper;
+    private Announcement announcement;
+
+    @Setup
+    public void setUp() {
+        modelMapper = new ModelMapper();
+
+        User user = new User();
+        user.setId(7L);
+        user.setFirstName("Айгерим");
+        user.setLastName("Садыкова");
+        user.setEmail("aigerim@turamyzba.kz");
+        user.setPhoneNumber("+77010000000");
+        user.setGender("Женщина");
+        user.setBirthDate(LocalDate.of(2001, 5, 12));
+
+        announcement = Announcement.builder()
+                .id(42L)
+                .title("Комната в центре")
+                .role("Житель")
+                .selectedGender("Женщина")
+                .numberOfPeopleAreYouAccommodating(2)
+                .minAge(18)
+                .maxAge(30)
+                .region("Алматы")
+                .district("Алмалинский")
+                .microDistrict("Центр")
+                .address("Абая 10")
+                .arriveDate(LocalDate.of(2024, 9, 1))
+                .cost(120_000)
+                .quantityOfRooms("2")
+                .isDepositRequired(true)
+                .deposit(60_000)
+                .arePetsAllowed(false)
+                .isCommunalServiceIncluded(true)
+                .apartmentsInfo("Светлая квартира рядом с метро")
+                .typeOfHousing("Квартира")
+                .numberOfFloor(5)
+                .maxFloorInTheBuilding(9)
+                .areaOfTheApartment(54)
+                .forALongTime(true)
+                .preferences(new ArrayList<>(List.of("Не курит", "Без животных", "Студентка")))
+                .isDeleted(false)
+                .isArchived(false)
+                .user(user)
+                .build();
+        announcement.setUpdatedAt(LocalDateTime.of(2024, 8, 20, 12, 0));
+        List<Image> photos = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            photos.add(Image.builder().id((long) i).url("https://img/42/" + i).position(i).announcement(announcement).build());
+        }
+        announcement.setPhotos(photos);
+    }
+
+    @Benchmark
+    public AnnouncementResponse announcementMapper() {
+        return AnnouncementMapper.toResponse(announcement);
+    }
+
+    // Как было в AnnouncementServiceImpl.toAnnouncementResponse до AnnouncementMapper
+    @Benchmark
+    public AnnouncementResponse modelMapper() {
+        AnnouncementResponse response = modelMapper.map(announcement, AnnouncementResponse.class);
+        response.setPhotos(announcement.getPhotos().stream()
+                .map(AnnouncementMapper::toImageResponse)
+                .toList());
+        response.setUser(AnnouncementMapper.toUserResponse(announcement.getUser()));
+        return response;
+    }
+}
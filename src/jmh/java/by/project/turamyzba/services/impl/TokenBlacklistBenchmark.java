@@ -0,0 +1,122 @@
+package by.project.turamyzba.services.impl;
+
+import by.project.turamyzba.entities.RevokedToken;
+import by.project.turamyzba.jwt.TokenDigest;
+import by.project.turamyzba.repositories.RevokedTokenRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Черный список при 1M отозванных токенов: стоимость проверки отозванного и неотозванного токена
+ * и занимаемая им память. Список загружается так же, как при старте, через pollRevocations из заглушки репозитория.
+ * Размер кучи печатается при подготовке: прирост занятой памяти после загрузки, после полной сборки мусора.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TokenBlacklistBenchmark {
+    private static final int SAMPLES = 1024;
+    // Как у настоящего access-токена HS256: около 180 символов
+    private static final String TOKEN_PREFIX = "eyJhbGciOiJIUzI1NiJ9.eyJ0eXAiOiJhY2Nlc3MiLCJzdWIiOiJvd25lckB0dXJhbXl6YmEua3oiLCJpYXQiOjE3Mj";
+
+    @Param("1000000")
+    private int revokedTokens;
+
+    private TokenBlacklistServiceImpl blacklist;
+    private final String[] revoked = new String[SAMPLES];
+    private final String[] active = new String[SAMPLES];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long before = usedHeap();
+        blacklist = new TokenBlacklistServiceImpl(1_000_000, 10_000, repository(), transactionManager(), new SimpleMeterRegistry());
+        blacklist.pollRevocations();
+        long after = usedHeap();
+        System.out.printf("%nBlacklist of %d revoked tokens: %.1f MB of heap (%.0f bytes per token)%n",
+                revokedTokens, (after - before) / 1024.0 / 1024.0, (double) (after - before) / revokedTokens);
+
+        for (int i = 0; i < SAMPLES; i++) {
+            revoked[i] = token(i * (revokedTokens / SAMPLES));
+            active[i] = token(revokedTokens + i);
+            if (!blacklist.isTokenBlacklisted(revoked[i]) || blacklist.isTokenBlacklisted(active[i])) {
+                throw new IllegalStateException("Blacklist was not loaded");
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean revokedToken() {
+        return blacklist.isTokenBlacklisted(revoked[next++ & (SAMPLES - 1)]);
+    }
+
+    @Benchmark
+    public boolean notRevokedToken() {
+        return blacklist.isTokenBlacklisted(active[next++ & (SAMPLES - 1)]);
+    }
+
+    private static String token(int i) {
+        return TOKEN_PREFIX + i + ".Xq3N0sYd8lS2vG5kP7tR1wZ9bC4mF6hJ0aE2uI8oQy";
+    }
+
+    // Строки таблицы создаются при опросе и после загрузки не удерживаются, в замер попадает только сам список
+    private RevokedTokenRepository repository() {
+        return (RevokedTokenRepository) Proxy.newProxyInstance(RevokedTokenRepository.class.getClassLoader(),
+                new Class<?>[]{RevokedTokenRepository.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("findAllByExpiresAtAfter")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    Instant revokedAt = Instant.now();
+                    Instant expiresAt = revokedAt.plus(Duration.ofDays(7));
+                    List<RevokedToken> rows = new ArrayList<>(revokedTokens);
+                    for (int i = 0; i < revokedTokens; i++) {
+                        rows.add(new RevokedToken(TokenDigest.of(token(i)).toHex(), expiresAt, revokedAt));
+                    }
+                    return rows;
+                });
+    }
+
+    private static PlatformTransactionManager transactionManager() {
+        return new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                return new SimpleTransactionStatus();
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+            }
+        };
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
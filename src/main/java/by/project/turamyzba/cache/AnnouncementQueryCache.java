@@ -0,0 +1,266 @@
+package by.project.turamyzba.cache;
+
+import by.project.turamyzba.dto.requests.AnnouncementFilterRequest;
+import by.project.turamyzba.dto.responses.AnnouncementResponse;
+import by.project.turamyzba.dto.responses.AnnouncementSliceResponse;
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.events.AnnouncementBatchChangedEvent;
+import by.project.turamyzba.events.AnnouncementChangedEvent;
+import by.project.turamyzba.events.UserProfileChangedEvent;
+import by.project.turamyzba.readmodel.AnnouncementCardProjection;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Кэш готовых страниц AnnouncementResponse для /announcement/all и /announcement/search.
+ * Кэшируются только страницы не больше limit, выдача /search без страниц идет мимо кэша.
+ * Ключ - нормализованный фильтр, сортировка, курсор/страница. Записи живут ttl и вытесняются по LRU.
+ * Одновременные промахи по одному ключу ждут одного вычисления.
+ * Изменение объявления сбрасывает только страницы, где оно было, и страницы, под фильтр которых оно теперь подходит.
+ * Правка профиля сбрасывает страницы с объявлениями этого автора: в карточках лежит его UserResponse.
+ */
+@Component
+public class AnnouncementQueryCache {
+    private final long ttlMillis;
+    private final Map<String, Entry> entries;
+    private final AnnouncementCardProjection cardProjection;
+
+    private final Counter hits;
+    private final Counter coalesced;
+    private final Counter misses;
+    private final Counter invalidations;
+
+    public AnnouncementQueryCache(@Value("${query-cache.ttl-seconds:60}") long ttlSeconds,
+                                  @Value("${query-cache.max-size:1000}") int maxSize,
+                                  AnnouncementCardProjection cardProjection,
+                                  MeterRegistry meterRegistry) {
+        this.ttlMillis = ttlSeconds * 1000;
+        this.cardProjection = cardProjection;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+        this.hits = requests(meterRegistry, "hit");
+        this.coalesced = requests(meterRegistry, "coalesced");
+        this.misses = requests(meterRegistry, "miss");
+        this.invalidations = Counter.builder("announcements.query_cache.invalidations")
+                .description("Cached announcement pages dropped because a listing or its author profile changed")
+                .register(meterRegistry);
+        Gauge.builder("announcements.query_cache.size", entries, map -> {
+            synchronized (map) {
+                return map.size();
+            }
+        }).register(meterRegistry);
+    }
+
+    /**
+     * Ключ кэша. Пустые строки фильтра считаются незаданными, как и в самих запросах.
+     */
+    public static String key(String endpoint, AnnouncementFilterRequest filter, Object... parameters) {
+        String normalizedFilter = filter == null ? "" : Stream.of(filter.getSelectedGender(), filter.getRegion(), filter.getDistrict(),
+                        filter.getMicroDistrict(), filter.getMinPrice(), filter.getMaxPrice(), filter.getNumberOfPeopleAreYouAccommodating(),
+                        filter.getQuantityOfRooms(), filter.getMinAge(), filter.getMaxAge(), filter.getArriveDate(), filter.getMinArea(),
+                        filter.getMaxArea(), filter.getNotTheFirstFloor(), filter.getNotTheTopFloor(), filter.getArePetsAllowed(),
+                        filter.getIsCommunalServiceIncluded(), filter.getIntendedForStudents(), filter.getTypeOfHousing())
+                .map(value -> value == null || "".equals(value) ? "" : value.toString())
+                .collect(Collectors.joining(","));
+        return endpoint + "?" + normalizedFilter + "|" + Stream.of(parameters)
+                .map(String::valueOf)
+                .collect(Collectors.joining("|"));
+    }
+
+    public List<AnnouncementResponse> get(String key, AnnouncementFilterRequest filter, Supplier<List<AnnouncementResponse>> loader) {
+        return get(key, filter, loader, Function.identity());
+    }
+
+    public AnnouncementSliceResponse getSlice(String key, AnnouncementFilterRequest filter, Supplier<AnnouncementSliceResponse> loader) {
+        return get(key, filter, loader, AnnouncementSliceResponse::getContent);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(String key, AnnouncementFilterRequest filter, Supplier<T> loader, Function<T, List<AnnouncementResponse>> content) {
+        Entry loading = null;
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry == null || entry.isExpired()) {
+                loading = new Entry(filter);
+                entries.put(key, loading);
+                misses.increment();
+            } else {
+                (entry.result.isDone() ? hits : coalesced).increment();
+            }
+        }
+        if (loading == null) {
+            try {
+                return (T) entry.result.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        try {
+            T value = loader.get();
+            loading.ids = content.apply(value).stream()
+                    .map(AnnouncementResponse::getId)
+                    .collect(Collectors.toSet());
+            loading.expiresAt = System.currentTimeMillis() + ttlMillis;
+            loading.result.complete(value);
+            if (loading.stale) {
+                remove(key, loading);
+            }
+            return value;
+        } catch (RuntimeException e) {
+            remove(key, loading);
+            loading.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // Последним после коммита: промах сразу после сброса должен читать уже обновленные индексы и карточки,
+    // иначе он не помечен stale и снова кэширует старую страницу на весь ttl
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAnnouncementChanged(AnnouncementChangedEvent event) {
+        invalidate(affectedBy(List.of(event)));
+    }
+
+    // Один обход кэша на всю пачку
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAnnouncementsChanged(AnnouncementBatchChangedEvent event) {
+        invalidate(affectedBy(event.getChanges()));
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserProfileChanged(UserProfileChangedEvent event) {
+        // Пока карточки не построены, объявления автора неизвестны - сбрасываем все
+        Set<Long> announcementIds = cardProjection.isReady() ? cardProjection.announcementIds(event.getUserId()) : null;
+        if (announcementIds != null && announcementIds.isEmpty()) {
+            return;
+        }
+        invalidate(entry -> announcementIds == null || entry.ids.stream().anyMatch(announcementIds::contains));
+    }
+
+    private static Predicate<Entry> affectedBy(List<AnnouncementChangedEvent> changes) {
+        Set<Long> ids = changes.stream().map(change -> change.getAnnouncement().getId()).collect(Collectors.toSet());
+        List<Announcement> active = changes.stream()
+                .filter(AnnouncementChangedEvent::isActive)
+                .map(AnnouncementChangedEvent::getAnnouncement)
+                .toList();
+        return entry -> entry.ids.stream().anyMatch(ids::contains)
+                || active.stream().anyMatch(announcement -> matches(entry.filter, announcement));
+    }
+
+    private void invalidate(Predicate<Entry> affected) {
+        synchronized (entries) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (!entry.result.isDone()) {
+                    // Неизвестно, прочитал ли запрос старую версию - результат не сохраняем
+                    entry.stale = true;
+                } else if (affected.test(entry)) {
+                    iterator.remove();
+                    invalidations.increment();
+                }
+            }
+        }
+    }
+
+    private void remove(String key, Entry entry) {
+        synchronized (entries) {
+            entries.remove(key, entry);
+        }
+    }
+
+    /**
+     * Повторяет условия filterSpecification: null в объявлении не проходит заданное условие.
+     */
+    static boolean matches(AnnouncementFilterRequest filter, Announcement announcement) {
+        if (filter == null) {
+            return true;
+        }
+        return equalsIfSet(filter.getSelectedGender(), announcement.getSelectedGender())
+                && equalsIfSet(filter.getRegion(), announcement.getRegion())
+                && equalsIfSet(filter.getDistrict(), announcement.getDistrict())
+                && equalsIfSet(filter.getMicroDistrict(), announcement.getMicroDistrict())
+                && equalsIfSet(filter.getQuantityOfRooms(), announcement.getQuantityOfRooms())
+                && equalsIfSet(filter.getTypeOfHousing(), announcement.getTypeOfHousing())
+                && equalsIfSet(filter.getNumberOfPeopleAreYouAccommodating(), announcement.getNumberOfPeopleAreYouAccommodating())
+                && equalsIfSet(filter.getArriveDate(), announcement.getArriveDate())
+                && equalsIfSet(filter.getArePetsAllowed(), announcement.getArePetsAllowed())
+                && equalsIfSet(filter.getIsCommunalServiceIncluded(), announcement.getIsCommunalServiceIncluded())
+                && equalsIfSet(filter.getIntendedForStudents(), announcement.getIntendedForStudents())
+                && atLeast(filter.getMinPrice(), announcement.getCost())
+                && atMost(filter.getMaxPrice(), announcement.getCost())
+                && atLeast(filter.getMinArea(), announcement.getAreaOfTheApartment())
+                && atMost(filter.getMaxArea(), announcement.getAreaOfTheApartment())
+                && atLeast(filter.getMinAge(), announcement.getMinAge())
+                && atMost(filter.getMaxAge(), announcement.getMaxAge())
+                && (!Boolean.TRUE.equals(filter.getNotTheFirstFloor())
+                    || announcement.getNumberOfFloor() != null && announcement.getNumberOfFloor() > 1)
+                && (!Boolean.TRUE.equals(filter.getNotTheTopFloor())
+                    || announcement.getNumberOfFloor() != null && announcement.getMaxFloorInTheBuilding() != null
+                       && announcement.getNumberOfFloor() < announcement.getMaxFloorInTheBuilding());
+    }
+
+    private static boolean equalsIfSet(Object expected, Object actual) {
+        return expected == null || "".equals(expected) || Objects.equals(expected, actual);
+    }
+
+    private static boolean atLeast(Integer min, Integer actual) {
+        return min == null || actual != null && actual >= min;
+    }
+
+    private static boolean atMost(Integer max, Integer actual) {
+        return max == null || actual != null && actual <= max;
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("announcements.query_cache.requests")
+                .description("Announcement list requests by cache outcome")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static class Entry {
+        private final AnnouncementFilterRequest filter;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        private volatile Set<Long> ids = new HashSet<>();
+        private volatile long expiresAt = Long.MAX_VALUE;
+        private volatile boolean stale;
+
+        private Entry(AnnouncementFilterRequest filter) {
+            this.filter = filter;
+        }
+
+        private boolean isExpired() {
+            return result.isDone() && (System.currentTimeMillis() > expiresAt || result.isCompletedExceptionally());
+        }
+    }
+}
@@ -1,14 +1,22 @@
 package by.project.turamyzba.config;
 
+import by.project.turamyzba.http.OutboundHttpClientFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.web.client.RestTemplate;
 
 @Configuration
 public class ApiConfig {
 
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    @Primary
+    public RestTemplate restTemplate(OutboundHttpClientFactory httpClientFactory) {
+        return httpClientFactory.create("default");
+    }
+
+    @Bean
+    public RestTemplate geocodingRestTemplate(OutboundHttpClientFactory httpClientFactory) {
+        return httpClientFactory.create("2gis");
     }
 }
@@ -0,0 +1,32 @@
+package by.project.turamyzba.config;
+
+import by.project.turamyzba.repositories.AnnouncementRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Переносит старые строковые координаты coordsX/coordsY в числовые latitude/longitude.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class CoordinatesBackfill implements CommandLineRunner {
+
+    private final AnnouncementRepository announcementRepository;
+
+    @Override
+    @Transactional
+    public void run(String... args) {
+        try {
+            int updated = announcementRepository.backfillCoordinates();
+            if (updated > 0) {
+                log.info("Backfilled numeric coordinates for {} announcements", updated);
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to backfill numeric coordinates: {}", e.getMessage());
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package by.project.turamyzba.config;
 
 import by.project.turamyzba.services.UserService;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -10,6 +11,7 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 
+@Slf4j
 @Component
 public class CustomAuthenticationProvider implements AuthenticationProvider {
     private final UserService userService;
@@ -29,6 +31,15 @@ public class CustomAuthenticationProvider implements AuthenticationProvider {
         String password = authentication.getCredentials().toString();
 
         if (user.getUsername().equals(username) && passwordEncoder.matches(password , user.getPassword())){
+            // Пароль известен только сейчас: если стоимость BCrypt поменялась, перехешируем сохраненный хеш
+            if (passwordEncoder.upgradeEncoding(user.getPassword())) {
+                try {
+                    userService.upgradePasswordHash(username, password);
+                } catch (RuntimeException e) {
+                    // Вход уже прошел, старый хеш остается рабочим - попробуем при следующем входе
+                    log.warn("Failed to rehash password for {}: {}", username, e.getMessage());
+                }
+            }
             return new UsernamePasswordAuthenticationToken(user.getUsername(), user.getPassword(), user.getAuthorities());
         }else{
             throw new BadCredentialsException("Incorrect Email or password");
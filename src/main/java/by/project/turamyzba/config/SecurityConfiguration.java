@@ -1,9 +1,16 @@
 package by.project.turamyzba.config;
 
 import by.project.turamyzba.jwt.JwtFilter;
+import by.project.turamyzba.ratelimit.ClientIpResolver;
+import by.project.turamyzba.ratelimit.RateLimitFilter;
+import by.project.turamyzba.ratelimit.RateLimitRule;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
@@ -14,7 +21,9 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.List;
 
 @EnableWebSecurity
 @Configuration
@@ -22,6 +31,8 @@ import java.util.Arrays;
 public class SecurityConfiguration {
     private final JwtFilter jwtFilter;
     private final CustomAuthenticationProvider customAuthenticationProvider;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
 
     private static final String[] WHITE_LIST_URL = {
             "/v2/api-docs",
@@ -39,6 +50,24 @@ public class SecurityConfiguration {
             "/announcement/great-deals"
     };
 
+    // Лимиты по IP и по email из тела: вход и коды подтверждения перебирают, регистрация и письма стоят BCrypt и SMTP
+    private static final List<RateLimitRule> RATE_LIMITS = List.of(
+            RateLimitRule.builder().method(HttpMethod.POST).path("/auth/login")
+                    .ipLimit(30).emailLimit(10).emailWindow(Duration.ofMinutes(5)).build(),
+            RateLimitRule.builder().method(HttpMethod.POST).path("/auth/signup")
+                    .ipLimit(10).ipWindow(Duration.ofHours(1)).emailLimit(3).emailWindow(Duration.ofHours(1)).build(),
+            RateLimitRule.builder().method(HttpMethod.POST).path("/auth/resendCode")
+                    .ipLimit(10).ipWindow(Duration.ofHours(1)).emailLimit(3).emailWindow(Duration.ofMinutes(10)).build(),
+            RateLimitRule.builder().method(HttpMethod.POST).path("/auth/forgot-password")
+                    .ipLimit(10).ipWindow(Duration.ofHours(1)).emailLimit(3).emailWindow(Duration.ofMinutes(10)).build(),
+            RateLimitRule.builder().method(HttpMethod.POST).path("/auth/verify-email")
+                    .ipLimit(30).emailLimit(10).emailWindow(Duration.ofMinutes(10)).build(),
+            RateLimitRule.builder().method(HttpMethod.POST).path("/auth/verify-code")
+                    .ipLimit(30).emailLimit(10).emailWindow(Duration.ofMinutes(10)).build(),
+            RateLimitRule.builder().method(HttpMethod.GET).path("/announcement/all")
+                    .ipLimit(120).build()
+    );
+
     @Bean
     public CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration corsConfig = new CorsConfiguration();
@@ -54,8 +83,11 @@ public class SecurityConfiguration {
         return source;
     }
 
+    // trustedProxies - прокси, чьему X-Forwarded-For верит лимит по IP; по умолчанию локальные и частные сети
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http,
+                                                   @Value("${rate-limit.trusted-proxies:127.0.0.0/8,::1,10.0.0.0/8,172.16.0.0/12,192.168.0.0/16}")
+                                                   List<String> trustedProxies) throws Exception {
         http.csrf(AbstractHttpConfigurer::disable)
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .authorizeHttpRequests(auth -> auth
@@ -64,7 +96,9 @@ public class SecurityConfiguration {
                 )
                 .sessionManagement(req -> req.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authenticationProvider(customAuthenticationProvider)
-                .addFilterBefore(jwtFilter, UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(jwtFilter, UsernamePasswordAuthenticationFilter.class)
+                .addFilterBefore(new RateLimitFilter(RATE_LIMITS, Duration.ofSeconds(30),
+                        new ClientIpResolver(trustedProxies), objectMapper, meterRegistry), JwtFilter.class);
 
         return http.build();
     }
@@ -0,0 +1,62 @@
+package by.project.turamyzba.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Переход с IDENTITY на последовательности: создает последовательности, если схемой управляют не через Hibernate,
+ * и сдвигает их за максимальный существующий id, чтобы новые id не пересеклись со старыми.
+ * Шаг последовательности должен совпадать с allocationSize в @SequenceGenerator.
+ * Выполняется до создания EntityManagerFactory (см. JpaBatchingConfig), ошибка останавливает запуск:
+ * иначе первые вставки получили бы уже занятые id.
+ */
+@Slf4j
+@Component
+public class SequenceAlignment implements InitializingBean {
+    private static final int ALLOCATION_SIZE = 50;
+    private static final Map<String, String> SEQUENCES = Map.of(
+            "announcements_seq", "announcements",
+            "images_seq", "images",
+            "users_seq", "users",
+            "user_answer_seq", "user_answer",
+            "announcement_user_seq", "announcement_user");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SequenceAlignment(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        SEQUENCES.forEach((sequence, table) -> {
+            try {
+                align(sequence, table);
+            } catch (DataAccessException e) {
+                throw new IllegalStateException("Failed to align sequence " + sequence + " with table " + table, e);
+            }
+        });
+    }
+
+    private void align(String sequence, String table) {
+        // Новая база: таблицы и последовательности создаст Hibernate, сдвигать нечего
+        Integer tables = jdbcTemplate.queryForObject("select count(*) from information_schema.tables " +
+                "where table_schema = current_schema() and table_name = ?", Integer.class, table);
+        if (tables == null || tables == 0) {
+            return;
+        }
+        jdbcTemplate.execute("create sequence if not exists " + sequence + " increment by " + ALLOCATION_SIZE);
+        // pooled-оптимизатор выдает id из (last_value - шаг, last_value], поэтому last_value = max(id) безопасен
+        List<?> aligned = jdbcTemplate.queryForList("select setval('" + sequence + "', (select max(id) from " + table + ")) " +
+                "where (select max(id) from " + table + ") >= (select last_value from " + sequence + ")");
+        if (!aligned.isEmpty()) {
+            log.info("Moved sequence {} past existing ids of {}", sequence, table);
+        }
+    }
+}
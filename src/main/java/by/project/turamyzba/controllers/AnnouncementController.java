@@ -1,32 +1,66 @@
 package by.project.turamyzba.controllers;
 
+import by.project.turamyzba.cache.AnnouncementQueryCache;
 import by.project.turamyzba.dto.requests.AnnouncementFilterRequest;
 import by.project.turamyzba.dto.requests.AnnouncementRequest;
+import by.project.turamyzba.dto.requests.GeoSearchRequest;
 import by.project.turamyzba.dto.responses.AnnouncementResponse;
-import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.dto.responses.AnnouncementSliceResponse;
+import by.project.turamyzba.dto.responses.BulkImportResponse;
+import by.project.turamyzba.jwt.AuthenticatedUser;
+import by.project.turamyzba.search.AnnouncementTileIndex;
+import by.project.turamyzba.search.GreatDealsIndex;
+import by.project.turamyzba.services.AnnouncementImportService;
 import by.project.turamyzba.services.AnnouncementService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.apache.coyote.BadRequestException;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/announcement")
 @RequiredArgsConstructor
 public class AnnouncementController {
+    private static final String RELEVANCE_SORT = "Самые подходящие";
+    // Короткий max-age, дальше браузер или CDN переспрашивают с If-None-Match и получают 304
+    private static final CacheControl PUBLIC_CACHE = CacheControl.maxAge(Duration.ofSeconds(30)).cachePublic();
+    private static final CacheControl PRIVATE_CACHE = CacheControl.maxAge(Duration.ofSeconds(30)).cachePrivate();
+    private static final int STREAM_FLUSH_EVERY = 100;
+    private static final int MAX_LIMIT = 100;
+    // Дальше страницы не листают, а top-K индексов держит в памяти offset + limit записей
+    private static final int MAX_PAGE = 1000;
+
     private final AnnouncementService announcementService;
+    private final AnnouncementImportService importService;
+    private final AnnouncementQueryCache queryCache;
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/create")
     @Operation(
@@ -50,10 +84,23 @@ public class AnnouncementController {
     }
 
 
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    @Operation(summary = "Объявлениелерди коптеп жуктеу", description = "Content-Type: text/csv немесе application/x-ndjson. " +
+            "CSV биринши жолы - AnnouncementRequest полелеринин аттары, images пен preferences | аркылы жазылады. " +
+            "NDJSON - бир жолда бир AnnouncementRequest. Ар жол бойынша нетиже кайтарады: imported, announcementId немесе errors. " +
+            "Координаттар кейин фонда аныкталады.")
+    public ResponseEntity<BulkImportResponse> importAnnouncements(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                                  HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(importService.importAnnouncements(request.getInputStream(), contentType));
+    }
+
     @GetMapping("/all")
-    @Operation(summary = "Барлык объявлениелерди алу.", description = "По дефолту 41 объявление береди. Показать еще баскан кезде" +
-            "page ди инкремент жасап обратно осы эндпоинтка жибересиндер. sort ка дал дизайнда тургандай жибересиндер например Самые подходящие деп ешкандай ошибкасыз")
-    public ResponseEntity<List<AnnouncementResponse>> findRoommates(
+    @Operation(summary = "Барлык объявлениелерди алу.", description = "По дефолту 41 объявление береди, limit 1 ден " + MAX_LIMIT + " ге дейин, page 1 ден " + MAX_PAGE + " ге дейин. Показать еще баскан кезде" +
+            "page ди инкремент жасап обратно осы эндпоинтка жибересиндер. sort ка дал дизайнда тургандай жибересиндер например Самые подходящие деп ешкандай ошибкасыз. " +
+            "cursor жибересендер (биринши странице ушин бос cursor=) курсорлык режим косылады: content, nextCursor, hasNext кайтарады, " +
+            "келеси страница ушин nextCursor ды жибересиндер, page керек емес. Самые подходящие свежесть, баганын аудан медианасына " +
+            "катынасы, фото саны, толтырылуы жане колданушынын жынысы мен жасы бойынша сортталады.")
+    public ResponseEntity<?> findRoommates(
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(defaultValue = "41") int limit,
             @RequestParam(required = false) String region,
@@ -61,30 +108,71 @@ public class AnnouncementController {
             @RequestParam(required = false) Integer maxPrice,
             @RequestParam(required = false) String gender,
             @RequestParam(required = false) Integer roommatesCount,
-            @RequestParam(required = false, defaultValue = "Самые подходящие") String sort) {
+            @RequestParam(required = false, defaultValue = RELEVANCE_SORT) String sort,
+            @RequestParam(required = false) String cursor,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        if (!isValidLimit(limit)) {
+            return invalidLimit();
+        }
+        if (!isValidPage(page)) {
+            return invalidPage();
+        }
         Sort sortBy = getSort(sort);
+        AnnouncementFilterRequest filter = AnnouncementFilterRequest.builder()
+                .region(region)
+                .minPrice(minPrice)
+                .maxPrice(maxPrice)
+                .selectedGender(gender)
+                .numberOfPeopleAreYouAccommodating(roommatesCount)
+                .build();
 
-        Pageable pageable = PageRequest.of(page - 1, limit, sortBy);
-        Page<Announcement> roommatePage;
+        // С токеном выдача может быть персональной, ее нельзя отдавать из общих кэшей,
+        // а анонимную страницу из кэша нельзя отдавать запросу с токеном - поэтому Vary: Authorization
+        CacheControl cacheControl = user == null ? PUBLIC_CACHE : PRIVATE_CACHE;
 
-        if (region != null || minPrice != null || maxPrice != null || gender != null || roommatesCount != null) {
-            roommatePage = announcementService.searchRoommateListings(region, minPrice, maxPrice, gender, roommatesCount, pageable);
-        } else {
-            roommatePage = announcementService.getAllRoommateListings(pageable);
+        if (cursor != null) {
+            AnnouncementSliceResponse slice = queryCache.getSlice(AnnouncementQueryCache.key("all", filter, "sort=" + sort, "cursor=" + cursor, "limit=" + limit), filter,
+                    () -> announcementService.scrollRoommateListings(region, minPrice, maxPrice, gender, roommatesCount, sortBy, cursor, limit));
+            return conditional(slice, slice.getContent(), cacheControl, HttpHeaders.AUTHORIZATION);
         }
 
-        List<AnnouncementResponse> announcementResponses = roommatePage.getContent().stream()
-                .map(announcementService::toAnnouncementResponse)
-                .collect(Collectors.toList());
+        if (RELEVANCE_SORT.equals(sort)) {
+            // Порядок зависит от пола и возраста пользователя
+            String profile = user == null ? null : user.getGender() + "/" + user.getBirthDate();
+            List<AnnouncementResponse> announcementResponses = queryCache.get(AnnouncementQueryCache.key("all", filter, "sort=" + sort, "page=" + page, "limit=" + limit, "profile=" + profile), filter,
+                    () -> announcementService.getRelevantRoommateListings(region, minPrice, maxPrice, gender, roommatesCount,
+                            PageRequest.of(page - 1, limit)));
+            return conditional(announcementResponses, announcementResponses, cacheControl, HttpHeaders.AUTHORIZATION);
+        }
 
-        return ResponseEntity.ok(announcementResponses);
+        List<AnnouncementResponse> announcementResponses = queryCache.get(AnnouncementQueryCache.key("all", filter, "sort=" + sort, "page=" + page, "limit=" + limit), filter,
+                () -> announcementService.getRoommateListings(region, minPrice, maxPrice, gender, roommatesCount,
+                        PageRequest.of(page - 1, limit, sortBy)));
+        return conditional(announcementResponses, announcementResponses, cacheControl, HttpHeaders.AUTHORIZATION);
+    }
+
+    private static boolean isValidLimit(int limit) {
+        return limit >= 1 && limit <= MAX_LIMIT;
+    }
+
+    private static ResponseEntity<String> invalidLimit() {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("limit must be from 1 to " + MAX_LIMIT);
     }
+
+    private static boolean isValidPage(int page) {
+        return page >= 1 && page <= MAX_PAGE;
+    }
+
+    private static ResponseEntity<String> invalidPage() {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("page must be from 1 to " + MAX_PAGE);
+    }
+
     private Sort getSort(String sort) {
         return switch (sort) {
             case "По возрастанию цены" -> Sort.by(Sort.Order.asc("cost")); // по возрастанию цены
             case "По убыванию цены" -> Sort.by(Sort.Order.desc("cost")); // по убыванию цены
             case "По новизне" -> Sort.by(Sort.Order.desc("arriveDate")); // по дате (новизне), по убыванию
-            case "Самые подходящие" -> Sort.by(Sort.Order.desc("arriveDate"));
+            case RELEVANCE_SORT -> Sort.by(Sort.Order.desc("arriveDate")); // только для курсорного режима, страницы сортирует RelevanceIndex
             default -> Sort.by(Sort.Order.desc("arriveDate")); // по умолчанию сортировка по новизне (убывание)
         };
     }
@@ -92,7 +180,16 @@ public class AnnouncementController {
     @GetMapping("/detail/{id}")
     @Operation(summary = "Объявление детально алу.", description = "Барлык объявление алган кезде ар объявлениенин айдишкасыда барады" +
             " вот сол айдишканы осы эндпоинт жибересиндер детально алу ушин.")
-    public ResponseEntity<AnnouncementResponse> detail(@PathVariable Long id) {
+    public ResponseEntity<AnnouncementResponse> detail(@PathVariable Long id, WebRequest webRequest) {
+        // Сначала сверяем только updatedAt объявления и автора, объявление с фото и пользователем грузим если они изменились
+        Optional<Instant> version = announcementService.getAnnouncementVersion(id);
+        if (version.isPresent()) {
+            String eTag = "\"" + id + "-" + version.get().toEpochMilli() + "\"";
+            if (webRequest.checkNotModified(eTag, version.get().toEpochMilli())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(PUBLIC_CACHE).build();
+            }
+            return ResponseEntity.ok().cacheControl(PUBLIC_CACHE).body(announcementService.getAnnouncementById(id));
+        }
         return ResponseEntity.ok(announcementService.getAnnouncementById(id));
     }
 
@@ -132,31 +229,134 @@ public class AnnouncementController {
     }
 
     @GetMapping("/great-deals")
-    @Operation(summary = "Выгодные предложения", description = "Пока что чисто по возрастнию цены объявлениелер кайтарады 10 штук.")
-    public ResponseEntity<List<AnnouncementResponse>> greatDeals() {
-        Sort sortBy = getSort("По возрастанию цены");
-        Pageable pageable = PageRequest.of(0, 10, sortBy);
-        Page<Announcement> roommatePage = announcementService.getAllRoommateListings(pageable);
-        List<AnnouncementResponse> announcementResponses = roommatePage.getContent().stream()
-                .map(announcementService::toAnnouncementResponse)
-                .collect(Collectors.toList());
+    @Operation(summary = "Выгодные предложения", description = "Аудандагы 1 м² баганын медианасынан ен коп арзан объявлениелер, " +
+            "скидкасы бойынша сортталган. Default 10 штук, limit максимум " + GreatDealsIndex.RANKING_SIZE + ".")
+    public ResponseEntity<List<AnnouncementResponse>> greatDeals(@RequestParam(defaultValue = "10") int limit) {
+        List<AnnouncementResponse> announcementResponses = announcementService
+                .getGreatDeals(Math.max(1, Math.min(limit, GreatDealsIndex.RANKING_SIZE)));
 
-        return ResponseEntity.ok(announcementResponses);
+        return conditional(announcementResponses, announcementResponses, PUBLIC_CACHE);
     }
 
     @GetMapping("/search")
-    @Operation(summary = "Фильтр")
-    public ResponseEntity<List<AnnouncementResponse>> getFilteredAnnouncements(@RequestBody AnnouncementFilterRequest request) {
-        List<AnnouncementResponse> announcementResponses = announcementService.getFilteredAnnouncements(request).stream()
-                .map(announcementService::toAnnouncementResponse)
-                .collect(Collectors.toList());
+    @Operation(summary = "Фильтр", description = "cursor жибересендер (биринши странице ушин бос cursor=) нетиже limit бойынша " +
+            "беттелип content, nextCursor, hasNext кайтарады. q жибересендер title мен apartmentsInfo бойынша толык матин " +
+            "издейди, нетиже релевантность бойынша сортталады, page (1 ден " + MAX_PAGE + " ге дейин) пен limit аркылы беттеледи.")
+    public ResponseEntity<?> getFilteredAnnouncements(@RequestBody AnnouncementFilterRequest request,
+                                                      @RequestParam(required = false) String q,
+                                                      @RequestParam(required = false) String cursor,
+                                                      @RequestParam(defaultValue = "1") int page,
+                                                      @RequestParam(defaultValue = "41") int limit,
+                                                      @RequestParam(required = false, defaultValue = RELEVANCE_SORT) String sort) {
+        if (!isValidLimit(limit)) {
+            return invalidLimit();
+        }
+        if (q != null && !q.isBlank()) {
+            if (!isValidPage(page)) {
+                return invalidPage();
+            }
+            // Текст запроса при инвалидации не проверяется: сбрасываем по фильтру, это с запасом
+            String query = q.trim().toLowerCase(Locale.ROOT);
+            return ResponseEntity.ok(queryCache.get(AnnouncementQueryCache.key("search", request, "q=" + query, "page=" + page, "limit=" + limit), request,
+                    () -> announcementService.searchAnnouncements(request, q, PageRequest.of(page - 1, limit))));
+        }
+        if (cursor != null) {
+            return ResponseEntity.ok(queryCache.getSlice(AnnouncementQueryCache.key("search", request, "sort=" + sort, "cursor=" + cursor, "limit=" + limit), request,
+                    () -> announcementService.scrollFilteredAnnouncements(request, getSort(sort), cursor, limit)));
+        }
+        // Выдача без страниц может занимать заметную часть таблицы, в кэше таких копий было бы до max-size
+        return ResponseEntity.ok(announcementService.getFilteredAnnouncements(request));
+    }
+
+    @GetMapping(value = "/search", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Фильтр агынмен", description = "Accept: application/x-ndjson деп жибересендер фильтрдин барлык нетижеси " +
+            "бир жолда бир объявление болып агынмен келеди, сервер жадында барин жинамайды. Кез келген жерде токтатуга болады.")
+    public void streamFilteredAnnouncements(@RequestBody AnnouncementFilterRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        OutputStream outputStream = response.getOutputStream();
+        int[] written = {0};
+        announcementService.streamFilteredAnnouncements(request, announcement -> {
+            try {
+                outputStream.write(objectMapper.writeValueAsBytes(announcement));
+                outputStream.write('\n');
+                if (++written[0] % STREAM_FLUSH_EVERY == 0) {
+                    outputStream.flush();
+                }
+            } catch (IOException e) {
+                // Клиент закрыл соединение - прерываем чтение курсора
+                throw new UncheckedIOException(e);
+            }
+        });
+        outputStream.flush();
+    }
+
+    @GetMapping("/nearby")
+    @Operation(summary = "Картадагы объявлениелер", description = "latitude, longitude, radiusKm жибересендер радиус ишиндегилерди " +
+            "жакынырагынан бастап кайтарады. Картанын коринетин болиги ушин minLatitude, minLongitude, maxLatitude, maxLongitude жибересиндер. " +
+            "Body ге фильтрди косуга болады.")
+    public ResponseEntity<?> findNearby(@RequestBody(required = false) AnnouncementFilterRequest request,
+                                        GeoSearchRequest geo,
+                                        @RequestParam(defaultValue = "1") int page,
+                                        @RequestParam(defaultValue = "41") int limit) {
+        if (!geo.isValid()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Either latitude, longitude and radiusKm or a full bounding box is required");
+        }
+        if (!isValidLimit(limit)) {
+            return invalidLimit();
+        }
+        if (!isValidPage(page)) {
+            return invalidPage();
+        }
+        List<AnnouncementResponse> announcementResponses = announcementService
+                .findNearby(request != null ? request : new AnnouncementFilterRequest(), geo, PageRequest.of(page - 1, limit));
         return ResponseEntity.ok(announcementResponses);
     }
 
+    @GetMapping("/tiles/{zoom}/{x}/{y}")
+    @Operation(summary = "Карта кластерлери", description = "Web Mercator тайлы z/x/y ушин кластерлерди кайтарады: " +
+            "count, latitude/longitude (центроид), minCost, maxCost. Кластерде бир объявление болса announcementId толтырылады.")
+    public ResponseEntity<?> getTileClusters(@PathVariable int zoom, @PathVariable int x, @PathVariable int y) {
+        if (!AnnouncementTileIndex.isValidTile(zoom, x, y)) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Tile is out of range, zoom must be from 0 to " + AnnouncementTileIndex.MAX_ZOOM);
+        }
+        return ResponseEntity.ok(announcementService.getTileClusters(zoom, x, y));
+    }
+
     @PutMapping("/update/{id}")
     @Operation(summary = "Update an announcement", description = "Updates an announcement with provided parameters.")
     public ResponseEntity<AnnouncementResponse> updateAnnouncement(@PathVariable Long id, @RequestBody @Valid AnnouncementRequest announcementRequest) {
         AnnouncementResponse announcementResponse = announcementService.updateAnnouncement(id, announcementRequest);
         return ResponseEntity.ok(announcementResponse);
     }
+
+    /**
+     * Ответ со списком и ETag по id и updatedAt объявлений страницы и по профилям их авторов.
+     * При совпадении с If-None-Match Spring сам отдает 304 без тела.
+     * @param vary заголовки запроса, от которых зависит тело ответа.
+     */
+    private <T> ResponseEntity<T> conditional(T body, List<AnnouncementResponse> content, CacheControl cacheControl, String... vary) {
+        long maxUpdatedAt = 0;
+        int hash = 1;
+        for (AnnouncementResponse response : content) {
+            long updatedAt = response.getUpdatedAt() != null ? toEpochMilli(response.getUpdatedAt()) : 0;
+            maxUpdatedAt = Math.max(maxUpdatedAt, updatedAt);
+            hash = 31 * hash + Long.hashCode(response.getId());
+            // Правка профиля автора не меняет updatedAt объявления, но меняет карточку
+            hash = 31 * hash + Objects.hashCode(response.getUser());
+        }
+        // Кроме max(updatedAt) учитываем состав страницы: удаление объявления max не меняет
+        String eTag = "\"" + content.size() + "-" + maxUpdatedAt + "-" + Integer.toHexString(hash) + "\"";
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(eTag).cacheControl(cacheControl);
+        if (vary.length > 0) {
+            response.varyBy(vary);
+        }
+        return response.body(body);
+    }
+
+    private static long toEpochMilli(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
 }
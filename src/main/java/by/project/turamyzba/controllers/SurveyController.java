@@ -2,13 +2,11 @@ package by.project.turamyzba.controllers;
 
 import by.project.turamyzba.dto.responses.QuestionDTO;
 import by.project.turamyzba.dto.responses.UserAnswerDTO;
-import by.project.turamyzba.entities.User;
 import by.project.turamyzba.services.SurveyService;
 import by.project.turamyzba.services.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -27,9 +25,7 @@ public class SurveyController {
     @PostMapping("/submit")
     @Operation(summary = "Барлык анкетаны толтырып жиберу", description = "Суракпен тандаган жауапты жибересиндер")
     public ResponseEntity<String> submitAnswers(@RequestBody List<UserAnswerDTO> userAnswers) {
-        User user = userService.getUserByEmail(userService.getCurrentUser().getUsername())
-                .orElseThrow(() -> new UsernameNotFoundException("User not found!"));
-        surveyService.saveUserAnswers(user, userAnswers);
+        surveyService.saveUserAnswers(userService.getCurrentUserId(), userAnswers);
         return ResponseEntity.ok("Answers submitted successfully!");
     }
 
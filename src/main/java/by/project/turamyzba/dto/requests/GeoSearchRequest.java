@@ -0,0 +1,40 @@
+package by.project.turamyzba.dto.requests;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GeoSearchRequest {
+    // Центр и радиус ("рядом со мной")
+    private Double latitude;
+    private Double longitude;
+    private Double radiusKm;
+    // Видимая область карты
+    private Double minLatitude;
+    private Double minLongitude;
+    private Double maxLatitude;
+    private Double maxLongitude;
+    private Boolean sortByDistance;
+
+    public boolean hasCenter() {
+        return latitude != null && longitude != null;
+    }
+
+    public boolean hasRadius() {
+        return hasCenter() && radiusKm != null && radiusKm > 0;
+    }
+
+    public boolean hasBoundingBox() {
+        return minLatitude != null && minLongitude != null && maxLatitude != null && maxLongitude != null
+                && minLatitude <= maxLatitude && minLongitude <= maxLongitude;
+    }
+
+    public boolean isValid() {
+        return hasRadius() || hasBoundingBox();
+    }
+}
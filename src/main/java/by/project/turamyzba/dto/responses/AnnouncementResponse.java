@@ -1,11 +1,13 @@
 package by.project.turamyzba.dto.responses;
 
+import by.project.turamyzba.entities.GeocodeStatus;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -93,7 +95,11 @@ public class AnnouncementResponse {
 
     private String coordsY;
 
+    private GeocodeStatus geocodeStatus;
+
     private List<ImageResponse> photos;
 
     private UserResponse user;
+
+    private LocalDateTime updatedAt;
 }
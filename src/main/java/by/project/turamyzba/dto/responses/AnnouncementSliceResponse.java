@@ -0,0 +1,20 @@
+package by.project.turamyzba.dto.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class AnnouncementSliceResponse {
+    private List<AnnouncementResponse> content;
+
+    private String nextCursor;
+
+    private Boolean hasNext;
+}
@@ -0,0 +1,22 @@
+package by.project.turamyzba.dto.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BulkImportResponse {
+    private Integer total;
+
+    private Integer imported;
+
+    private Integer failed;
+
+    private List<BulkImportRowResult> rows;
+}
@@ -0,0 +1,23 @@
+package by.project.turamyzba.dto.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BulkImportRowResult {
+    // Номер записи в файле, без строки заголовка CSV
+    private Integer row;
+
+    private Boolean imported;
+
+    private Long announcementId;
+
+    private List<String> errors;
+}
@@ -0,0 +1,24 @@
+package by.project.turamyzba.dto.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class TileClusterResponse {
+    private Double latitude;
+
+    private Double longitude;
+
+    private Integer count;
+
+    private Integer minCost;
+
+    private Integer maxCost;
+
+    private Long announcementId;
+}
@@ -6,6 +6,8 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -15,11 +17,19 @@ import java.util.List;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name = "announcements")
+@DynamicUpdate
+@Table(name = "announcements", indexes = {
+        @Index(name = "idx_announcements_cost_id", columnList = "cost, id"),
+        @Index(name = "idx_announcements_arrive_data_id", columnList = "arrive_data, id"),
+        @Index(name = "idx_announcements_lat_lon", columnList = "latitude, longitude"),
+        @Index(name = "idx_announcements_geocode_pending", columnList = "geocode_status, geocode_next_attempt_at"),
+        @Index(name = "idx_announcements_updated_at", columnList = "updated_at")
+})
 @Builder
 public class Announcement {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "announcements_seq")
+    @SequenceGenerator(name = "announcements_seq", sequenceName = "announcements_seq", allocationSize = 50)
     private Long id;
     @Column(name = "role")
     private String role;
@@ -70,6 +80,8 @@ public class Announcement {
     @Column(name = "apartments_info")
     private String apartmentsInfo;
     @OneToMany(mappedBy = "announcement", cascade = CascadeType.ALL, orphanRemoval = true)
+    @BatchSize(size = 50)
+    @OrderBy("position ASC, id ASC")
     private List<Image> photos;
     @Column(name = "type_of_housing")
     private String typeOfHousing;
@@ -99,11 +111,23 @@ public class Announcement {
     @ElementCollection
     @CollectionTable(name = "advertisement_preferences", joinColumns = @JoinColumn(name = "advertisement_id"))
     @Column(name = "preference")
+    @BatchSize(size = 50)
     private List<String> preferences;
     @Column(name = "coordsX")
     private String coordsX;
     @Column(name = "coordsY")
     private String coordsY;
+    @Column(name = "latitude")
+    private Double latitude;
+    @Column(name = "longitude")
+    private Double longitude;
+    @Enumerated(EnumType.STRING)
+    @Column(name = "geocode_status")
+    private GeocodeStatus geocodeStatus;
+    @Column(name = "geocode_attempts")
+    private Integer geocodeAttempts;
+    @Column(name = "geocode_next_attempt_at")
+    private LocalDateTime geocodeNextAttemptAt;
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
     @Column(name = "updated_at")
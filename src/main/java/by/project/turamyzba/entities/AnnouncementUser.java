@@ -8,7 +8,8 @@ import lombok.Data;
 @Table(name = "announcement_user")
 public class AnnouncementUser {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "announcement_user_seq")
+    @SequenceGenerator(name = "announcement_user_seq", sequenceName = "announcement_user_seq", allocationSize = 50)
     @Column(name = "id")
     private Long id;
     @Column(name = "is_active")
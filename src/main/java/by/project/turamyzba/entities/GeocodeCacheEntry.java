@@ -0,0 +1,30 @@
+package by.project.turamyzba.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "geocode_cache")
+@Builder
+public class GeocodeCacheEntry {
+    @Id
+    @Column(name = "address", length = 1000)
+    private String address;
+
+    @Column(name = "latitude", nullable = false)
+    private String latitude;
+
+    @Column(name = "longitude", nullable = false)
+    private String longitude;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,8 @@
+package by.project.turamyzba.entities;
+
+/**
+ * Состояние координат объявления. У старых записей статуса нет - их координаты уже заполнены при создании.
+ */
+public enum GeocodeStatus {
+    PENDING, RESOLVED, FAILED
+}
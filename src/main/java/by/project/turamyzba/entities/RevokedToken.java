@@ -0,0 +1,36 @@
+package by.project.turamyzba.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "revoked_tokens", indexes = {
+        @Index(name = "idx_revoked_tokens_revoked_at", columnList = "revoked_at"),
+        @Index(name = "idx_revoked_tokens_expires_at", columnList = "expires_at")
+})
+@Builder
+public class RevokedToken {
+    // TokenDigest в hex: сам токен в БД не хранится
+    @Id
+    @Column(name = "token_digest", length = 32)
+    private String tokenDigest;
+
+    // timestamptz в UTC: экземпляры в разных часовых поясах сравнивают одно и то же время
+    @Column(name = "expires_at", nullable = false)
+    @JdbcTypeCode(SqlTypes.TIMESTAMP_UTC)
+    private Instant expiresAt;
+
+    @Column(name = "revoked_at", nullable = false)
+    @JdbcTypeCode(SqlTypes.TIMESTAMP_UTC)
+    private Instant revokedAt;
+}
@@ -9,7 +9,8 @@ import lombok.Data;
 @Data
 public class UserAnswer {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_answer_seq")
+    @SequenceGenerator(name = "user_answer_seq", sequenceName = "user_answer_seq", allocationSize = 50)
     private Long id;
     @ManyToOne
     @JoinColumn(name = "user_id")
@@ -0,0 +1,17 @@
+package by.project.turamyzba.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Публикуется вместо AnnouncementChangedEvent на каждую строку, когда одна транзакция меняет много объявлений
+ * (пачка импорта, изменения других экземпляров). Слушатели применяют всю пачку за один проход:
+ * одна блокировка индекса, одно чтение карточек, один обход кэша запросов.
+ */
+@Getter
+@AllArgsConstructor
+public class AnnouncementBatchChangedEvent {
+    private final List<AnnouncementChangedEvent> changes;
+}
@@ -0,0 +1,121 @@
+package by.project.turamyzba.events;
+
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.repositories.AnnouncementRepository;
+import by.project.turamyzba.repositories.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Доставляет изменения, сделанные другими экземплярами приложения.
+ * Индексы, карточки и кэш запросов живут в памяти каждого экземпляра и обновляются по AnnouncementChangedEvent
+ * и UserProfileChangedEvent, которые публикуются только там, где прошел коммит. Раз в poll-ms экземпляр забирает
+ * объявления и профили с updatedAt после прошлого опроса (с запасом pollOverlap на отставание часов и долгие
+ * транзакции) и публикует по ним AnnouncementBatchChangedEvent и UserProfileChangedEvent. Версии, которые экземпляр уже применил, повторно не публикуются.
+ */
+@Slf4j
+@Component
+public class AnnouncementChangeFeed {
+    private final AnnouncementRepository announcementRepository;
+    private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Duration pollOverlap;
+    private final Timer propagationLag;
+    // Изменения до старта подхватит полная загрузка индексов и карточек
+    private volatile Instant lastPolledAt = Instant.now();
+    private final Map<Long, LocalDateTime> appliedAnnouncements = new ConcurrentHashMap<>();
+    private final Map<Long, Instant> appliedProfiles = new ConcurrentHashMap<>();
+
+    public AnnouncementChangeFeed(@Value("${announcements.change-feed.poll-overlap-ms:10000}") long pollOverlapMs,
+                                  AnnouncementRepository announcementRepository,
+                                  UserRepository userRepository,
+                                  ApplicationEventPublisher eventPublisher,
+                                  MeterRegistry meterRegistry) {
+        this.pollOverlap = Duration.ofMillis(pollOverlapMs);
+        this.announcementRepository = announcementRepository;
+        this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
+        this.propagationLag = Timer.builder("announcements.change_feed.propagation_lag")
+                .description("Time from a change on another instance until this instance publishes it")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    // Свои изменения этот экземпляр уже применил после коммита
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAnnouncementChanged(AnnouncementChangedEvent event) {
+        remember(event.getAnnouncement());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAnnouncementsChanged(AnnouncementBatchChangedEvent event) {
+        event.getChanges().forEach(change -> remember(change.getAnnouncement()));
+    }
+
+    private void remember(Announcement announcement) {
+        if (announcement.getUpdatedAt() != null) {
+            appliedAnnouncements.put(announcement.getId(), announcement.getUpdatedAt());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${announcements.change-feed.poll-ms:2000}")
+    public void poll() {
+        Instant startedAt = Instant.now();
+        Instant since = lastPolledAt.minus(pollOverlap);
+        LocalDateTime announcementsSince = LocalDateTime.ofInstant(since, ZoneId.systemDefault());
+        List<Announcement> announcements;
+        List<Object[]> profiles;
+        try {
+            announcements = announcementRepository.findAllUpdatedAfter(announcementsSince);
+            profiles = userRepository.findVersionsUpdatedAfter(since);
+        } catch (RuntimeException e) {
+            log.error("Failed to poll announcement changes: {}", e.getMessage());
+            return;
+        }
+        List<AnnouncementChangedEvent> changes = new ArrayList<>();
+        for (Announcement announcement : announcements) {
+            LocalDateTime updatedAt = announcement.getUpdatedAt();
+            if (updatedAt.equals(appliedAnnouncements.put(announcement.getId(), updatedAt))) {
+                continue;
+            }
+            changes.add(new AnnouncementChangedEvent(announcement));
+            recordLag(updatedAt.atZone(ZoneId.systemDefault()).toInstant());
+        }
+        if (!changes.isEmpty()) {
+            eventPublisher.publishEvent(new AnnouncementBatchChangedEvent(changes));
+        }
+        // Версия в UserProfileChangedEvent не передается, поэтому свое изменение профиля опрос опубликует еще раз
+        for (Object[] row : profiles) {
+            Long userId = (Long) row[0];
+            Instant updatedAt = (Instant) row[1];
+            if (updatedAt.equals(appliedProfiles.put(userId, updatedAt))) {
+                continue;
+            }
+            eventPublisher.publishEvent(new UserProfileChangedEvent(userId));
+            recordLag(updatedAt);
+        }
+        // Версии старше окна опроса в выборку больше не попадут
+        appliedAnnouncements.values().removeIf(updatedAt -> updatedAt.isBefore(announcementsSince));
+        appliedProfiles.values().removeIf(updatedAt -> updatedAt.isBefore(since));
+        lastPolledAt = startedAt;
+    }
+
+    private void recordLag(Instant updatedAt) {
+        propagationLag.record(Duration.between(updatedAt, Instant.now()).abs());
+    }
+}
@@ -0,0 +1,19 @@
+package by.project.turamyzba.events;
+
+import by.project.turamyzba.entities.Announcement;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Публикуется после сохранения объявления (создание, обновление, архивация, восстановление, удаление).
+ * Слушатели получают его после коммита транзакции и обновляют свои in-memory структуры.
+ */
+@Getter
+@AllArgsConstructor
+public class AnnouncementChangedEvent {
+    private final Announcement announcement;
+
+    public boolean isActive() {
+        return !Boolean.TRUE.equals(announcement.getIsDeleted()) && !Boolean.TRUE.equals(announcement.getIsArchived());
+    }
+}
@@ -0,0 +1,13 @@
+package by.project.turamyzba.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Публикуется после смены пароля пользователя. Закэшированный principal с прежним хешем пароля больше не годится.
+ */
+@Getter
+@AllArgsConstructor
+public class UserAccountChangedEvent {
+    private final Long userId;
+}
@@ -0,0 +1,14 @@
+package by.project.turamyzba.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Публикуется после изменения публичного профиля пользователя (имя, фамилия, фото).
+ * Эти поля копируются в карточки его объявлений, поэтому карточки нужно перечитать.
+ */
+@Getter
+@AllArgsConstructor
+public class UserProfileChangedEvent {
+    private final Long userId;
+}
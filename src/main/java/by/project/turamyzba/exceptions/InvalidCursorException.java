@@ -0,0 +1,7 @@
+package by.project.turamyzba.exceptions;
+
+public class InvalidCursorException extends RuntimeException {
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+}
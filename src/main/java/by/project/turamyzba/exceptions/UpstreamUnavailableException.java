@@ -0,0 +1,9 @@
+package by.project.turamyzba.exceptions;
+
+import org.springframework.web.client.RestClientException;
+
+public class UpstreamUnavailableException extends RestClientException {
+    public UpstreamUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,46 @@
+package by.project.turamyzba.http;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Крайний срок для исходящих вызовов текущего потока.
+ * Вложенный within() может только сократить срок, но не продлить его.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class Deadline {
+    private static final ThreadLocal<Long> EXPIRES_AT = new ThreadLocal<>();
+
+    public static <T> T within(Duration budget, Supplier<T> call) {
+        Long previous = EXPIRES_AT.get();
+        long expiresAt = System.nanoTime() + budget.toNanos();
+        if (previous != null && previous - expiresAt < 0) {
+            expiresAt = previous;
+        }
+        EXPIRES_AT.set(expiresAt);
+        try {
+            return call.get();
+        } finally {
+            if (previous == null) {
+                EXPIRES_AT.remove();
+            } else {
+                EXPIRES_AT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Оставшееся время, но не больше fallback. Без заданного срока возвращает fallback.
+     */
+    public static Duration remaining(Duration fallback) {
+        Long expiresAt = EXPIRES_AT.get();
+        if (expiresAt == null) {
+            return fallback;
+        }
+        long left = Math.max(0, expiresAt - System.nanoTime());
+        return left < fallback.toNanos() ? Duration.ofNanos(left) : fallback;
+    }
+}
@@ -0,0 +1,66 @@
+package by.project.turamyzba.http;
+
+import org.apache.hc.core5.concurrent.Cancellable;
+
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Срок на весь обмен с внешним сервисом, включая чтение тела.
+ * Таймаут ответа HttpClient ограничивает только одно чтение сокета, поэтому тело, которое отдается
+ * по байту, может читаться сколько угодно. По истечении срока запрос прерывается, чтение падает.
+ * Запрос создается в том же потоке внутри execution.execute(), поэтому передается через ThreadLocal.
+ */
+class ExchangeTimeout {
+    private static final ThreadLocal<ExchangeTimeout> CURRENT = new ThreadLocal<>();
+
+    private final ScheduledFuture<?> timer;
+    private volatile Cancellable request;
+    private volatile boolean expired;
+
+    private ExchangeTimeout(ScheduledExecutorService scheduler, Duration remaining) {
+        this.timer = scheduler.schedule(this::expire, remaining.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /** Запускает отсчет для вызова в текущем потоке, запрос привяжет attach(). */
+    static ExchangeTimeout start(ScheduledExecutorService scheduler, Duration remaining) {
+        ExchangeTimeout timeout = new ExchangeTimeout(scheduler, remaining);
+        CURRENT.set(timeout);
+        return timeout;
+    }
+
+    /** Вызывается фабрикой запросов: без start() в этом потоке ничего не делает. */
+    static void attach(Cancellable request) {
+        ExchangeTimeout timeout = CURRENT.get();
+        if (timeout != null) {
+            timeout.request = request;
+            if (timeout.expired) {
+                request.cancel();
+            }
+        }
+    }
+
+    /** Запрос уже создан, дальше обмен идет через ответ. */
+    void detach() {
+        CURRENT.remove();
+    }
+
+    boolean isExpired() {
+        return expired;
+    }
+
+    /** Обмен завершен, прерывать нечего. */
+    void cancel() {
+        timer.cancel(false);
+    }
+
+    private void expire() {
+        expired = true;
+        Cancellable current = request;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package by.project.turamyzba.http;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * RestTemplate для внешних сервисов поверх одного пула keep-alive соединений.
+ * У каждого upstream свои срок вызова, bulkhead, circuit breaker и метрики, настройки берутся из
+ * http.client.upstreams.&lt;имя&gt;.*. Автоматические повторы отключены: повторяет вызывающий код.
+ */
+@Component
+public class OutboundHttpClientFactory implements DisposableBean {
+    private static final String UPSTREAM_PREFIX = "http.client.upstreams.";
+
+    private final CloseableHttpClient httpClient;
+    // Прерывает обмены, которые не уложились в срок, в том числе на чтении тела
+    private final ScheduledExecutorService exchangeTimeouts = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "http-client-deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+
+    public OutboundHttpClientFactory(@Value("${http.client.max-connections:200}") int maxConnections,
+                                     @Value("${http.client.max-connections-per-route:50}") int maxConnectionsPerRoute,
+                                     @Value("${http.client.connect-timeout-ms:2000}") long connectTimeoutMs,
+                                     @Value("${http.client.idle-timeout-seconds:30}") long idleTimeoutSeconds,
+                                     Environment environment,
+                                     MeterRegistry meterRegistry) {
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(maxConnections)
+                        .setMaxConnPerRoute(maxConnectionsPerRoute)
+                        .setDefaultConnectionConfig(ConnectionConfig.custom()
+                                .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                                .setValidateAfterInactivity(TimeValue.ofSeconds(idleTimeoutSeconds / 2))
+                                .build())
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(idleTimeoutSeconds))
+                .disableAutomaticRetries()
+                .build();
+    }
+
+    public RestTemplate create(String upstream) {
+        Duration timeout = Duration.ofMillis(property(upstream, "timeout-ms", 5000));
+        CircuitBreaker circuitBreaker = new CircuitBreaker(
+                (int) property(upstream, "failure-threshold", 5),
+                Duration.ofMillis(property(upstream, "open-ms", 30_000)));
+
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient) {
+            @Override
+            protected void postProcessHttpRequest(ClassicHttpRequest request) {
+                if (request instanceof HttpUriRequestBase cancellable) {
+                    ExchangeTimeout.attach(cancellable);
+                }
+            }
+        };
+        // Ожидание соединения из пула и чтение ответа укладываются в оставшийся срок вызова
+        requestFactory.setHttpContextFactory((method, uri) -> {
+            Timeout remaining = Timeout.ofMilliseconds(Math.max(1, Deadline.remaining(timeout).toMillis()));
+            HttpClientContext context = HttpClientContext.create();
+            context.setRequestConfig(RequestConfig.custom()
+                    .setConnectionRequestTimeout(remaining)
+                    .setResponseTimeout(remaining)
+                    .build());
+            return context;
+        });
+
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        restTemplate.getInterceptors().add(new UpstreamGuardInterceptor(upstream, timeout,
+                (int) property(upstream, "max-concurrent", 20),
+                Duration.ofMillis(property(upstream, "bulkhead-wait-ms", 100)),
+                circuitBreaker, exchangeTimeouts, meterRegistry));
+        return restTemplate;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        exchangeTimeouts.shutdownNow();
+        httpClient.close();
+    }
+
+    private long property(String upstream, String name, long defaultValue) {
+        return environment.getProperty(UPSTREAM_PREFIX + upstream + "." + name, Long.class, defaultValue);
+    }
+}
@@ -0,0 +1,216 @@
+package by.project.turamyzba.http;
+
+import by.project.turamyzba.exceptions.UpstreamUnavailableException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Защита одного внешнего сервиса: проверка срока, circuit breaker, bulkhead на число одновременных вызовов
+ * и гистограмма задержек по исходу. Разрешение bulkhead и срок вызова действуют до закрытия ответа,
+ * то есть и на время чтения тела.
+ */
+class UpstreamGuardInterceptor implements ClientHttpRequestInterceptor {
+    private final String upstream;
+    private final Duration timeout;
+    private final Duration bulkheadWait;
+    private final Semaphore bulkhead;
+    private final CircuitBreaker circuitBreaker;
+    private final ScheduledExecutorService exchangeTimeouts;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    UpstreamGuardInterceptor(String upstream, Duration timeout, int maxConcurrent, Duration bulkheadWait,
+                             CircuitBreaker circuitBreaker, ScheduledExecutorService exchangeTimeouts, MeterRegistry meterRegistry) {
+        this.upstream = upstream;
+        this.timeout = timeout;
+        this.bulkheadWait = bulkheadWait;
+        this.bulkhead = new Semaphore(maxConcurrent);
+        this.circuitBreaker = circuitBreaker;
+        this.exchangeTimeouts = exchangeTimeouts;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("http.client.upstream.in_flight", bulkhead, semaphore -> maxConcurrent - semaphore.availablePermits())
+                .description("Outbound calls currently holding a bulkhead permit")
+                .tag("upstream", upstream)
+                .register(meterRegistry);
+        Gauge.builder("http.client.upstream.circuit_state", circuitBreaker, breaker -> breaker.state().ordinal())
+                .description("Circuit breaker state: 0 closed, 1 half-open, 2 open")
+                .tag("upstream", upstream)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        long start = System.nanoTime();
+        if (Deadline.remaining(timeout).isZero()) {
+            record("deadline_exceeded", start);
+            throw new UpstreamUnavailableException(upstream + ": deadline exceeded before the call");
+        }
+        if (!circuitBreaker.tryAcquire()) {
+            record("circuit_open", start);
+            throw new UpstreamUnavailableException(upstream + ": circuit breaker is open");
+        }
+        if (!acquireBulkhead()) {
+            circuitBreaker.release();
+            record("bulkhead_full", start);
+            throw new UpstreamUnavailableException(upstream + ": too many concurrent calls");
+        }
+
+        ExchangeTimeout exchangeTimeout = ExchangeTimeout.start(exchangeTimeouts, Deadline.remaining(timeout));
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+        } catch (IOException | RuntimeException e) {
+            exchangeTimeout.cancel();
+            bulkhead.release();
+            circuitBreaker.onFailure();
+            if (exchangeTimeout.isExpired() && !(e instanceof SocketTimeoutException)) {
+                record("timeout", start);
+                throw expired(e);
+            }
+            record(e instanceof SocketTimeoutException ? "timeout" : "io_error", start);
+            throw e;
+        } finally {
+            exchangeTimeout.detach();
+        }
+
+        HttpStatusCode status = response.getStatusCode();
+        // 4xx - ошибка запроса, а не недоступность сервиса, цепь не размыкает
+        if (status.is5xxServerError()) {
+            circuitBreaker.onFailure();
+        } else {
+            circuitBreaker.onSuccess();
+        }
+        String outcome = status.is5xxServerError() ? "server_error" : status.is4xxClientError() ? "client_error" : "success";
+        return new GuardedResponse(response, outcome, start, exchangeTimeout);
+    }
+
+    private SocketTimeoutException expired(Exception cause) {
+        SocketTimeoutException e = new SocketTimeoutException(upstream + ": deadline exceeded during the call");
+        e.initCause(cause);
+        return e;
+    }
+
+    private boolean acquireBulkhead() throws InterruptedIOException {
+        Duration wait = Deadline.remaining(bulkheadWait);
+        try {
+            return bulkhead.tryAcquire(wait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + upstream + " bulkhead");
+        }
+    }
+
+    private void record(String outcome, long start) {
+        timers.computeIfAbsent(outcome, key -> Timer.builder("http.client.upstream.requests")
+                        .description("Outbound call latency by upstream and outcome")
+                        .tag("upstream", upstream)
+                        .tag("outcome", key)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry))
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private class GuardedResponse implements ClientHttpResponse {
+        private final ClientHttpResponse delegate;
+        private final String outcome;
+        private final long start;
+        private final ExchangeTimeout exchangeTimeout;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private GuardedResponse(ClientHttpResponse delegate, String outcome, long start, ExchangeTimeout exchangeTimeout) {
+            this.delegate = delegate;
+            this.outcome = outcome;
+            this.start = start;
+            this.exchangeTimeout = exchangeTimeout;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return new DeadlineInputStream(delegate.getBody());
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                exchangeTimeout.cancel();
+                try {
+                    delegate.close();
+                } finally {
+                    bulkhead.release();
+                    if (exchangeTimeout.isExpired()) {
+                        circuitBreaker.onFailure();
+                    }
+                    record(exchangeTimeout.isExpired() ? "timeout" : outcome, start);
+                }
+            }
+        }
+
+        // После прерывания запроса чтение падает с ошибкой сокета, вызывающему отдаем таймаут
+        private class DeadlineInputStream extends FilterInputStream {
+            private DeadlineInputStream(InputStream in) {
+                super(in);
+            }
+
+            @Override
+            public int read() throws IOException {
+                checkDeadline();
+                try {
+                    return super.read();
+                } catch (IOException e) {
+                    throw exchangeTimeout.isExpired() ? expired(e) : e;
+                }
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                checkDeadline();
+                try {
+                    return super.read(buffer, offset, length);
+                } catch (IOException e) {
+                    throw exchangeTimeout.isExpired() ? expired(e) : e;
+                }
+            }
+
+            private void checkDeadline() throws SocketTimeoutException {
+                if (exchangeTimeout.isExpired()) {
+                    throw new SocketTimeoutException(upstream + ": deadline exceeded while reading the response");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package by.project.turamyzba.jwt;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Principal запроса: то, что сервисам нужно о текущем пользователе без повторного похода в БД.
+ * Кладется в SecurityContext фильтром, кэшируется в PrincipalCache.
+ */
+@Getter
+@AllArgsConstructor
+public class AuthenticatedUser implements UserDetails {
+    private final Long id;
+    private final String email;
+    private final String password;
+    private final String gender;
+    private final LocalDate birthDate;
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return Collections.emptyList();
+    }
+}
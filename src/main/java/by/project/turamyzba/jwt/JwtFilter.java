@@ -56,13 +56,14 @@ public class JwtFilter extends OncePerRequestFilter {
                     response.getWriter().write("Token is invalid (logged out)");
                     return;
                 }
-                // Извлекаем имя пользователя, используя токен
-                String username = jwtService.extractUsername(token);
+                // Подпись и срок проверяются один раз, дальше работаем с уже разобранными claims
+                JwtService.VerifiedToken verifiedToken = jwtService.verify(token);
+                String username = verifiedToken.username();
                 if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                    // Загружаем userDetails для дальнейшей валидации
-                    UserDetails userDetails = userService.loadUserByUsername(username);
+                    // Principal из кэша, БД читается не чаще раза в TTL
+                    UserDetails userDetails = userService.loadPrincipal(username);
                     // Проверяем валидность токена
-                    if (jwtService.validateToken(token, userDetails)) {
+                    if (jwtService.validateToken(verifiedToken, userDetails)) {
                         UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                                 userDetails,
                                 null,
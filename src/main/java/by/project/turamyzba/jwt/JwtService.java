@@ -1,27 +1,72 @@
 package by.project.turamyzba.jwt;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.annotation.Bean;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 
 import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.function.Function;
 
 @Component
 public class JwtService {
-    @Value("${jwt.secret}")
-    private String secret;
+    // Ключ и парсер неизменяемы и потокобезопасны, строятся один раз
+    private final Key signKey;
+    private final JwtParser parser;
+    // Уже проверенные токены до их exp: ключ - SHA-256 токена, сам токен в памяти не храним
+    private final Map<TokenDigest, VerifiedToken> verified;
+
+    public JwtService(@Value("${jwt.secret}") String secret,
+                      @Value("${jwt.verified-cache-size:10000}") int verifiedCacheSize) {
+        this.signKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
+        this.parser = Jwts.parserBuilder().setSigningKey(signKey).build();
+        this.verified = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<TokenDigest, VerifiedToken> eldest) {
+                return size() > verifiedCacheSize;
+            }
+        };
+    }
+
+    /**
+     * Проверяет подпись и срок токена. Токен разбирается один раз, повторные запросы с ним же
+     * до истечения exp берутся из кэша без HMAC и разбора JSON.
+     * Ошибки разбора и истекший токен - исключения JwtException, как у extractClaim.
+     */
+    public VerifiedToken verify(String token) {
+        TokenDigest key = TokenDigest.of(token);
+        VerifiedToken cached;
+        synchronized (verified) {
+            cached = verified.get(key);
+        }
+        if (cached != null) {
+            if (!cached.isExpired()) {
+                return cached;
+            }
+            synchronized (verified) {
+                verified.remove(key);
+            }
+        }
+
+        Claims claims = extractAllClaims(token);
+        VerifiedToken result = new VerifiedToken(claims.getSubject(), claims.get("typ", String.class), claims.getExpiration());
+        // Токен без exp не кэшируем: ему не от чего отсчитать время жизни записи
+        if (result.expiration() != null) {
+            synchronized (verified) {
+                verified.put(key, result);
+            }
+        }
+        return result;
+    }
 
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
@@ -47,7 +92,7 @@ public class JwtService {
                 .setSubject(userName)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + validity))
-                .signWith(getSignKey(), SignatureAlgorithm.HS256)
+                .signWith(signKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
@@ -62,12 +107,7 @@ public class JwtService {
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts
-                .parserBuilder()
-                .setSigningKey(getSignKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return parser.parseClaimsJws(token).getBody();
     }
 
     public Boolean isTokenExpired(String token) {
@@ -75,24 +115,21 @@ public class JwtService {
     }
 
     public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        String tokenType = extractClaim(token, claims -> claims.get("typ", String.class));
+        return validateToken(verify(token), userDetails);
+    }
 
-        return username.equals(userDetails.getUsername()) && !isTokenExpired(token)
-                && "access".equals(tokenType);
+    public Boolean validateToken(VerifiedToken token, UserDetails userDetails) {
+        return token.username().equals(userDetails.getUsername()) && !token.isExpired()
+                && "access".equals(token.type());
     }
 
 
     public Boolean validateRefreshToken(String token) {
         return !isTokenExpired(token);
     }
-    private Key getSignKey() {
-        byte[] keyBytes= Decoders.BASE64.decode(secret);
-        return Keys.hmacShaKeyFor(keyBytes);
-    }
-
-    @Bean
-    public PasswordEncoder passwordEncoder(){
-        return new BCryptPasswordEncoder();
+    public record VerifiedToken(String username, String type, Date expiration) {
+        public boolean isExpired() {
+            return expiration != null && expiration.before(new Date());
+        }
     }
 }
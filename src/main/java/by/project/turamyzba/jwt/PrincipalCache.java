@@ -0,0 +1,92 @@
+package by.project.turamyzba.jwt;
+
+import by.project.turamyzba.events.UserAccountChangedEvent;
+import by.project.turamyzba.events.UserProfileChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Principal по email с коротким TTL, чтобы фильтр не читал пользователя из БД на каждый запрос.
+ * После коммита правки профиля или пароля запись пользователя сбрасывается сразу, не дожидаясь TTL.
+ */
+@Component
+public class PrincipalCache {
+    private final long ttlNanos;
+    private final Map<String, Entry> entries;
+    // Растет при каждом сбросе: загрузка, начатая до сброса, свой результат в кэш не кладет
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public PrincipalCache(@Value("${auth.principal-cache.ttl-seconds:60}") long ttlSeconds,
+                          @Value("${auth.principal-cache.size:10000}") int maxSize,
+                          MeterRegistry meterRegistry) {
+        this.ttlNanos = Duration.ofSeconds(ttlSeconds).toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+        this.hits = lookups(meterRegistry, "hit");
+        this.misses = lookups(meterRegistry, "miss");
+    }
+
+    public AuthenticatedUser get(String email, Function<String, AuthenticatedUser> loader) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(email);
+        }
+        if (entry != null && System.nanoTime() - entry.loadedAt < ttlNanos) {
+            hits.increment();
+            return entry.principal;
+        }
+
+        misses.increment();
+        long generation = invalidations.get();
+        AuthenticatedUser principal = loader.apply(email);
+        synchronized (entries) {
+            if (invalidations.get() == generation) {
+                entries.put(email, new Entry(principal, System.nanoTime()));
+            }
+        }
+        return principal;
+    }
+
+    public void invalidate(Long userId) {
+        synchronized (entries) {
+            invalidations.incrementAndGet();
+            entries.values().removeIf(entry -> entry.principal.getId().equals(userId));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserProfileChanged(UserProfileChangedEvent event) {
+        invalidate(event.getUserId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserAccountChanged(UserAccountChangedEvent event) {
+        invalidate(event.getUserId());
+    }
+
+    private static Counter lookups(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("auth.principal.cache")
+                .description("Principal lookups by outcome")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private record Entry(AuthenticatedUser principal, long loadedAt) {
+    }
+}
@@ -0,0 +1,54 @@
+package by.project.turamyzba.jwt;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom-фильтр по TokenDigest. mightContain = false означает, что дайджест точно не добавлялся.
+ * Биты выставляются атомарно, добавление и проверка идут без блокировок. Удаления нет:
+ * устаревший фильтр заменяют новым, построенным по живым записям.
+ */
+public final class TokenBloomFilter {
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    public TokenBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bits = new AtomicLongArray(Math.toIntExact((m + 63) / 64));
+        this.bitCount = (long) bits.length() * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+    }
+
+    public void add(TokenDigest digest) {
+        // Дайджест уже равномерно распределен: индексы по схеме Кирша-Митценмахера из двух его половин
+        long combined = digest.high();
+        for (int i = 0; i < hashCount; i++) {
+            long index = Math.floorMod(combined, bitCount);
+            long mask = 1L << index;
+            int word = (int) (index >>> 6);
+            long current;
+            do {
+                current = bits.get(word);
+            } while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+            combined += digest.low();
+        }
+    }
+
+    public boolean mightContain(TokenDigest digest) {
+        long combined = digest.high();
+        for (int i = 0; i < hashCount; i++) {
+            long index = Math.floorMod(combined, bitCount);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+            combined += digest.low();
+        }
+        return true;
+    }
+
+    /** Размер массива битов в байтах. */
+    public long sizeInBytes() {
+        return bitCount / 8;
+    }
+}
@@ -0,0 +1,30 @@
+package by.project.turamyzba.jwt;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Первые 128 бит SHA-256 токена. Ключ фиксированного размера для кэшей и черного списка:
+ * сам токен в памяти не хранится, а случайное совпадение двух токенов практически исключено.
+ */
+public record TokenDigest(long high, long low) {
+
+    public static TokenDigest of(String token) {
+        try {
+            ByteBuffer hash = ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+            return new TokenDigest(hash.getLong(), hash.getLong());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public static TokenDigest fromHex(String hex) {
+        return new TokenDigest(Long.parseUnsignedLong(hex.substring(0, 16), 16), Long.parseUnsignedLong(hex.substring(16, 32), 16));
+    }
+
+    public String toHex() {
+        return String.format("%016x%016x", high, low);
+    }
+}
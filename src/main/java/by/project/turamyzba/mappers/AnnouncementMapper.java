@@ -1,18 +1,29 @@
 package by.project.turamyzba.mappers;
 
 import by.project.turamyzba.dto.requests.AnnouncementRequest;
+import by.project.turamyzba.dto.responses.AnnouncementResponse;
 import by.project.turamyzba.dto.responses.ImageResponse;
 import by.project.turamyzba.dto.responses.UserResponse;
 import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.entities.GeocodeStatus;
 import by.project.turamyzba.entities.Image;
 import by.project.turamyzba.entities.User;
 
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class AnnouncementMapper {
 
-    public static Announcement toEntity(AnnouncementRequest request, String[] coords) {
+    public static Announcement toEntity(AnnouncementRequest request) {
         return Announcement.builder()
                 .title(request.getTitle())
                 .role(request.getRole())
@@ -49,8 +60,6 @@ public class AnnouncementMapper {
 //                .phoneNumbers(request.getPhoneNumbers()) // Список телефонов
 //                .residents(request.getResidents()) // Map "имя - телефон"
                 .preferences(request.getPreferences()) // Список предпочтений
-                .coordsX(coords != null && coords.length > 0 ? coords[0] : null) // Проверяем, что координаты не пустые
-                .coordsY(coords != null && coords.length > 1 ? coords[1] : null) // Проверяем, что координаты не пустые
                 .isDeleted(false) // Устанавливаем флаг удаления в false
                 .isArchived(false) // По умолчанию архивным не является
                 .build();
@@ -63,15 +72,136 @@ public class AnnouncementMapper {
         }
 
         List<Image> images = new ArrayList<>();
-        for (String imageUrl : imageUrls) {
+        for (int i = 0; i < imageUrls.size(); i++) {
             images.add(Image.builder()
-                    .url(imageUrl)
+                    .url(imageUrls.get(i))
+                    .position(i)
                     .announcement(announcement)
                     .build());
         }
         return images;
     }
 
+    /**
+     * Приводит фото объявления к списку imageUrls, сравнивая по url: существующие строки сохраняются
+     * и только меняют position, новые добавляются, лишние удаляются через orphanRemoval.
+     * Коллекция не подменяется. Возвращает true, если что-то изменилось.
+     */
+    public static boolean updatePhotos(Announcement announcement, List<String> imageUrls) {
+        if (announcement.getPhotos() == null) {
+            announcement.setPhotos(new ArrayList<>());
+        }
+        List<Image> photos = announcement.getPhotos();
+        List<String> urls = imageUrls == null ? List.of() : imageUrls;
+
+        Map<String, Deque<Image>> existing = new HashMap<>();
+        for (Image image : photos) {
+            existing.computeIfAbsent(image.getUrl(), url -> new ArrayDeque<>()).add(image);
+        }
+
+        boolean changed = false;
+        List<Image> reconciled = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            Deque<Image> sameUrl = existing.get(urls.get(i));
+            Image image = sameUrl == null ? null : sameUrl.poll();
+            if (image == null) {
+                image = Image.builder().url(urls.get(i)).announcement(announcement).build();
+                changed = true;
+            }
+            if (!Integer.valueOf(i).equals(image.getPosition())) {
+                image.setPosition(i);
+                changed = true;
+            }
+            reconciled.add(image);
+        }
+
+        // Сравнение по ссылке: equals у сущностей с @Data рекурсивно обходит связи
+        Set<Image> keep = Collections.newSetFromMap(new IdentityHashMap<>());
+        keep.addAll(reconciled);
+        changed |= photos.removeIf(image -> !keep.contains(image));
+        if (!changed) {
+            return false;
+        }
+        for (Image image : reconciled) {
+            if (image.getId() == null) {
+                photos.add(image);
+            }
+        }
+        photos.sort(Comparator.comparing(Image::getPosition));
+        return true;
+    }
+
+    public static AnnouncementResponse toResponse(Announcement announcement) {
+        List<ImageResponse> photos = new ArrayList<>();
+        if (announcement.getPhotos() != null) {
+            for (Image image : announcement.getPhotos()) {
+                photos.add(toImageResponse(image));
+            }
+        }
+
+        return AnnouncementResponse.builder()
+                .id(announcement.getId())
+                .role(announcement.getRole())
+                .title(announcement.getTitle())
+                .selectedGender(announcement.getSelectedGender())
+                .doYouLiveInThisHouse(announcement.getDoYouLiveInThisHouse())
+                .howManyPeopleLiveInThisApartment(announcement.getHowManyPeopleLiveInThisApartment())
+                .numberOfPeopleAreYouAccommodating(announcement.getNumberOfPeopleAreYouAccommodating())
+                .minAge(announcement.getMinAge())
+                .maxAge(announcement.getMaxAge())
+                .region(announcement.getRegion())
+                .district(announcement.getDistrict())
+                .microDistrict(announcement.getMicroDistrict())
+                .address(announcement.getAddress())
+                .arriveDate(announcement.getArriveDate())
+                .cost(announcement.getCost())
+                .quantityOfRooms(announcement.getQuantityOfRooms())
+                .isDepositRequired(announcement.getIsDepositRequired())
+                .deposit(announcement.getDeposit())
+                .arePetsAllowed(announcement.getArePetsAllowed())
+                .isCommunalServiceIncluded(announcement.getIsCommunalServiceIncluded())
+                .minAmountOfCommunalService(announcement.getMinAmountOfCommunalService())
+                .maxAmountOfCommunalService(announcement.getMaxAmountOfCommunalService())
+                .intendedForStudents(announcement.getIntendedForStudents())
+                .areBadHabitsAllowed(announcement.getAreBadHabitsAllowed())
+                .apartmentsInfo(announcement.getApartmentsInfo())
+                .typeOfHousing(announcement.getTypeOfHousing())
+                .numberOfFloor(announcement.getNumberOfFloor())
+                .maxFloorInTheBuilding(announcement.getMaxFloorInTheBuilding())
+                .areaOfTheApartment(announcement.getAreaOfTheApartment())
+                .forALongTime(announcement.getForALongTime())
+                .preferences(announcement.getPreferences() != null ? new ArrayList<>(announcement.getPreferences()) : null)
+                .coordsX(announcement.getCoordsX())
+                .coordsY(announcement.getCoordsY())
+                .photos(photos)
+                .user(announcement.getUser() != null ? toUserResponse(announcement.getUser()) : null)
+                .geocodeStatus(announcement.getGeocodeStatus())
+                .updatedAt(announcement.getUpdatedAt())
+                .build();
+    }
+
+    // Старые координаты сбрасываются, чтобы объявление не показывалось на карте по прежнему адресу
+    public static void markGeocodePending(Announcement announcement) {
+        announcement.setCoordsX(null);
+        announcement.setCoordsY(null);
+        announcement.setLatitude(null);
+        announcement.setLongitude(null);
+        announcement.setGeocodeStatus(GeocodeStatus.PENDING);
+        announcement.setGeocodeAttempts(0);
+        announcement.setGeocodeNextAttemptAt(LocalDateTime.now());
+    }
+
+    public static Double parseCoordinate(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Double.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
     public static ImageResponse toImageResponse(Image image) {
         return ImageResponse.builder()
                 .url(image.getUrl())
@@ -123,6 +253,11 @@ public class AnnouncementMapper {
 //        announcement.setOwnersName(request.getOwnersName());
 //        announcement.setPhoneNumbers(request.getPhoneNumbers());
 //        announcement.setResidents(request.getResidents());
-        announcement.setPreferences(request.getPreferences());
+        // Новая коллекция - это DELETE и INSERT всех строк, поэтому подменяем только при изменении.
+        // null и пустой список равны: загруженная из БД коллекция без строк приходит пустой, а не null
+        List<String> preferences = announcement.getPreferences() == null ? List.of() : new ArrayList<>(announcement.getPreferences());
+        if (!preferences.equals(request.getPreferences() == null ? List.of() : request.getPreferences())) {
+            announcement.setPreferences(request.getPreferences());
+        }
     }
 }
@@ -0,0 +1,16 @@
+package by.project.turamyzba.mappers;
+
+import by.project.turamyzba.dto.requests.UserDTO;
+import by.project.turamyzba.entities.User;
+
+public class UserMapper {
+
+    public static User toEntity(UserDTO userDTO) {
+        User user = new User();
+        user.setFirstName(userDTO.getFirstName());
+        user.setLastName(userDTO.getLastName());
+        user.setEmail(userDTO.getEmail());
+        user.setPassword(userDTO.getPassword());
+        return user;
+    }
+}
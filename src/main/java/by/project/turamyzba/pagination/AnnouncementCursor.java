@@ -0,0 +1,131 @@
+package by.project.turamyzba.pagination;
+
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.exceptions.InvalidCursorException;
+import jakarta.persistence.criteria.Path;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Непрозрачный курсор для keyset-пагинации объявлений.
+ * Хранит ключ сортировки и id последней записи страницы, следующая страница
+ * строится условием (key, id) > (?, ?) без OFFSET и без count(*).
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class AnnouncementCursor {
+    private static final String SEPARATOR = "|";
+    private static final String NULL_VALUE = "~";
+
+    private final String property;
+    private final String value;
+    private final Long id;
+
+    /** Курсор после строки с id и значением ключа сортировки key. */
+    public static AnnouncementCursor of(String property, Object key, Long id) {
+        return new AnnouncementCursor(property, key == null ? null : key.toString(), id);
+    }
+
+    public String encode() {
+        String raw = property + SEPARATOR + (value == null ? NULL_VALUE : value) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static AnnouncementCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int first = raw.indexOf(SEPARATOR);
+            int last = raw.lastIndexOf(SEPARATOR);
+            if (first <= 0 || first == last) {
+                throw new InvalidCursorException("Invalid cursor");
+            }
+            String value = raw.substring(first + 1, last);
+            return new AnnouncementCursor(raw.substring(0, first),
+                    NULL_VALUE.equals(value) ? null : value,
+                    Long.parseLong(raw.substring(last + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Invalid cursor");
+        }
+    }
+
+    /**
+     * Условие "строго после курсора" для сортировки (property direction, id direction).
+     * NULL-ы учитываются так же, как их упорядочивает Postgres: ASC - в конце, DESC - в начале.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Specification<Announcement> after(Sort.Direction direction) {
+        return (root, query, cb) -> {
+            Path<Comparable> key = root.get(property);
+            Path<Long> idPath = root.get("id");
+            Comparable keyValue = parse(key.getJavaType());
+
+            if (direction.isAscending()) {
+                if (keyValue == null) {
+                    return cb.and(cb.isNull(key), cb.greaterThan(idPath, id));
+                }
+                return cb.or(
+                        cb.greaterThan(key, keyValue),
+                        cb.and(cb.equal(key, keyValue), cb.greaterThan(idPath, id)),
+                        cb.isNull(key));
+            }
+            if (keyValue == null) {
+                return cb.or(cb.isNotNull(key), cb.and(cb.isNull(key), cb.lessThan(idPath, id)));
+            }
+            return cb.or(
+                    cb.lessThan(key, keyValue),
+                    cb.and(cb.equal(key, keyValue), cb.lessThan(idPath, id)));
+        };
+    }
+
+    /**
+     * Сортировка (property, id) с NULL-ами там, где их ждет after(): ASC - в конце, DESC - в начале.
+     * Spring Data не передает NullHandling в Criteria API, без явного порядка H2 и другие БД ставят NULL-ы иначе.
+     */
+    public static Specification<Announcement> orderBy(String property, Sort.Direction direction) {
+        return (root, query, cb) -> {
+            HibernateCriteriaBuilder hcb = (HibernateCriteriaBuilder) cb;
+            if (direction.isAscending()) {
+                query.orderBy(hcb.asc(root.get(property), false), hcb.asc(root.get("id")));
+            } else {
+                query.orderBy(hcb.desc(root.get(property), true), hcb.desc(root.get("id")));
+            }
+            return null;
+        };
+    }
+
+    @SuppressWarnings("rawtypes")
+    private Comparable parse(Class<?> type) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            if (type == Integer.class) {
+                return Integer.valueOf(value);
+            }
+            if (type == Long.class) {
+                return Long.valueOf(value);
+            }
+            if (type == Double.class) {
+                return Double.valueOf(value);
+            }
+            if (type == LocalDate.class) {
+                return LocalDate.parse(value);
+            }
+            if (type == LocalDateTime.class) {
+                return LocalDateTime.parse(value);
+            }
+            return value;
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package by.project.turamyzba.ratelimit;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * IP клиента для лимитов. За прокси getRemoteAddr() - адрес самого прокси, и все клиенты делили бы один лимит.
+ * X-Forwarded-For учитывается, только если запрос пришел от доверенного прокси: цепочка разбирается справа налево,
+ * клиент - первый адрес, не принадлежащий доверенным прокси. Заголовок от остальных адресов игнорируется,
+ * иначе клиент подставлял бы в него новый адрес на каждый запрос.
+ */
+public class ClientIpResolver {
+    static final String FORWARDED_FOR = "X-Forwarded-For";
+    // IpAddressMatcher резолвит имена хостов через DNS, в заголовке допускаются только IP-литералы
+    private static final Pattern IP_LITERAL = Pattern.compile("[0-9.]+|[0-9a-fA-F:.]*:[0-9a-fA-F:.]*");
+
+    private final List<IpAddressMatcher> trustedProxies;
+
+    /** trustedProxies - адреса или подсети в CIDR-нотации, например 10.0.0.0/8. */
+    public ClientIpResolver(List<String> trustedProxies) {
+        this.trustedProxies = trustedProxies.stream()
+                .map(String::trim)
+                .filter(proxy -> !proxy.isEmpty())
+                .map(IpAddressMatcher::new)
+                .toList();
+    }
+
+    public String resolve(HttpServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
+        if (!isTrusted(remoteAddr)) {
+            return remoteAddr;
+        }
+        String client = remoteAddr;
+        // Цепочка может прийти несколькими заголовками, порядок заголовков сохраняется
+        List<String> headers = Collections.list(request.getHeaders(FORWARDED_FOR));
+        for (int h = headers.size() - 1; h >= 0; h--) {
+            String[] hops = headers.get(h).split(",");
+            for (int i = hops.length - 1; i >= 0; i--) {
+                String hop = hops[i].trim();
+                if (hop.isEmpty()) {
+                    continue;
+                }
+                client = hop;
+                if (!isTrusted(hop)) {
+                    return hop;
+                }
+            }
+        }
+        return client;
+    }
+
+    private boolean isTrusted(String address) {
+        if (!IP_LITERAL.matcher(address).matches()) {
+            return false;
+        }
+        try {
+            for (IpAddressMatcher proxy : trustedProxies) {
+                if (proxy.matches(address)) {
+                    return true;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // Похоже на IP, но не разбирается - не доверяем
+        }
+        return false;
+    }
+}
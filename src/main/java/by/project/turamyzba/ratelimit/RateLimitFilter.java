@@ -0,0 +1,253 @@
+package by.project.turamyzba.ratelimit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограничение частоты запросов по правилам из SecurityConfiguration.
+ * Стоит первым в цепочке безопасности: лишний запрос получает 429 до JWT, BCrypt, SMTP и БД.
+ * Email читается из JSON-тела, тело затем отдается контроллеру без изменений.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+    // Тела auth-запросов маленькие; в длинном теле email не ищем
+    private static final int MAX_INSPECTED_BODY = 16 * 1024;
+
+    private final List<Route> routes = new ArrayList<>();
+    private final ClientIpResolver clientIpResolver;
+    private final ObjectMapper objectMapper;
+    private final long sweepIntervalMs;
+    private final AtomicLong lastSweep = new AtomicLong(System.currentTimeMillis());
+
+    public RateLimitFilter(List<RateLimitRule> rules, Duration sweepInterval, ClientIpResolver clientIpResolver,
+                           ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.clientIpResolver = clientIpResolver;
+        this.objectMapper = objectMapper;
+        this.sweepIntervalMs = sweepInterval.toMillis();
+        for (RateLimitRule rule : rules) {
+            routes.add(new Route(rule,
+                    rule.getIpLimit() > 0 ? new RateLimiter(rule.getIpLimit(), rule.getIpWindow()) : null,
+                    rule.getEmailLimit() > 0 ? new RateLimiter(rule.getEmailLimit(), rule.getEmailWindow()) : null,
+                    rejected(meterRegistry, rule, "ip"),
+                    rejected(meterRegistry, rule, "email")));
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        long now = System.currentTimeMillis();
+        sweepIfDue(now);
+
+        Route route = route(request);
+        if (route == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        if (route.ip != null && !route.ip.tryAcquire(clientIpResolver.resolve(request), now)) {
+            route.ipRejected.increment();
+            reject(response, route.ip.retryAfterSeconds(now));
+            return;
+        }
+
+        HttpServletRequest forwarded = request;
+        if (route.email != null) {
+            BufferedBodyRequest buffered = new BufferedBodyRequest(request);
+            forwarded = buffered;
+            String email = email(buffered.head());
+            if (email != null && !route.email.tryAcquire(email, now)) {
+                route.emailRejected.increment();
+                reject(response, route.email.retryAfterSeconds(now));
+                return;
+            }
+        }
+        filterChain.doFilter(forwarded, response);
+    }
+
+    private Route route(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (Route route : routes) {
+            if (route.rule.matches(request.getMethod(), path)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    private String email(byte[] body) {
+        if (body == null) {
+            return null;
+        }
+        try {
+            JsonNode email = objectMapper.readTree(body).path("email");
+            return email.isTextual() ? email.asText().trim().toLowerCase(Locale.ROOT) : null;
+        } catch (IOException e) {
+            // Битый JSON отклонит контроллер, лимит по IP уже применен
+            return null;
+        }
+    }
+
+    // Удаление простаивающих ключей выполняет запрос, заставший срок, без отдельного потока
+    private void sweepIfDue(long now) {
+        long last = lastSweep.get();
+        if (now - last < sweepIntervalMs || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        for (Route route : routes) {
+            if (route.ip != null) {
+                route.ip.evictIdle(now);
+            }
+            if (route.email != null) {
+                route.email.evictIdle(now);
+            }
+        }
+    }
+
+    private static void reject(HttpServletResponse response, long retryAfterSeconds) throws IOException {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType("text/plain;charset=UTF-8");
+        response.getWriter().write("Too many requests, try again later");
+    }
+
+    private static Counter rejected(MeterRegistry meterRegistry, RateLimitRule rule, String key) {
+        return Counter.builder("http.rate_limit.rejected")
+                .description("Requests rejected by the rate limiter")
+                .tag("route", rule.getMethod().name() + " " + rule.getPath())
+                .tag("key", key)
+                .register(meterRegistry);
+    }
+
+    private record Route(RateLimitRule rule, RateLimiter ip, RateLimiter email, Counter ipRejected, Counter emailRejected) {
+    }
+
+    /**
+     * Читает начало тела для поиска email и отдает дальше все тело целиком: прочитанное начало плюс остаток потока.
+     * Асинхронное чтение тоже поддерживается: короткое тело уже в памяти, длинное дочитывается из исходного потока
+     * через его ReadListener.
+     */
+    private static class BufferedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] head;
+        private final ServletInputStream body;
+
+        BufferedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            ServletInputStream original = request.getInputStream();
+            this.head = original.readNBytes(MAX_INSPECTED_BODY);
+            this.body = new ReplayInputStream(new ByteArrayInputStream(head), head.length < MAX_INSPECTED_BODY ? null : original);
+        }
+
+        // null, если тело длиннее MAX_INSPECTED_BODY и прочитано не целиком
+        byte[] head() {
+            return head.length < MAX_INSPECTED_BODY ? head : null;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            return body;
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(body, encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Сначала прочитанное начало тела, затем остаток исходного потока; rest == null, если тело целиком в памяти.
+     */
+    private static class ReplayInputStream extends ServletInputStream {
+        private final ByteArrayInputStream head;
+        private final ServletInputStream rest;
+
+        ReplayInputStream(ByteArrayInputStream head, ServletInputStream rest) {
+            this.head = head;
+            this.rest = rest;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return head.available() == 0 && (rest == null || rest.isFinished());
+        }
+
+        @Override
+        public boolean isReady() {
+            return head.available() > 0 || rest == null || rest.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            if (rest == null) {
+                // Все тело уже в памяти: данные готовы сразу, после них - конец тела
+                try {
+                    readListener.onDataAvailable();
+                    readListener.onAllDataRead();
+                } catch (IOException | RuntimeException e) {
+                    readListener.onError(e);
+                }
+                return;
+            }
+            rest.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    readListener.onDataAvailable();
+                }
+
+                @Override
+                public void onAllDataRead() throws IOException {
+                    // Исходный поток мог закончиться на прочитанном начале, тогда onDataAvailable от него не придет
+                    if (head.available() > 0) {
+                        readListener.onDataAvailable();
+                    }
+                    readListener.onAllDataRead();
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    readListener.onError(t);
+                }
+            });
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = head.read();
+            return value != -1 || rest == null ? value : rest.read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (head.available() > 0) {
+                return head.read(buffer, offset, length);
+            }
+            return rest == null ? -1 : rest.read(buffer, offset, length);
+        }
+    }
+}
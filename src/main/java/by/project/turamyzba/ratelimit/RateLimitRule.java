@@ -0,0 +1,28 @@
+package by.project.turamyzba.ratelimit;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.springframework.http.HttpMethod;
+
+import java.time.Duration;
+
+/**
+ * Лимит на один маршрут: отдельно на IP клиента и на email из тела запроса.
+ * Лимит 0 - ключ не ограничивается.
+ */
+@Getter
+@Builder
+public class RateLimitRule {
+    private final HttpMethod method;
+    private final String path;
+    private final int ipLimit;
+    @Builder.Default
+    private final Duration ipWindow = Duration.ofMinutes(1);
+    private final int emailLimit;
+    @Builder.Default
+    private final Duration emailWindow = Duration.ofMinutes(1);
+
+    boolean matches(String method, String path) {
+        return this.method.matches(method) && this.path.equals(path);
+    }
+}
@@ -0,0 +1,44 @@
+package by.project.turamyzba.ratelimit;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Счетчики SlidingWindowCounter по ключу (IP или email) для одного лимита.
+ * Уже существующий ключ проверяется без блокировок, простаивающие ключи удаляет evictIdle.
+ */
+final class RateLimiter {
+    private final int limit;
+    private final long windowMs;
+    private final Map<String, SlidingWindowCounter> counters = new ConcurrentHashMap<>();
+
+    RateLimiter(int limit, Duration window) {
+        if (limit > SlidingWindowCounter.MAX_LIMIT) {
+            throw new IllegalArgumentException("Rate limit must not exceed " + SlidingWindowCounter.MAX_LIMIT);
+        }
+        this.limit = limit;
+        this.windowMs = window.toMillis();
+    }
+
+    boolean tryAcquire(String key, long nowMs) {
+        SlidingWindowCounter counter = counters.get(key);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(key, k -> new SlidingWindowCounter());
+        }
+        return counter.tryAcquire(limit, windowMs, nowMs);
+    }
+
+    /** Секунд до того, как старое окно перестанет учитываться: значение для Retry-After. */
+    long retryAfterSeconds(long nowMs) {
+        return Math.max(1, (windowMs - nowMs % windowMs + 999) / 1000);
+    }
+
+    void evictIdle(long nowMs) {
+        counters.entrySet().removeIf(entry -> entry.getValue().isIdle(windowMs, nowMs));
+    }
+
+    int size() {
+        return counters.size();
+    }
+}
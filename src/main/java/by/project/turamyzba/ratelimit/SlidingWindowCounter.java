@@ -0,0 +1,56 @@
+package by.project.turamyzba.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Счетчик скользящего окна: число запросов в текущем окне плюс доля предыдущего окна,
+ * пропорциональная еще не прошедшей его части. Состояние - одно AtomicLong
+ * (номер окна 32 бита, текущее и предыдущее окно по 16 бит), обновляется CAS без блокировок.
+ */
+final class SlidingWindowCounter {
+    static final int MAX_LIMIT = 0xFFFF;
+
+    private final AtomicLong state = new AtomicLong(pack(0, 0, 0));
+
+    boolean tryAcquire(int limit, long windowMs, long nowMs) {
+        int window = (int) (nowMs / windowMs);
+        double elapsed = (double) (nowMs % windowMs) / windowMs;
+        while (true) {
+            long current = state.get();
+            int stateWindow = window(current);
+            int count = count(current);
+            int previous = previous(current);
+            if (stateWindow != window) {
+                previous = stateWindow == window - 1 ? count : 0;
+                count = 0;
+            }
+            if (previous * (1 - elapsed) + count >= limit) {
+                return false;
+            }
+            if (state.compareAndSet(current, pack(window, count + 1, previous))) {
+                return true;
+            }
+        }
+    }
+
+    /** Оба окна счетчика уже прошли: он ничего не ограничивает и его можно удалить. */
+    boolean isIdle(long windowMs, long nowMs) {
+        return window(state.get()) < (int) (nowMs / windowMs) - 1;
+    }
+
+    private static long pack(int window, int count, int previous) {
+        return ((long) window << 32) | ((long) count << 16) | previous;
+    }
+
+    private static int window(long state) {
+        return (int) (state >>> 32);
+    }
+
+    private static int count(long state) {
+        return (int) ((state >>> 16) & 0xFFFF);
+    }
+
+    private static int previous(long state) {
+        return (int) (state & 0xFFFF);
+    }
+}
@@ -0,0 +1,204 @@
+package by.project.turamyzba.readmodel;
+
+import by.project.turamyzba.dto.responses.AnnouncementResponse;
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.events.AnnouncementBatchChangedEvent;
+import by.project.turamyzba.events.AnnouncementChangedEvent;
+import by.project.turamyzba.events.UserProfileChangedEvent;
+import by.project.turamyzba.mappers.AnnouncementMapper;
+import by.project.turamyzba.repositories.AnnouncementRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Готовые карточки активных объявлений (AnnouncementResponse вместе с фото, предпочтениями и профилем автора).
+ * Списки и поиск по индексам берут отсюда карточки по id без запросов к БД и без загрузки сущностей.
+ * Карточка перечитывается из БД после коммита изменения объявления или профиля его автора,
+ * при старте проекция строится целиком. Пока isReady() = false, сервис собирает карточки из сущностей.
+ */
+@Slf4j
+@Component
+public class AnnouncementCardProjection {
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    private final AnnouncementRepository announcementRepository;
+    private final TransactionTemplate transaction;
+
+    private final Map<Long, AnnouncementResponse> cards = new ConcurrentHashMap<>();
+    // Под lock: id автора -> id его объявлений, чтобы после правки профиля перечитать только их
+    private final Map<Long, Set<Long>> byUser = new HashMap<>();
+    private final Map<Long, Long> owners = new HashMap<>();
+    // Чтение карточек идет без блокировки, lock упорядочивает полную загрузку и обновления
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile boolean ready;
+
+    public AnnouncementCardProjection(AnnouncementRepository announcementRepository,
+                                      PlatformTransactionManager transactionManager,
+                                      MeterRegistry meterRegistry) {
+        this.announcementRepository = announcementRepository;
+        this.transaction = new TransactionTemplate(transactionManager);
+        // Слушатели вызываются после коммита, когда транзакция события уже завершена
+        this.transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transaction.setReadOnly(true);
+        Gauge.builder("announcements.cards.size", cards, Map::size)
+                .description("Announcement cards held by the read model")
+                .register(meterRegistry);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /** Карточки в порядке ids, id без карточки (неактивные или еще не загруженные) пропускаются. */
+    public List<AnnouncementResponse> cards(List<Long> ids) {
+        List<AnnouncementResponse> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            AnnouncementResponse card = cards.get(id);
+            if (card != null) {
+                result.add(card);
+            }
+        }
+        return result;
+    }
+
+    /** id активных объявлений автора, пустое множество если их нет. */
+    public Set<Long> announcementIds(Long userId) {
+        lock.lock();
+        try {
+            return new HashSet<>(byUser.getOrDefault(userId, Set.of()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        CompletableFuture.runAsync(this::rebuild)
+                .exceptionally(e -> {
+                    log.error("Failed to build announcement cards: {}", e.getMessage());
+                    return null;
+                });
+    }
+
+    public void rebuild() {
+        lock.lock();
+        try {
+            ready = false;
+            cards.clear();
+            byUser.clear();
+            owners.clear();
+            long afterId = 0;
+            int loaded;
+            do {
+                long from = afterId;
+                // Каждая пачка в своей транзакции: контекст не копит все объявления сразу
+                List<Announcement> batch = transaction.execute(status -> {
+                    List<Announcement> announcements = announcementRepository.findActiveAfter(from, PageRequest.of(0, LOAD_BATCH_SIZE));
+                    announcements.forEach(this::put);
+                    return announcements;
+                });
+                loaded = batch.size();
+                if (loaded > 0) {
+                    afterId = batch.get(loaded - 1).getId();
+                }
+            } while (loaded == LOAD_BATCH_SIZE);
+            ready = true;
+            log.info("Announcement cards built: {} active announcements", cards.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Раньше AnnouncementQueryCache, как и индексы
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAnnouncementChanged(AnnouncementChangedEvent event) {
+        refresh(List.of(event.getAnnouncement().getId()));
+    }
+
+    // Вся пачка перечитывается одним запросом в одной транзакции
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAnnouncementsChanged(AnnouncementBatchChangedEvent event) {
+        refresh(event.getChanges().stream().map(change -> change.getAnnouncement().getId()).toList());
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserProfileChanged(UserProfileChangedEvent event) {
+        Set<Long> ids = announcementIds(event.getUserId());
+        if (!ids.isEmpty()) {
+            refresh(ids);
+        }
+    }
+
+    /** Перечитывает карточки из БД: активные заменяются, удаленные и архивные убираются. */
+    public void refresh(Collection<Long> ids) {
+        lock.lock();
+        try {
+            transaction.executeWithoutResult(status -> {
+                Set<Long> missing = new HashSet<>(ids);
+                for (Announcement announcement : announcementRepository.findAllByIdInOrderByIdAsc(ids)) {
+                    missing.remove(announcement.getId());
+                    if (isActive(announcement)) {
+                        put(announcement);
+                    } else {
+                        remove(announcement.getId());
+                    }
+                }
+                missing.forEach(this::remove);
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(Announcement announcement) {
+        remove(announcement.getId());
+        cards.put(announcement.getId(), AnnouncementMapper.toResponse(announcement));
+        if (announcement.getUser() != null) {
+            Long userId = announcement.getUser().getId();
+            owners.put(announcement.getId(), userId);
+            byUser.computeIfAbsent(userId, key -> new HashSet<>()).add(announcement.getId());
+        }
+    }
+
+    private void remove(Long id) {
+        cards.remove(id);
+        Long userId = owners.remove(id);
+        if (userId != null) {
+            Set<Long> ids = byUser.get(userId);
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                byUser.remove(userId);
+            }
+        }
+    }
+
+    private static boolean isActive(Announcement announcement) {
+        return !Boolean.TRUE.equals(announcement.getIsDeleted()) && !Boolean.TRUE.equals(announcement.getIsArchived());
+    }
+}
@@ -4,18 +4,53 @@ import by.project.turamyzba.entities.Announcement;
 import by.project.turamyzba.entities.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface AnnouncementRepository extends JpaRepository<Announcement, Integer>, JpaSpecificationExecutor<Announcement> {
+    // user подтягивается join-ом, photos и preferences догружаются пачками через @BatchSize
+    @EntityGraph(attributePaths = "user")
     List<Announcement> findAllByUserAndIsArchivedFalseAndIsDeletedFalse(User user);
+    @EntityGraph(attributePaths = "user")
     List<Announcement> findAllByUserAndIsArchivedTrueAndIsDeletedFalse(User user);
     Optional<Announcement> findById(Long id);
+    @EntityGraph(attributePaths = "user")
     Page<Announcement> findAllByIsDeletedFalse(Pageable pageable);
+    @Override
+    @EntityGraph(attributePaths = "user")
+    List<Announcement> findAll(Specification<Announcement> spec);
+    @EntityGraph(attributePaths = "user")
+    List<Announcement> findAllByIdInOrderByIdAsc(Collection<Long> ids);
+    @Query("select a from Announcement a where a.id > :afterId and a.isDeleted = false " +
+            "and (a.isArchived is null or a.isArchived = false) order by a.id")
+    List<Announcement> findActiveAfter(@Param("afterId") Long afterId, Pageable pageable);
+    // Включая архивные и удаленные: другие экземпляры должны убрать их из своих индексов
+    @Query("select a from Announcement a where a.updatedAt > :since order by a.updatedAt, a.id")
+    List<Announcement> findAllUpdatedAfter(@Param("since") LocalDateTime since);
+    @Query("select a.updatedAt, u.updatedAt from Announcement a left join a.user u where a.id = :id")
+    List<Object[]> findVersionsById(@Param("id") Long id);
+    @Query("select i.announcement.id, count(i) from Image i where i.announcement.id in :ids group by i.announcement.id")
+    List<Object[]> countPhotos(@Param("ids") Collection<Long> ids);
+    @Modifying
+    @Query("update Announcement a set a.latitude = cast(a.coordsX as Double), a.longitude = cast(a.coordsY as Double) " +
+            "where a.latitude is null and a.coordsX is not null and a.coordsY is not null")
+    int backfillCoordinates();
+    @Query("select a from Announcement a where a.geocodeStatus = by.project.turamyzba.entities.GeocodeStatus.PENDING " +
+            "and a.geocodeNextAttemptAt <= :now order by a.geocodeNextAttemptAt, a.id")
+    List<Announcement> findPendingGeocode(@Param("now") LocalDateTime now, Pageable pageable);
+    @Override
+    @EntityGraph(attributePaths = "user")
+    Page<Announcement> findAll(Specification<Announcement> spec, Pageable pageable);
 }
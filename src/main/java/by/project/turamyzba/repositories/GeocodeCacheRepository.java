@@ -0,0 +1,9 @@
+package by.project.turamyzba.repositories;
+
+import by.project.turamyzba.entities.GeocodeCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface GeocodeCacheRepository extends JpaRepository<GeocodeCacheEntry, String> {
+}
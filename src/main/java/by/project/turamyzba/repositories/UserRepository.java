@@ -2,8 +2,12 @@ package by.project.turamyzba.repositories;
 
 import by.project.turamyzba.entities.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,4 +15,6 @@ public interface UserRepository extends JpaRepository<User, Integer> {
     Optional<User> findByEmail(String email);
     User getUserById(Long id);
     Boolean existsByEmail(String email);
+    @Query("select u.id, u.updatedAt from User u where u.updatedAt > :since")
+    List<Object[]> findVersionsUpdatedAfter(@Param("since") Instant since);
 }
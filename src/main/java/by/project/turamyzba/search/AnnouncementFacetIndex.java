@@ -0,0 +1,346 @@
+package by.project.turamyzba.search;
+
+import by.project.turamyzba.dto.requests.AnnouncementFilterRequest;
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.repositories.AnnouncementRepository;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory индекс активных объявлений для фильтра /announcement/search.
+ * Низкокардинальные поля хранятся как сжатые битмапы на каждое значение, цена, площадь, этаж и возраст -
+ * как отсортированные массивы (значение, id).
+ */
+@Component
+public class AnnouncementFacetIndex extends AnnouncementIndex {
+    private static final RoaringBitmap EMPTY = new RoaringBitmap();
+
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final RoaringBitmap all = new RoaringBitmap();
+    private final RoaringBitmap notTopFloor = new RoaringBitmap();
+
+    private final Facet<String> gender = new Facet<>();
+    private final Facet<String> region = new Facet<>();
+    private final Facet<String> district = new Facet<>();
+    private final Facet<String> microDistrict = new Facet<>();
+    private final Facet<String> quantityOfRooms = new Facet<>();
+    private final Facet<String> typeOfHousing = new Facet<>();
+    private final Facet<Integer> numberOfPeople = new Facet<>();
+    private final Facet<LocalDate> arriveDate = new Facet<>();
+    private final Facet<Boolean> petsAllowed = new Facet<>();
+    private final Facet<Boolean> communalIncluded = new Facet<>();
+    private final Facet<Boolean> forStudents = new Facet<>();
+
+    private final SortedRange cost = new SortedRange();
+    private final SortedRange area = new SortedRange();
+    private final SortedRange floor = new SortedRange();
+    private final SortedRange minAge = new SortedRange();
+    private final SortedRange maxAge = new SortedRange();
+
+    public AnnouncementFacetIndex(AnnouncementRepository announcementRepository) {
+        super(announcementRepository);
+    }
+
+    /**
+     * Возвращает id подходящих объявлений по возрастанию. Семантика совпадает с SQL-фильтром:
+     * null-значения в объявлении не проходят ни одно заданное условие.
+     */
+    public List<Long> search(AnnouncementFilterRequest request) {
+        RoaringBitmap result = filter(request);
+        List<Long> ids = new ArrayList<>(result.getCardinality());
+        result.forEach((int id) -> ids.add((long) id));
+        return ids;
+    }
+
+    /**
+     * Битмап id объявлений, подходящих под фильтр. Возвращается копия, ее можно изменять.
+     */
+    public RoaringBitmap filter(AnnouncementFilterRequest request) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap result = all.clone();
+            restrict(result, gender, emptyToNull(request.getSelectedGender()));
+            restrict(result, region, emptyToNull(request.getRegion()));
+            restrict(result, district, emptyToNull(request.getDistrict()));
+            restrict(result, microDistrict, emptyToNull(request.getMicroDistrict()));
+            restrict(result, quantityOfRooms, emptyToNull(request.getQuantityOfRooms()));
+            restrict(result, typeOfHousing, emptyToNull(request.getTypeOfHousing()));
+            restrict(result, numberOfPeople, request.getNumberOfPeopleAreYouAccommodating());
+            restrict(result, arriveDate, request.getArriveDate());
+            restrict(result, petsAllowed, request.getArePetsAllowed());
+            restrict(result, communalIncluded, request.getIsCommunalServiceIncluded());
+            restrict(result, forStudents, request.getIntendedForStudents());
+
+            if (request.getMinPrice() != null || request.getMaxPrice() != null) {
+                result.and(cost.between(request.getMinPrice(), request.getMaxPrice()));
+            }
+            if (request.getMinArea() != null || request.getMaxArea() != null) {
+                result.and(area.between(request.getMinArea(), request.getMaxArea()));
+            }
+            if (Boolean.TRUE.equals(request.getNotTheFirstFloor())) {
+                result.and(floor.between(2, null));
+            }
+            if (Boolean.TRUE.equals(request.getNotTheTopFloor())) {
+                result.and(notTopFloor);
+            }
+            if (request.getMinAge() != null) {
+                result.and(minAge.between(request.getMinAge(), null));
+            }
+            if (request.getMaxAge() != null) {
+                result.and(maxAge.between(null, request.getMaxAge()));
+            }
+
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected void add(Announcement announcement) {
+        Entry entry = new Entry(announcement);
+        int id = entry.id;
+        entries.put(id, entry);
+        all.add(id);
+        gender.add(entry.gender, id);
+        region.add(entry.region, id);
+        district.add(entry.district, id);
+        microDistrict.add(entry.microDistrict, id);
+        quantityOfRooms.add(entry.quantityOfRooms, id);
+        typeOfHousing.add(entry.typeOfHousing, id);
+        numberOfPeople.add(entry.numberOfPeople, id);
+        arriveDate.add(entry.arriveDate, id);
+        petsAllowed.add(entry.petsAllowed, id);
+        communalIncluded.add(entry.communalIncluded, id);
+        forStudents.add(entry.forStudents, id);
+        cost.add(entry.cost, id);
+        area.add(entry.area, id);
+        floor.add(entry.floor, id);
+        minAge.add(entry.minAge, id);
+        maxAge.add(entry.maxAge, id);
+        if (entry.notTopFloor) {
+            notTopFloor.add(id);
+        }
+    }
+
+    @Override
+    protected void remove(long announcementId) {
+        Entry entry = entries.remove(Math.toIntExact(announcementId));
+        if (entry == null) {
+            return;
+        }
+        int id = entry.id;
+        all.remove(id);
+        gender.remove(entry.gender, id);
+        region.remove(entry.region, id);
+        district.remove(entry.district, id);
+        microDistrict.remove(entry.microDistrict, id);
+        quantityOfRooms.remove(entry.quantityOfRooms, id);
+        typeOfHousing.remove(entry.typeOfHousing, id);
+        numberOfPeople.remove(entry.numberOfPeople, id);
+        arriveDate.remove(entry.arriveDate, id);
+        petsAllowed.remove(entry.petsAllowed, id);
+        communalIncluded.remove(entry.communalIncluded, id);
+        forStudents.remove(entry.forStudents, id);
+        cost.remove(entry.cost, id);
+        area.remove(entry.area, id);
+        floor.remove(entry.floor, id);
+        minAge.remove(entry.minAge, id);
+        maxAge.remove(entry.maxAge, id);
+        notTopFloor.remove(id);
+    }
+
+    @Override
+    protected void clear() {
+        entries.clear();
+        all.clear();
+        notTopFloor.clear();
+        for (Facet<?> facet : List.of(gender, region, district, microDistrict, quantityOfRooms, typeOfHousing,
+                numberOfPeople, arriveDate, petsAllowed, communalIncluded, forStudents)) {
+            facet.values.clear();
+        }
+        for (SortedRange range : List.of(cost, area, floor, minAge, maxAge)) {
+            range.clear();
+        }
+    }
+
+    @Override
+    protected void afterChange() {
+        for (SortedRange range : List.of(cost, area, floor, minAge, maxAge)) {
+            range.sort();
+        }
+    }
+
+    private static <K> void restrict(RoaringBitmap result, Facet<K> facet, K value) {
+        if (value != null) {
+            result.and(facet.values.getOrDefault(value, EMPTY));
+        }
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    // Значения объявления на момент индексации, нужны чтобы точно снять его со всех битмапов
+    private static class Entry {
+        private final int id;
+        private final String gender;
+        private final String region;
+        private final String district;
+        private final String microDistrict;
+        private final String quantityOfRooms;
+        private final String typeOfHousing;
+        private final Integer numberOfPeople;
+        private final LocalDate arriveDate;
+        private final Boolean petsAllowed;
+        private final Boolean communalIncluded;
+        private final Boolean forStudents;
+        private final Integer cost;
+        private final Integer area;
+        private final Integer floor;
+        private final Integer minAge;
+        private final Integer maxAge;
+        private final boolean notTopFloor;
+
+        private Entry(Announcement announcement) {
+            this.id = Math.toIntExact(announcement.getId());
+            this.gender = announcement.getSelectedGender();
+            this.region = announcement.getRegion();
+            this.district = announcement.getDistrict();
+            this.microDistrict = announcement.getMicroDistrict();
+            this.quantityOfRooms = announcement.getQuantityOfRooms();
+            this.typeOfHousing = announcement.getTypeOfHousing();
+            this.numberOfPeople = announcement.getNumberOfPeopleAreYouAccommodating();
+            this.arriveDate = announcement.getArriveDate();
+            this.petsAllowed = announcement.getArePetsAllowed();
+            this.communalIncluded = announcement.getIsCommunalServiceIncluded();
+            this.forStudents = announcement.getIntendedForStudents();
+            this.cost = announcement.getCost();
+            this.area = announcement.getAreaOfTheApartment();
+            this.floor = announcement.getNumberOfFloor();
+            this.minAge = announcement.getMinAge();
+            this.maxAge = announcement.getMaxAge();
+            this.notTopFloor = announcement.getNumberOfFloor() != null && announcement.getMaxFloorInTheBuilding() != null
+                    && announcement.getNumberOfFloor() < announcement.getMaxFloorInTheBuilding();
+        }
+    }
+
+    // Битмап id на каждое значение поля
+    private static class Facet<K> {
+        private final Map<K, RoaringBitmap> values = new HashMap<>();
+
+        private void add(K value, int id) {
+            if (value != null) {
+                values.computeIfAbsent(value, k -> new RoaringBitmap()).add(id);
+            }
+        }
+
+        private void remove(K value, int id) {
+            if (value == null) {
+                return;
+            }
+            RoaringBitmap bitmap = values.get(value);
+            if (bitmap != null) {
+                bitmap.remove(id);
+                if (bitmap.isEmpty()) {
+                    values.remove(value);
+                }
+            }
+        }
+
+    }
+
+    // Пары (значение, id), отсортированные по значению, для диапазонных условий.
+    // После clear() пары только дописываются, полную загрузку сортирует один вызов sort()
+    private static class SortedRange {
+        private long[] keys = new long[16];
+        private int size;
+        private boolean sorted = true;
+
+        private void add(Integer value, int id) {
+            if (value == null) {
+                return;
+            }
+            long key = pack(value, id);
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            if (!sorted) {
+                keys[size++] = key;
+                return;
+            }
+            int position = Arrays.binarySearch(keys, 0, size, key);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            System.arraycopy(keys, position, keys, position + 1, size - position);
+            keys[position] = key;
+            size++;
+        }
+
+        private void clear() {
+            size = 0;
+            sorted = false;
+        }
+
+        private void sort() {
+            if (sorted) {
+                return;
+            }
+            Arrays.sort(keys, 0, size);
+            int unique = 0;
+            for (int i = 0; i < size; i++) {
+                if (unique == 0 || keys[i] != keys[unique - 1]) {
+                    keys[unique++] = keys[i];
+                }
+            }
+            size = unique;
+            sorted = true;
+        }
+
+        private void remove(Integer value, int id) {
+            if (value == null) {
+                return;
+            }
+            sort();
+            int position = Arrays.binarySearch(keys, 0, size, pack(value, id));
+            if (position >= 0) {
+                System.arraycopy(keys, position + 1, keys, position, size - position - 1);
+                size--;
+            }
+        }
+
+        private RoaringBitmap between(Integer min, Integer max) {
+            long from = min == null ? Long.MIN_VALUE : pack(min, 0);
+            long to = max == null ? Long.MAX_VALUE : pack(max, -1);
+            int start = lowerBound(from);
+            int end = lowerBound(to);
+            if (end < size && keys[end] == to) {
+                end++;
+            }
+            RoaringBitmap bitmap = new RoaringBitmap();
+            for (int i = start; i < end; i++) {
+                bitmap.add((int) keys[i]);
+            }
+            return bitmap;
+        }
+
+        private int lowerBound(long key) {
+            int position = Arrays.binarySearch(keys, 0, size, key);
+            return position >= 0 ? position : -position - 1;
+        }
+
+        // Старшие 32 бита - значение, младшие - id без знака: сортировка long совпадает с (value, id)
+        private static long pack(int value, int id) {
+            return ((long) value << 32) | (id & 0xFFFFFFFFL);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package by.project.turamyzba.search;
+
+import by.project.turamyzba.dto.requests.GeoSearchRequest;
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.repositories.AnnouncementRepository;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Сеточный гео-индекс активных объявлений: ячейка CELL_DEGREES x CELL_DEGREES (около 1 км) хранит битмап id.
+ * Запрос по радиусу или области карты перебирает только пересекающиеся ячейки и точно проверяет кандидатов.
+ */
+@Component
+public class AnnouncementGeoIndex extends AnnouncementIndex {
+    private static final double CELL_DEGREES = 0.01;
+    private static final long MAX_SCANNED_CELLS = 20_000;
+
+    private final Map<Long, RoaringBitmap> cells = new HashMap<>();
+    private final Map<Integer, double[]> points = new HashMap<>();
+
+    public AnnouncementGeoIndex(AnnouncementRepository announcementRepository) {
+        super(announcementRepository);
+    }
+
+    /**
+     * Страница id объявлений в радиусе или в области карты.
+     * Если задан центр и sortByDistance не false - по возрастанию расстояния, иначе от новых к старым.
+     * @param allowed если не null, в выдачу попадают только эти id (результат фильтра).
+     */
+    public List<Long> search(GeoSearchRequest geo, RoaringBitmap allowed, long offset, int limit) {
+        double minLat;
+        double maxLat;
+        double minLon;
+        double maxLon;
+        if (geo.hasRadius()) {
+            double dLat = GeoUtils.latitudeDelta(geo.getRadiusKm());
+            double dLon = GeoUtils.longitudeDelta(geo.getLatitude(), geo.getRadiusKm());
+            minLat = geo.getLatitude() - dLat;
+            maxLat = geo.getLatitude() + dLat;
+            minLon = geo.getLongitude() - dLon;
+            maxLon = geo.getLongitude() + dLon;
+        } else {
+            minLat = geo.getMinLatitude();
+            maxLat = geo.getMaxLatitude();
+            minLon = geo.getMinLongitude();
+            maxLon = geo.getMaxLongitude();
+        }
+        boolean byDistance = geo.hasCenter() && !Boolean.FALSE.equals(geo.getSortByDistance());
+
+        lock.readLock().lock();
+        try {
+            RoaringBitmap candidates = candidates(minLat, maxLat, minLon, maxLon);
+            if (allowed != null) {
+                candidates.and(allowed);
+            }
+
+            long size = Math.addExact(offset, limit);
+            if (offset >= candidates.getLongCardinality()) {
+                return List.of();
+            }
+            Comparator<Hit> order = byDistance
+                    ? Comparator.comparingDouble((Hit hit) -> -hit.distance).thenComparingInt(hit -> hit.id)
+                    : Comparator.comparingInt(hit -> hit.id);
+            // Емкость по числу кандидатов, а не по номеру страницы из запроса
+            PriorityQueue<Hit> top = new PriorityQueue<>((int) Math.min(size, candidates.getLongCardinality()) + 1, order);
+            candidates.forEach((int id) -> {
+                double[] point = points.get(id);
+                if (point[0] < minLat || point[0] > maxLat || point[1] < minLon || point[1] > maxLon) {
+                    return;
+                }
+                double distance = geo.hasCenter() ? GeoUtils.distanceKm(geo.getLatitude(), geo.getLongitude(), point[0], point[1]) : 0;
+                if (geo.hasRadius() && distance > geo.getRadiusKm()) {
+                    return;
+                }
+                Hit hit = new Hit(id, distance);
+                if (top.size() < size) {
+                    top.add(hit);
+                } else if (order.compare(hit, top.peek()) > 0) {
+                    top.poll();
+                    top.add(hit);
+                }
+            });
+
+            List<Hit> hits = new ArrayList<>(top);
+            hits.sort(order.reversed());
+            List<Long> ids = new ArrayList<>(limit);
+            for (int i = (int) offset; i < hits.size(); i++) {
+                ids.add((long) hits.get(i).id);
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private RoaringBitmap candidates(double minLat, double maxLat, double minLon, double maxLon) {
+        int fromLat = cell(minLat);
+        int toLat = cell(maxLat);
+        int fromLon = cell(minLon);
+        int toLon = cell(maxLon);
+        RoaringBitmap candidates = new RoaringBitmap();
+        // Крупный масштаб карты: дешевле пройти по всем точкам, чем по пустым ячейкам
+        if ((long) (toLat - fromLat + 1) * (toLon - fromLon + 1) > Math.min(MAX_SCANNED_CELLS, cells.size())) {
+            for (Integer id : points.keySet()) {
+                candidates.add(id);
+            }
+            return candidates;
+        }
+        for (int lat = fromLat; lat <= toLat; lat++) {
+            for (int lon = fromLon; lon <= toLon; lon++) {
+                RoaringBitmap cell = cells.get(key(lat, lon));
+                if (cell != null) {
+                    candidates.or(cell);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    @Override
+    protected void add(Announcement announcement) {
+        double[] point = GeoUtils.coordinates(announcement);
+        if (point == null) {
+            return;
+        }
+        int id = Math.toIntExact(announcement.getId());
+        points.put(id, point);
+        cells.computeIfAbsent(key(cell(point[0]), cell(point[1])), key -> new RoaringBitmap()).add(id);
+    }
+
+    @Override
+    protected void remove(long announcementId) {
+        int id = Math.toIntExact(announcementId);
+        double[] point = points.remove(id);
+        if (point == null) {
+            return;
+        }
+        long key = key(cell(point[0]), cell(point[1]));
+        RoaringBitmap cell = cells.get(key);
+        if (cell != null) {
+            cell.remove(id);
+            if (cell.isEmpty()) {
+                cells.remove(key);
+            }
+        }
+    }
+
+    @Override
+    protected void clear() {
+        cells.clear();
+        points.clear();
+    }
+
+    private static int cell(double degrees) {
+        return (int) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static long key(int latCell, int lonCell) {
+        return ((long) latCell << 32) | (lonCell & 0xFFFFFFFFL);
+    }
+
+    private static class Hit {
+        private final int id;
+        private final double distance;
+
+        private Hit(int id, double distance) {
+            this.id = id;
+            this.distance = distance;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package by.project.turamyzba.search;
+
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.events.AnnouncementBatchChangedEvent;
+import by.project.turamyzba.events.AnnouncementChangedEvent;
+import by.project.turamyzba.repositories.AnnouncementRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Базовый класс in-memory индексов по активным объявлениям.
+ * После старта индекс загружается в фоне, затем поддерживается по AnnouncementChangedEvent
+ * и AnnouncementBatchChangedEvent после коммита.
+ * Пока isReady() = false, сервисы должны идти в SQL.
+ */
+@Slf4j
+public abstract class AnnouncementIndex {
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    private final AnnouncementRepository announcementRepository;
+
+    protected final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile boolean ready;
+    // Под write-lock: идет полная загрузка, изменения откладываются в pending
+    private boolean loading;
+    private final Map<Long, AnnouncementChangedEvent> pending = new LinkedHashMap<>();
+
+    protected AnnouncementIndex(AnnouncementRepository announcementRepository) {
+        this.announcementRepository = announcementRepository;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        CompletableFuture.runAsync(this::rebuild)
+                .exceptionally(e -> {
+                    log.error("Failed to build {}: {}", getClass().getSimpleName(), e.getMessage());
+                    return null;
+                });
+    }
+
+    /**
+     * Полная загрузка активных объявлений. Чтение из БД идет без блокировки, write-lock берется только
+     * на добавление каждой пачки, поэтому слушатели коммитов не ждут всю загрузку. Изменения, закоммиченные
+     * во время загрузки, откладываются и применяются поверх загруженного перед тем, как индекс станет ready.
+     */
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            ready = false;
+            loading = true;
+            pending.clear();
+            clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        boolean loaded = false;
+        try {
+            long afterId = 0;
+            int total = 0;
+            List<Announcement> batch;
+            do {
+                batch = announcementRepository.findActiveAfter(afterId, PageRequest.of(0, LOAD_BATCH_SIZE));
+                lock.writeLock().lock();
+                try {
+                    for (Announcement announcement : batch) {
+                        add(announcement);
+                        afterId = announcement.getId();
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                total += batch.size();
+            } while (batch.size() == LOAD_BATCH_SIZE);
+            loaded = true;
+            log.info("{} built: {} active announcements", getClass().getSimpleName(), total);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                loading = false;
+                if (loaded) {
+                    pending.values().forEach(this::apply);
+                    afterChange();
+                    ready = true;
+                }
+                pending.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // Раньше AnnouncementQueryCache: после сброса кэша страницы должны считаться уже по новому индексу
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAnnouncementChanged(AnnouncementChangedEvent event) {
+        applyAll(List.of(event));
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAnnouncementsChanged(AnnouncementBatchChangedEvent event) {
+        applyAll(event.getChanges());
+    }
+
+    private void applyAll(List<AnnouncementChangedEvent> changes) {
+        lock.writeLock().lock();
+        try {
+            if (loading) {
+                // Последняя версия объявления применится после загрузки
+                changes.forEach(change -> pending.put(change.getAnnouncement().getId(), change));
+                return;
+            }
+            changes.forEach(this::apply);
+            afterChange();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(AnnouncementChangedEvent event) {
+        Announcement announcement = event.getAnnouncement();
+        remove(announcement.getId());
+        if (event.isActive()) {
+            add(announcement);
+        }
+    }
+
+    /** Вызывается под write-lock. */
+    protected abstract void clear();
+
+    /** Вызывается под write-lock, объявление активно и ранее удалено из индекса. */
+    protected abstract void add(Announcement announcement);
+
+    /** Вызывается под write-lock, объявления может не быть в индексе. */
+    protected abstract void remove(long id);
+
+    /** Вызывается под write-lock после полной загрузки и после каждого изменения. */
+    protected void afterChange() {
+    }
+}
@@ -0,0 +1,169 @@
+package by.project.turamyzba.search;
+
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.repositories.AnnouncementRepository;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Инвертированный индекс по title и apartmentsInfo активных объявлений.
+ * Постинги хранятся битмапами, ранжирование - BM25, совпадения в заголовке весят больше, чем в описании.
+ * Время запроса зависит от числа документов с искомыми словами, а не от размера таблицы.
+ */
+@Component
+public class AnnouncementTextIndex extends AnnouncementIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int TITLE_WEIGHT = 3;
+
+    private final Map<String, RoaringBitmap> postings = new HashMap<>();
+    private final Map<Integer, Document> documents = new HashMap<>();
+    private long totalLength;
+
+    public AnnouncementTextIndex(AnnouncementRepository announcementRepository) {
+        super(announcementRepository);
+    }
+
+    /**
+     * Возвращает страницу id по убыванию релевантности.
+     * @param allowed если не null, в выдачу попадают только эти id (например, результат фильтра).
+     */
+    public List<Long> search(String query, RoaringBitmap allowed, long offset, int limit) {
+        Set<String> terms = new LinkedHashSet<>(TextAnalyzer.analyze(query));
+        if (terms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            RoaringBitmap candidates = new RoaringBitmap();
+            Map<String, Double> idf = new HashMap<>();
+            for (String term : terms) {
+                RoaringBitmap posting = postings.get(term);
+                if (posting != null) {
+                    candidates.or(posting);
+                    int df = posting.getCardinality();
+                    idf.put(term, Math.log(1 + (documents.size() - df + 0.5) / (df + 0.5)));
+                }
+            }
+            if (allowed != null) {
+                candidates.and(allowed);
+            }
+
+            long size = Math.addExact(offset, limit);
+            if (offset >= candidates.getLongCardinality()) {
+                return List.of();
+            }
+
+            double averageLength = documents.isEmpty() ? 1 : (double) totalLength / documents.size();
+            Comparator<Hit> order = Comparator.comparingDouble((Hit hit) -> hit.score).thenComparingInt(hit -> hit.id);
+            // Емкость по числу кандидатов, а не по номеру страницы из запроса
+            PriorityQueue<Hit> top = new PriorityQueue<>((int) Math.min(size, candidates.getLongCardinality()) + 1, order);
+            candidates.forEach((int id) -> {
+                Hit hit = new Hit(id, score(documents.get(id), idf, averageLength));
+                if (top.size() < size) {
+                    top.add(hit);
+                } else if (order.compare(hit, top.peek()) > 0) {
+                    top.poll();
+                    top.add(hit);
+                }
+            });
+
+            List<Hit> hits = new ArrayList<>(top);
+            hits.sort(order.reversed());
+            List<Long> ids = new ArrayList<>(limit);
+            for (int i = (int) offset; i < hits.size(); i++) {
+                ids.add((long) hits.get(i).id);
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected void add(Announcement announcement) {
+        int id = Math.toIntExact(announcement.getId());
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : TextAnalyzer.analyze(announcement.getTitle())) {
+            frequencies.merge(term, TITLE_WEIGHT, Integer::sum);
+        }
+        for (String term : TextAnalyzer.analyze(announcement.getApartmentsInfo())) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+
+        int length = 0;
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), term -> new RoaringBitmap()).add(id);
+            length += entry.getValue();
+        }
+        documents.put(id, new Document(frequencies, length));
+        totalLength += length;
+    }
+
+    @Override
+    protected void remove(long announcementId) {
+        int id = Math.toIntExact(announcementId);
+        Document document = documents.remove(id);
+        if (document == null) {
+            return;
+        }
+        for (String term : document.frequencies.keySet()) {
+            RoaringBitmap posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(id);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        totalLength -= document.length;
+    }
+
+    @Override
+    protected void clear() {
+        postings.clear();
+        documents.clear();
+        totalLength = 0;
+    }
+
+    private static double score(Document document, Map<String, Double> idf, double averageLength) {
+        double score = 0;
+        for (Map.Entry<String, Double> entry : idf.entrySet()) {
+            Integer tf = document.frequencies.get(entry.getKey());
+            if (tf != null) {
+                score += entry.getValue() * tf * (K1 + 1) / (tf + K1 * (1 - B + B * document.length / averageLength));
+            }
+        }
+        return score;
+    }
+
+    private static class Document {
+        private final Map<String, Integer> frequencies;
+        private final int length;
+
+        private Document(Map<String, Integer> frequencies, int length) {
+            this.frequencies = frequencies;
+            this.length = length;
+        }
+    }
+
+    private static class Hit {
+        private final int id;
+        private final double score;
+
+        private Hit(int id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package by.project.turamyzba.search;
+
+import by.project.turamyzba.dto.responses.TileClusterResponse;
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.repositories.AnnouncementRepository;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Кластеры объявлений для тайлов карты z/x/y (Web Mercator). Тайл делится на CELLS_PER_TILE x CELLS_PER_TILE ячеек,
+ * по каждой непустой ячейке отдается количество, центроид и min/max цены.
+ * Посчитанные тайлы лежат в LRU-кэше; изменение объявления сбрасывает только тайлы, в которые попадали
+ * его старая и новая точка, по одному на каждый zoom.
+ */
+@Component
+public class AnnouncementTileIndex extends AnnouncementIndex {
+    public static final int MAX_ZOOM = 20;
+    private static final int BASE_ZOOM = 14;
+    private static final int CELLS_PER_TILE = 8;
+
+    private final Map<Integer, Point> points = new HashMap<>();
+    // Точки, разложенные по тайлам BASE_ZOOM: тайл меньшего zoom собирается из целых базовых тайлов
+    private final Map<Long, RoaringBitmap> baseTiles = new HashMap<>();
+    private final Map<Long, List<TileClusterResponse>> cache;
+
+    public AnnouncementTileIndex(AnnouncementRepository announcementRepository,
+                                 @Value("${tiles.cache-size:4096}") int cacheSize) {
+        super(announcementRepository);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, List<TileClusterResponse>> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    public static boolean isValidTile(int zoom, int x, int y) {
+        return zoom >= 0 && zoom <= MAX_ZOOM && x >= 0 && y >= 0 && x < (1 << zoom) && y < (1 << zoom);
+    }
+
+    public List<TileClusterResponse> tile(int zoom, int x, int y) {
+        long key = tileKey(zoom, x, y);
+        // Под read-lock инвалидация (write-lock) не может вклиниться между расчетом и записью в кэш
+        lock.readLock().lock();
+        try {
+            List<TileClusterResponse> clusters;
+            synchronized (cache) {
+                clusters = cache.get(key);
+            }
+            if (clusters != null) {
+                return clusters;
+            }
+            List<Point> tilePoints = new ArrayList<>();
+            candidates(zoom, x, y).forEach((int id) -> tilePoints.add(points.get(id)));
+            clusters = aggregate(zoom, x, y, tilePoints);
+            synchronized (cache) {
+                cache.put(key, clusters);
+            }
+            return clusters;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Кластеры тайла по произвольному списку объявлений, для запроса из БД пока индекс не готов.
+     */
+    public static List<TileClusterResponse> cluster(int zoom, int x, int y, List<Announcement> announcements) {
+        List<Point> tilePoints = new ArrayList<>(announcements.size());
+        for (Announcement announcement : announcements) {
+            Point point = Point.of(announcement);
+            if (point != null && tileX(point, zoom) == x && tileY(point, zoom) == y) {
+                tilePoints.add(point);
+            }
+        }
+        return aggregate(zoom, x, y, tilePoints);
+    }
+
+    private RoaringBitmap candidates(int zoom, int x, int y) {
+        RoaringBitmap candidates = new RoaringBitmap();
+        if (zoom >= BASE_ZOOM) {
+            int shift = zoom - BASE_ZOOM;
+            RoaringBitmap base = baseTiles.get(baseKey(x >> shift, y >> shift));
+            if (base != null) {
+                base.forEach((int id) -> {
+                    Point point = points.get(id);
+                    if (tileX(point, zoom) == x && tileY(point, zoom) == y) {
+                        candidates.add(id);
+                    }
+                });
+            }
+            return candidates;
+        }
+        int shift = BASE_ZOOM - zoom;
+        // Мелкий масштаб: дешевле пройти по непустым базовым тайлам, чем по всему диапазону
+        if (1L << (2 * shift) > baseTiles.size()) {
+            baseTiles.forEach((key, base) -> {
+                if ((int) (key >>> 32) >> shift == x && (int) (long) key >> shift == y) {
+                    candidates.or(base);
+                }
+            });
+            return candidates;
+        }
+        for (int baseX = x << shift; baseX < (x + 1) << shift; baseX++) {
+            for (int baseY = y << shift; baseY < (y + 1) << shift; baseY++) {
+                RoaringBitmap base = baseTiles.get(baseKey(baseX, baseY));
+                if (base != null) {
+                    candidates.or(base);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    private static List<TileClusterResponse> aggregate(int zoom, int x, int y, List<Point> tilePoints) {
+        int cells = CELLS_PER_TILE * CELLS_PER_TILE;
+        int[] count = new int[cells];
+        double[] latitudeSum = new double[cells];
+        double[] longitudeSum = new double[cells];
+        Integer[] minCost = new Integer[cells];
+        Integer[] maxCost = new Integer[cells];
+        int[] firstId = new int[cells];
+        double scale = (double) (1 << zoom) * CELLS_PER_TILE;
+        for (Point point : tilePoints) {
+            int cellX = Math.min(Math.max((int) (point.x * scale) - x * CELLS_PER_TILE, 0), CELLS_PER_TILE - 1);
+            int cellY = Math.min(Math.max((int) (point.y * scale) - y * CELLS_PER_TILE, 0), CELLS_PER_TILE - 1);
+            int cell = cellY * CELLS_PER_TILE + cellX;
+            if (count[cell]++ == 0) {
+                firstId[cell] = point.id;
+            }
+            latitudeSum[cell] += point.latitude;
+            longitudeSum[cell] += point.longitude;
+            if (point.cost != null) {
+                minCost[cell] = minCost[cell] == null ? point.cost : Math.min(minCost[cell], point.cost);
+                maxCost[cell] = maxCost[cell] == null ? point.cost : Math.max(maxCost[cell], point.cost);
+            }
+        }
+        List<TileClusterResponse> clusters = new ArrayList<>();
+        for (int cell = 0; cell < cells; cell++) {
+            if (count[cell] == 0) {
+                continue;
+            }
+            clusters.add(TileClusterResponse.builder()
+                    .latitude(latitudeSum[cell] / count[cell])
+                    .longitude(longitudeSum[cell] / count[cell])
+                    .count(count[cell])
+                    .minCost(minCost[cell])
+                    .maxCost(maxCost[cell])
+                    .announcementId(count[cell] == 1 ? (long) firstId[cell] : null)
+                    .build());
+        }
+        return List.copyOf(clusters);
+    }
+
+    @Override
+    protected void add(Announcement announcement) {
+        Point point = Point.of(announcement);
+        if (point == null) {
+            return;
+        }
+        points.put(point.id, point);
+        baseTiles.computeIfAbsent(baseKey(tileX(point, BASE_ZOOM), tileY(point, BASE_ZOOM)), key -> new RoaringBitmap()).add(point.id);
+        invalidate(point);
+    }
+
+    @Override
+    protected void remove(long announcementId) {
+        Point point = points.remove(Math.toIntExact(announcementId));
+        if (point == null) {
+            return;
+        }
+        long key = baseKey(tileX(point, BASE_ZOOM), tileY(point, BASE_ZOOM));
+        RoaringBitmap base = baseTiles.get(key);
+        if (base != null) {
+            base.remove(point.id);
+            if (base.isEmpty()) {
+                baseTiles.remove(key);
+            }
+        }
+        invalidate(point);
+    }
+
+    @Override
+    protected void clear() {
+        points.clear();
+        baseTiles.clear();
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    private void invalidate(Point point) {
+        synchronized (cache) {
+            for (int zoom = 0; zoom <= MAX_ZOOM; zoom++) {
+                cache.remove(tileKey(zoom, tileX(point, zoom), tileY(point, zoom)));
+            }
+        }
+    }
+
+    private static int tileX(Point point, int zoom) {
+        return (int) (point.x * (1 << zoom));
+    }
+
+    private static int tileY(Point point, int zoom) {
+        return (int) (point.y * (1 << zoom));
+    }
+
+    private static long baseKey(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    private static long tileKey(int zoom, int x, int y) {
+        return ((long) zoom << 48) | ((long) x << 24) | y;
+    }
+
+    private static class Point {
+        private final int id;
+        private final double latitude;
+        private final double longitude;
+        private final double x;
+        private final double y;
+        private final Integer cost;
+
+        private Point(int id, double latitude, double longitude, Integer cost) {
+            this.id = id;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.x = GeoUtils.mercatorX(longitude);
+            this.y = GeoUtils.mercatorY(latitude);
+            this.cost = cost;
+        }
+
+        private static Point of(Announcement announcement) {
+            double[] coordinates = GeoUtils.coordinates(announcement);
+            if (coordinates == null) {
+                return null;
+            }
+            return new Point(Math.toIntExact(announcement.getId()), coordinates[0], coordinates[1], announcement.getCost());
+        }
+    }
+}
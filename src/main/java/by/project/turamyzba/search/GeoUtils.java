@@ -0,0 +1,70 @@
+package by.project.turamyzba.search;
+
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.entities.GeocodeStatus;
+import by.project.turamyzba.mappers.AnnouncementMapper;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class GeoUtils {
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+    private static final double MAX_MERCATOR_LATITUDE = 85.05112878;
+
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /** Полуширина по широте прямоугольника, описанного вокруг круга radiusKm на той же сфере, что и distanceKm. */
+    public static double latitudeDelta(double radiusKm) {
+        return Math.toDegrees(radiusKm / EARTH_RADIUS_KM);
+    }
+
+    /** Полуширина по долготе того же прямоугольника: круг шире всего не на широте центра, а ближе к полюсу. */
+    public static double longitudeDelta(double latitude, double radiusKm) {
+        double sin = Math.sin(Math.min(radiusKm / EARTH_RADIUS_KM, Math.PI / 2)) / Math.cos(Math.toRadians(latitude));
+        return sin >= 1 ? 180 : Math.toDegrees(Math.asin(sin));
+    }
+
+    /** Долгота в долю ширины мира Web Mercator, [0, 1). */
+    public static double mercatorX(double longitude) {
+        return Math.min(Math.max((longitude + 180) / 360, 0), Math.nextDown(1.0));
+    }
+
+    /** Широта в долю высоты мира Web Mercator, [0, 1), сверху вниз. */
+    public static double mercatorY(double latitude) {
+        double sin = Math.sin(Math.toRadians(Math.min(Math.max(latitude, -MAX_MERCATOR_LATITUDE), MAX_MERCATOR_LATITUDE)));
+        double y = 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+        return Math.min(Math.max(y, 0), Math.nextDown(1.0));
+    }
+
+    /** Долгота левой границы тайла x на zoom. */
+    public static double tileLongitude(int x, int zoom) {
+        return (double) x / (1 << zoom) * 360 - 180;
+    }
+
+    /** Широта верхней границы тайла y на zoom. */
+    public static double tileLatitude(int y, int zoom) {
+        return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2.0 * y / (1 << zoom)))));
+    }
+
+    /**
+     * Координаты объявления: числовые поля, а для старых записей - разобранные coordsX/coordsY.
+     * Возвращает null, если координат нет (например, адрес еще не геокодирован).
+     */
+    public static double[] coordinates(Announcement announcement) {
+        if (announcement.getGeocodeStatus() == GeocodeStatus.PENDING) {
+            return null;
+        }
+        Double latitude = announcement.getLatitude() != null ? announcement.getLatitude() : AnnouncementMapper.parseCoordinate(announcement.getCoordsX());
+        Double longitude = announcement.getLongitude() != null ? announcement.getLongitude() : AnnouncementMapper.parseCoordinate(announcement.getCoordsY());
+        if (latitude == null || longitude == null) {
+            return null;
+        }
+        return new double[]{latitude, longitude};
+    }
+}
@@ -0,0 +1,138 @@
+package by.project.turamyzba.search;
+
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.repositories.AnnouncementRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Рейтинг выгодных предложений: скидка цены за квадратный метр относительно медианы по району (регион + район).
+ * Цены за м² по району хранятся в SortedValues, поэтому медиана и самые дешевые объявления района доступны сразу.
+ * Рейтинг пересчитывается после каждого изменения и отдается готовым списком без блокировок.
+ */
+@Component
+public class GreatDealsIndex extends AnnouncementIndex {
+    public static final int RANKING_SIZE = 50;
+    // Медиана по двум-трем объявлениям ничего не говорит о рынке района
+    private static final int MIN_DISTRICT_SIZE = 5;
+
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final Map<String, SortedValues> districts = new HashMap<>();
+
+    private volatile List<Long> ranking = List.of();
+    private volatile long refreshedAt;
+
+    public GreatDealsIndex(AnnouncementRepository announcementRepository, MeterRegistry meterRegistry) {
+        super(announcementRepository);
+        Gauge.builder("announcements.great_deals.staleness", this, GreatDealsIndex::stalenessSeconds)
+                .description("Seconds since the great deals ranking was last recomputed")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /** id объявлений от самой большой скидки к меньшей, не больше RANKING_SIZE. */
+    public List<Long> ranking(int limit) {
+        List<Long> current = ranking;
+        return current.subList(0, Math.min(limit, current.size()));
+    }
+
+    private double stalenessSeconds() {
+        return isReady() ? (System.currentTimeMillis() - refreshedAt) / 1000.0 : Double.NaN;
+    }
+
+    @Override
+    protected void add(Announcement announcement) {
+        Entry entry = Entry.of(announcement);
+        if (entry == null) {
+            return;
+        }
+        entries.put(entry.id, entry);
+        districts.computeIfAbsent(entry.district, key -> new SortedValues()).add(entry.pricePerMeter, entry.id);
+    }
+
+    @Override
+    protected void remove(long announcementId) {
+        Entry entry = entries.remove(Math.toIntExact(announcementId));
+        if (entry == null) {
+            return;
+        }
+        SortedValues district = districts.get(entry.district);
+        district.remove(entry.pricePerMeter, entry.id);
+        if (district.size() == 0) {
+            districts.remove(entry.district);
+        }
+    }
+
+    @Override
+    protected void clear() {
+        entries.clear();
+        districts.clear();
+    }
+
+    @Override
+    protected void afterChange() {
+        // Лучшие сделки района - его самые дешевые за м², поэтому достаточно первых RANKING_SIZE каждого района
+        List<Deal> deals = new ArrayList<>();
+        for (SortedValues district : districts.values()) {
+            if (district.size() < MIN_DISTRICT_SIZE) {
+                continue;
+            }
+            double median = district.median();
+            for (int i = 0; i < Math.min(RANKING_SIZE, district.size()); i++) {
+                double discount = 1 - district.value(i) / median;
+                if (discount <= 0) {
+                    break;
+                }
+                deals.add(new Deal(district.id(i), discount));
+            }
+        }
+        deals.sort(Comparator.comparingDouble((Deal deal) -> deal.discount).reversed()
+                .thenComparing(Comparator.comparingInt((Deal deal) -> deal.id).reversed()));
+        List<Long> top = new ArrayList<>(Math.min(RANKING_SIZE, deals.size()));
+        for (int i = 0; i < Math.min(RANKING_SIZE, deals.size()); i++) {
+            top.add((long) deals.get(i).id);
+        }
+        ranking = List.copyOf(top);
+        refreshedAt = System.currentTimeMillis();
+    }
+
+    private static class Entry {
+        private final int id;
+        private final String district;
+        private final double pricePerMeter;
+
+        private Entry(int id, String district, double pricePerMeter) {
+            this.id = id;
+            this.district = district;
+            this.pricePerMeter = pricePerMeter;
+        }
+
+        private static Entry of(Announcement announcement) {
+            Integer cost = announcement.getCost();
+            Integer area = announcement.getAreaOfTheApartment();
+            if (cost == null || cost <= 0 || area == null || area <= 0
+                    || announcement.getDistrict() == null || announcement.getDistrict().isEmpty()) {
+                return null;
+            }
+            return new Entry(Math.toIntExact(announcement.getId()), announcement.getRegion() + "|" + announcement.getDistrict(),
+                    (double) cost / area);
+        }
+    }
+
+    private static class Deal {
+        private final int id;
+        private final double discount;
+
+        private Deal(int id, double discount) {
+            this.id = id;
+            this.discount = discount;
+        }
+    }
+}
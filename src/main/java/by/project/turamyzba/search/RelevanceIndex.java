@@ -0,0 +1,263 @@
+package by.project.turamyzba.search;
+
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.repositories.AnnouncementRepository;
+import org.hibernate.Hibernate;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Оценка для сортировки "Самые подходящие".
+ * Базовая оценка считается при записи: свежесть по createdAt, цена за м² относительно медианы района,
+ * количество фото и заполненность объявления. Объявления хранятся по убыванию базовой оценки.
+ * При запросе добавляется бонус за совпадение пола и возраста пользователя, не больше MAX_PERSONAL_BONUS,
+ * поэтому обход останавливается, как только базовая оценка + бонус не может попасть в страницу.
+ */
+@Component
+public class RelevanceIndex extends AnnouncementIndex {
+    private static final String ANY_GENDER = "Любой";
+    private static final double SECONDS_PER_FRESHNESS_POINT = 7 * 24 * 3600;
+    private static final int MAX_PHOTOS = 5;
+    private static final int MIN_DISTRICT_SIZE = 5;
+    private static final double MAX_PERSONAL_BONUS = 2;
+    private static final int COUNT_BATCH_SIZE = 1000;
+
+    private final AnnouncementRepository announcementRepository;
+
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final Map<String, SortedValues> districtPrices = new HashMap<>();
+    // Минус базовая оценка: по возрастанию значения идут самые подходящие
+    private final SortedValues ranking = new SortedValues();
+    private final Set<String> dirtyDistricts = new HashSet<>();
+    private final List<Entry> unranked = new ArrayList<>();
+
+    public RelevanceIndex(AnnouncementRepository announcementRepository) {
+        super(announcementRepository);
+        this.announcementRepository = announcementRepository;
+    }
+
+    /**
+     * Страница id по убыванию оценки для пользователя.
+     * @param allowed если не null, в выдачу попадают только эти id (результат фильтра).
+     * @param gender пол пользователя, null для анонимного.
+     * @param age возраст пользователя, null если неизвестен.
+     */
+    public List<Long> search(RoaringBitmap allowed, String gender, Integer age, long offset, int limit) {
+        long size = Math.addExact(offset, limit);
+        Comparator<Hit> order = Comparator.comparingDouble((Hit hit) -> hit.score).thenComparingInt(hit -> hit.id);
+        PriorityQueue<Hit> top;
+        lock.readLock().lock();
+        try {
+            long candidates = allowed == null ? ranking.size() : Math.min(ranking.size(), allowed.getLongCardinality());
+            if (offset >= candidates) {
+                return List.of();
+            }
+            // Емкость по числу кандидатов, а не по номеру страницы из запроса
+            top = new PriorityQueue<>((int) Math.min(size, candidates) + 1, order);
+            for (int i = 0; i < ranking.size(); i++) {
+                double base = -ranking.value(i);
+                if (top.size() == size && base + MAX_PERSONAL_BONUS < top.peek().score) {
+                    break;
+                }
+                int id = ranking.id(i);
+                if (allowed != null && !allowed.contains(id)) {
+                    continue;
+                }
+                Hit hit = new Hit(id, base + entries.get(id).personalBonus(gender, age));
+                if (top.size() < size) {
+                    top.add(hit);
+                } else if (order.compare(hit, top.peek()) > 0) {
+                    top.poll();
+                    top.add(hit);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Hit> hits = new ArrayList<>(top);
+        hits.sort(order.reversed());
+        List<Long> ids = new ArrayList<>(limit);
+        for (int i = (int) offset; i < hits.size(); i++) {
+            ids.add((long) hits.get(i).id);
+        }
+        return ids;
+    }
+
+    @Override
+    protected void add(Announcement announcement) {
+        Entry entry = new Entry(announcement);
+        entries.put(entry.id, entry);
+        if (entry.pricePerMeter != null) {
+            districtPrices.computeIfAbsent(entry.district, key -> new SortedValues()).add(entry.pricePerMeter, entry.id);
+            dirtyDistricts.add(entry.district);
+        }
+        unranked.add(entry);
+    }
+
+    @Override
+    protected void remove(long announcementId) {
+        Entry entry = entries.remove(Math.toIntExact(announcementId));
+        if (entry == null) {
+            return;
+        }
+        if (entry.ranked) {
+            ranking.remove(-entry.score, entry.id);
+        }
+        unranked.remove(entry);
+        if (entry.pricePerMeter != null) {
+            SortedValues prices = districtPrices.get(entry.district);
+            prices.remove(entry.pricePerMeter, entry.id);
+            if (prices.size() == 0) {
+                districtPrices.remove(entry.district);
+            }
+            dirtyDistricts.add(entry.district);
+        }
+    }
+
+    @Override
+    protected void clear() {
+        entries.clear();
+        districtPrices.clear();
+        ranking.clear();
+        dirtyDistricts.clear();
+        unranked.clear();
+    }
+
+    @Override
+    protected void afterChange() {
+        loadPhotoCounts();
+        // Изменилась медиана района - пересчитываем всех его объявлений, остальные оценки не зависят от соседей
+        for (String district : dirtyDistricts) {
+            SortedValues prices = districtPrices.get(district);
+            if (prices == null) {
+                continue;
+            }
+            double median = prices.size() >= MIN_DISTRICT_SIZE ? prices.median() : Double.NaN;
+            for (int i = 0; i < prices.size(); i++) {
+                Entry entry = entries.get(prices.id(i));
+                entry.medianPricePerMeter = median;
+                if (entry.ranked) {
+                    ranking.remove(-entry.score, entry.id);
+                    entry.ranked = false;
+                }
+                rank(entry);
+            }
+        }
+        for (Entry entry : unranked) {
+            if (!entry.ranked) {
+                rank(entry);
+            }
+        }
+        dirtyDistricts.clear();
+        unranked.clear();
+        ranking.sort();
+    }
+
+    private void rank(Entry entry) {
+        entry.score = entry.baseScore();
+        ranking.add(-entry.score, entry.id);
+        entry.ranked = true;
+    }
+
+    // При первоначальной загрузке фото не подгружены, считаем их одним запросом на пачку
+    private void loadPhotoCounts() {
+        List<Long> ids = new ArrayList<>();
+        for (Entry entry : unranked) {
+            if (entry.photoCount < 0) {
+                entry.photoCount = 0;
+                ids.add((long) entry.id);
+            }
+        }
+        for (int from = 0; from < ids.size(); from += COUNT_BATCH_SIZE) {
+            for (Object[] row : announcementRepository.countPhotos(ids.subList(from, Math.min(from + COUNT_BATCH_SIZE, ids.size())))) {
+                entries.get(Math.toIntExact((Long) row[0])).photoCount = ((Long) row[1]).intValue();
+            }
+        }
+    }
+
+    private static class Entry {
+        private final int id;
+        private final String district;
+        private final Double pricePerMeter;
+        private final long createdAt;
+        private final double completeness;
+        private final String gender;
+        private final Integer minAge;
+        private final Integer maxAge;
+        private int photoCount;
+        private double medianPricePerMeter = Double.NaN;
+        private double score;
+        private boolean ranked;
+
+        private Entry(Announcement announcement) {
+            this.id = Math.toIntExact(announcement.getId());
+            this.district = announcement.getRegion() + "|" + announcement.getDistrict();
+            Integer cost = announcement.getCost();
+            Integer area = announcement.getAreaOfTheApartment();
+            this.pricePerMeter = cost != null && cost > 0 && area != null && area > 0 && announcement.getDistrict() != null
+                    ? (double) cost / area : null;
+            LocalDateTime created = announcement.getCreatedAt() != null ? announcement.getCreatedAt() : LocalDateTime.now();
+            this.createdAt = created.toEpochSecond(ZoneOffset.UTC);
+            this.photoCount = Hibernate.isInitialized(announcement.getPhotos())
+                    ? (announcement.getPhotos() == null ? 0 : announcement.getPhotos().size()) : -1;
+            this.completeness = Stream.of(announcement.getApartmentsInfo(), announcement.getAddress(), announcement.getMicroDistrict(),
+                            announcement.getQuantityOfRooms(), announcement.getTypeOfHousing(), announcement.getArriveDate(),
+                            announcement.getNumberOfFloor(), announcement.getMaxFloorInTheBuilding(), announcement.getAreaOfTheApartment(),
+                            announcement.getMinAge(), announcement.getMaxAge(), announcement.getArePetsAllowed(),
+                            announcement.getIsCommunalServiceIncluded(), announcement.getLatitude())
+                    .filter(value -> value != null && !(value instanceof String string && string.isBlank()))
+                    .count() / 14.0;
+            this.gender = announcement.getSelectedGender();
+            this.minAge = announcement.getMinAge();
+            this.maxAge = announcement.getMaxAge();
+        }
+
+        // Неделя свежести = 1 балл; цена, фото и заполненность дают до 1 балла каждое
+        private double baseScore() {
+            double score = createdAt / SECONDS_PER_FRESHNESS_POINT;
+            if (pricePerMeter != null && !Double.isNaN(medianPricePerMeter)) {
+                double discount = 1 - pricePerMeter / medianPricePerMeter;
+                score += Math.max(-0.5, Math.min(0.5, discount)) * 2;
+            }
+            score += (double) Math.min(photoCount, MAX_PHOTOS) / MAX_PHOTOS;
+            score += completeness;
+            return score;
+        }
+
+        private double personalBonus(String requesterGender, Integer requesterAge) {
+            double bonus = 0;
+            // Пол "Любой" у пользователя ничего не говорит о совпадении, как и неизвестный пол
+            if (requesterGender != null && !ANY_GENDER.equals(requesterGender) && gender != null) {
+                bonus += ANY_GENDER.equals(gender) || gender.equalsIgnoreCase(requesterGender) ? 1 : -1;
+            }
+            if (requesterAge != null && (minAge != null || maxAge != null)) {
+                boolean fits = (minAge == null || requesterAge >= minAge) && (maxAge == null || requesterAge <= maxAge);
+                bonus += fits ? 1 : -1;
+            }
+            return bonus;
+        }
+    }
+
+    private static class Hit {
+        private final int id;
+        private final double score;
+
+        private Hit(int id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+}
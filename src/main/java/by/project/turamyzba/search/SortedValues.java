@@ -0,0 +1,107 @@
+package by.project.turamyzba.search;
+
+import java.util.Arrays;
+
+/**
+ * Пары (значение, id), отсортированные по возрастанию значения, затем id.
+ * Вставка и удаление за O(n) сдвигом массива, зато медиана и первые k элементов доступны сразу.
+ * Новый или очищенный массив только дописывает пары в конец, порядок восстанавливает одна сортировка в sort():
+ * полная загрузка n пар стоит O(n log n), а не O(n²). Читать value/id можно только после sort().
+ */
+class SortedValues {
+    private double[] values = new double[16];
+    private int[] ids = new int[16];
+    private int size;
+    private boolean sorted;
+
+    void add(double value, int id) {
+        if (size == ids.length) {
+            values = Arrays.copyOf(values, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        if (!sorted) {
+            values[size] = value;
+            ids[size] = id;
+            size++;
+            return;
+        }
+        int position = position(value, id);
+        System.arraycopy(values, position, values, position + 1, size - position);
+        System.arraycopy(ids, position, ids, position + 1, size - position);
+        values[position] = value;
+        ids[position] = id;
+        size++;
+    }
+
+    void remove(double value, int id) {
+        sort();
+        int position = position(value, id);
+        if (position < size && ids[position] == id) {
+            System.arraycopy(values, position + 1, values, position, size - position - 1);
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            size--;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    double value(int index) {
+        return values[index];
+    }
+
+    int id(int index) {
+        return ids[index];
+    }
+
+    double median() {
+        sort();
+        return size % 2 == 1 ? values[size / 2] : (values[size / 2 - 1] + values[size / 2]) / 2;
+    }
+
+    void clear() {
+        size = 0;
+        sorted = false;
+    }
+
+    /** Сортирует пары, дописанные после clear(); дальше add вставляет на место. */
+    void sort() {
+        if (sorted) {
+            return;
+        }
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (left, right) -> {
+            int compare = Double.compare(values[left], values[right]);
+            return compare != 0 ? compare : Integer.compare(ids[left], ids[right]);
+        });
+        double[] sortedValues = new double[Math.max(16, size)];
+        int[] sortedIds = new int[Math.max(16, size)];
+        for (int i = 0; i < size; i++) {
+            sortedValues[i] = values[order[i]];
+            sortedIds[i] = ids[order[i]];
+        }
+        values = sortedValues;
+        ids = sortedIds;
+        sorted = true;
+    }
+
+    // Первая позиция, где (значение, id) не меньше искомой пары
+    private int position(double value, int id) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int compare = Double.compare(values[middle], value);
+            if (compare < 0 || compare == 0 && ids[middle] < id) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,89 @@
+package by.project.turamyzba.search;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Токенизация и облегченный стемминг для русского и казахского текста объявлений.
+ * Отрезает типичные падежные, числовые и притяжательные окончания, оставляя основу не короче 3 букв.
+ * Казахские аффиксы снимаются только у слов со специфичными казахскими буквами,
+ * чтобы не калечить русские слова на -да, -не, -та.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class TextAnalyzer {
+    private static final int MIN_STEM_LENGTH = 3;
+    private static final String KAZAKH_LETTERS = "әғқңөұүһі";
+
+    private static final String[] RUSSIAN_ENDINGS = {
+            "ового", "евого", "иями", "оями",
+            "ами", "ями", "ого", "его", "ому", "ему", "ыми", "ими", "ией", "ием", "иях", "иям", "ах", "ях",
+            "ая", "яя", "ое", "ее", "ые", "ие", "ый", "ий", "ой", "ей", "ую", "юю", "ом", "ем", "ам", "ям",
+            "ов", "ев", "ию", "ия", "ии", "ть", "ся",
+            "а", "я", "о", "е", "ы", "и", "у", "ю", "ь", "й"
+    };
+
+    private static final String[] KAZAKH_SUFFIXES = {
+            "лардың", "лердің", "дардың", "дердің", "тардың", "тердің",
+            "ларға", "лерге", "дарға", "дерге", "тарға", "терге",
+            "ларда", "лерде", "дарда", "дерде", "тарда", "терде",
+            "лары", "лері", "дары", "дері", "тары", "тері",
+            "ның", "нің", "дың", "дің", "тың", "тің",
+            "дан", "ден", "тан", "тен", "нан", "нен",
+            "мен", "бен", "пен",
+            "лар", "лер", "дар", "дер", "тар", "тер",
+            "ға", "ге", "қа", "ке", "да", "де", "та", "те",
+            "ны", "ні", "ды", "ді", "ты", "ті", "сы", "сі",
+            "ы", "і"
+    };
+
+    public static List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+        String normalized = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean letter = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                String token = normalized.substring(start, i);
+                if (token.length() > 1) {
+                    terms.add(stem(token));
+                }
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    static String stem(String word) {
+        if (word.length() <= MIN_STEM_LENGTH || Character.isDigit(word.charAt(0))) {
+            return word;
+        }
+        return stripFirst(word, isKazakh(word) ? KAZAKH_SUFFIXES : RUSSIAN_ENDINGS);
+    }
+
+    private static boolean isKazakh(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (KAZAKH_LETTERS.indexOf(word.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripFirst(String word, String[] suffixes) {
+        for (String suffix : suffixes) {
+            if (word.endsWith(suffix) && word.length() - suffix.length() >= MIN_STEM_LENGTH) {
+                return word.substring(0, word.length() - suffix.length());
+            }
+        }
+        return word;
+    }
+}
@@ -0,0 +1,15 @@
+package by.project.turamyzba.services;
+
+import by.project.turamyzba.dto.responses.BulkImportResponse;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface AnnouncementImportService {
+    /**
+     * Импорт объявлений текущего пользователя из CSV (text/csv) или NDJSON (application/x-ndjson).
+     * Поток читается построчно, невалидные записи не прерывают импорт и попадают в отчет.
+     */
+    BulkImportResponse importAnnouncements(InputStream input, MediaType format) throws IOException;
+}
@@ -3,25 +3,39 @@ package by.project.turamyzba.services;
 
 import by.project.turamyzba.dto.requests.AnnouncementFilterRequest;
 import by.project.turamyzba.dto.requests.AnnouncementRequest;
+import by.project.turamyzba.dto.requests.GeoSearchRequest;
 import by.project.turamyzba.dto.responses.AnnouncementResponse;
+import by.project.turamyzba.dto.responses.AnnouncementSliceResponse;
+import by.project.turamyzba.dto.responses.TileClusterResponse;
 import by.project.turamyzba.entities.Announcement;
 import org.apache.coyote.BadRequestException;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 import java.io.IOException;
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface AnnouncementService {
     void createAnnouncement(AnnouncementRequest announcementRequest) throws IOException;
-    Page<Announcement> getAllRoommateListings(Pageable pageable);
-    Page<Announcement> searchRoommateListings(String region, Integer minPrice, Integer maxPrice, String gender, Integer roommatesCount, Pageable pageable);
+    List<AnnouncementResponse> getGreatDeals(int limit);
+    List<AnnouncementResponse> getRelevantRoommateListings(String region, Integer minPrice, Integer maxPrice, String gender, Integer roommatesCount, Pageable pageable);
+    List<AnnouncementResponse> getRoommateListings(String region, Integer minPrice, Integer maxPrice, String gender, Integer roommatesCount, Pageable pageable);
     AnnouncementResponse getAnnouncementById(Long id);
+    Optional<Instant> getAnnouncementVersion(Long id);
     List<AnnouncementResponse> getUserAnnouncements();
     List<AnnouncementResponse> getUserArchiveAnnouncements();
     void archiveAnnouncement(Long announcementId) throws BadRequestException;
     AnnouncementResponse updateAnnouncement(Long id, AnnouncementRequest announcementRequest);
-    List<Announcement> getFilteredAnnouncements(AnnouncementFilterRequest request);
+    List<AnnouncementResponse> getFilteredAnnouncements(AnnouncementFilterRequest request);
+    void streamFilteredAnnouncements(AnnouncementFilterRequest request, Consumer<AnnouncementResponse> consumer);
+    List<AnnouncementResponse> searchAnnouncements(AnnouncementFilterRequest request, String query, Pageable pageable);
+    List<AnnouncementResponse> findNearby(AnnouncementFilterRequest request, GeoSearchRequest geo, Pageable pageable);
+    List<TileClusterResponse> getTileClusters(int zoom, int x, int y);
+    AnnouncementSliceResponse scrollRoommateListings(String region, Integer minPrice, Integer maxPrice, String gender, Integer roommatesCount, Sort sort, String cursor, int limit);
+    AnnouncementSliceResponse scrollFilteredAnnouncements(AnnouncementFilterRequest request, Sort sort, String cursor, int limit);
     void restoreAnnouncement(Long announcementId) throws BadRequestException;
     void deleteAnnouncement(Long announcementId) throws BadRequestException;
     AnnouncementResponse toAnnouncementResponse(Announcement announcement);
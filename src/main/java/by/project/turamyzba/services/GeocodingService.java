@@ -0,0 +1,8 @@
+package by.project.turamyzba.services;
+
+public interface GeocodingService {
+    /**
+     * Координаты адреса {lat, lon} в виде строк, как их отдает 2GIS, или пустой массив, если адрес не найден.
+     */
+    String[] getCoordinates(String address);
+}
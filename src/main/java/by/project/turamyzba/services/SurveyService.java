@@ -9,5 +9,5 @@ import java.util.List;
 
 public interface SurveyService {
     List<QuestionDTO> getAllQuestions();
-    void saveUserAnswers(User user, List<UserAnswerDTO> userAnswers);
+    void saveUserAnswers(Long userId, List<UserAnswerDTO> userAnswers);
 }
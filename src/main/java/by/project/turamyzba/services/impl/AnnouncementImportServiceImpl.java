@@ -0,0 +1,280 @@
+package by.project.turamyzba.services.impl;
+
+import by.project.turamyzba.dto.requests.AnnouncementRequest;
+import by.project.turamyzba.dto.responses.BulkImportResponse;
+import by.project.turamyzba.dto.responses.BulkImportRowResult;
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.entities.User;
+import by.project.turamyzba.events.AnnouncementBatchChangedEvent;
+import by.project.turamyzba.events.AnnouncementChangedEvent;
+import by.project.turamyzba.mappers.AnnouncementMapper;
+import by.project.turamyzba.services.AnnouncementImportService;
+import by.project.turamyzba.services.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Пакетный импорт объявлений. Записи валидируются по правилам AnnouncementRequest и пишутся пачками
+ * по chunk-size в отдельных транзакциях с JDBC batching. Координаты не запрашиваются:
+ * объявления сохраняются со статусом PENDING, GeocodingWorker геокодирует их пачками, по одному запросу на адрес.
+ */
+@Slf4j
+@Service
+public class AnnouncementImportServiceImpl implements AnnouncementImportService {
+    private static final MediaType TEXT_CSV = MediaType.valueOf("text/csv");
+    // Списки в ячейке CSV: url1|url2|url3
+    private static final String CSV_LIST_SEPARATOR = "\\|";
+    private static final Set<String> LIST_FIELDS = Set.of("images", "preferences");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transaction;
+    private final int chunkSize;
+    private final int maxRows;
+
+    public AnnouncementImportServiceImpl(@Value("${announcement.import.chunk-size:500}") int chunkSize,
+                                         @Value("${announcement.import.max-rows:20000}") int maxRows,
+                                         UserService userService,
+                                         ObjectMapper objectMapper,
+                                         Validator validator,
+                                         ApplicationEventPublisher eventPublisher,
+                                         PlatformTransactionManager transactionManager) {
+        this.chunkSize = chunkSize;
+        this.maxRows = maxRows;
+        this.userService = userService;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.eventPublisher = eventPublisher;
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public BulkImportResponse importAnnouncements(InputStream input, MediaType format) throws IOException {
+        Long userId = userService.getCurrentUserId();
+        boolean csv = TEXT_CSV.includes(format);
+
+        List<BulkImportRowResult> results = new ArrayList<>();
+        List<Pending> chunk = new ArrayList<>(chunkSize);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            List<String> header = csv ? readCsvRecord(reader) : null;
+            int row = 0;
+            while (true) {
+                String ndjsonLine = null;
+                List<String> csvRecord = null;
+                if (csv) {
+                    try {
+                        csvRecord = readCsvRecord(reader);
+                    } catch (EOFException e) {
+                        // Незакрытая кавычка забрала остаток файла - дальше записей нет
+                        results.add(BulkImportRowResult.builder().row(++row).imported(false)
+                                .errors(List.of("Malformed row: " + e.getMessage())).build());
+                        break;
+                    }
+                    if (csvRecord == null) {
+                        break;
+                    }
+                } else {
+                    ndjsonLine = reader.readLine();
+                    if (ndjsonLine == null) {
+                        break;
+                    }
+                    if (ndjsonLine.isBlank()) {
+                        continue;
+                    }
+                }
+
+                BulkImportRowResult result = BulkImportRowResult.builder().row(++row).imported(false).build();
+                results.add(result);
+                if (row > maxRows) {
+                    result.setErrors(List.of("Row limit of " + maxRows + " exceeded, the rest of the file was not read"));
+                    break;
+                }
+
+                AnnouncementRequest request;
+                try {
+                    request = csv ? fromCsv(header, csvRecord) : objectMapper.readValue(ndjsonLine, AnnouncementRequest.class);
+                } catch (IOException | IllegalArgumentException e) {
+                    result.setErrors(List.of("Malformed row: " + e.getMessage()));
+                    continue;
+                }
+                Set<ConstraintViolation<AnnouncementRequest>> violations = validator.validate(request);
+                if (!violations.isEmpty()) {
+                    result.setErrors(violations.stream()
+                            .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                            .sorted()
+                            .toList());
+                    continue;
+                }
+
+                chunk.add(new Pending(request, result));
+                if (chunk.size() == chunkSize) {
+                    save(chunk, userId);
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            save(chunk, userId);
+        }
+
+        int imported = (int) results.stream().filter(BulkImportRowResult::getImported).count();
+        log.info("Imported {} of {} announcements for user {}", imported, results.size(), userId);
+        return BulkImportResponse.builder()
+                .total(results.size())
+                .imported(imported)
+                .failed(results.size() - imported)
+                .rows(results)
+                .build();
+    }
+
+    private void save(List<Pending> chunk, Long userId) {
+        try {
+            transaction.executeWithoutResult(status -> {
+                Session session = entityManager.unwrap(Session.class);
+                session.setJdbcBatchSize(chunkSize);
+                User user = entityManager.find(User.class, userId);
+                List<Announcement> announcements = new ArrayList<>(chunk.size());
+                for (Pending pending : chunk) {
+                    Announcement announcement = AnnouncementMapper.toEntity(pending.request);
+                    AnnouncementMapper.markGeocodePending(announcement);
+                    announcement.setPhotos(AnnouncementMapper.toImages(pending.request.getImages(), announcement));
+                    announcement.setUser(user);
+                    entityManager.persist(announcement);
+                    announcements.add(announcement);
+                }
+                entityManager.flush();
+                List<AnnouncementChangedEvent> changes = new ArrayList<>(chunk.size());
+                for (int i = 0; i < chunk.size(); i++) {
+                    chunk.get(i).result.setImported(true);
+                    chunk.get(i).result.setAnnouncementId(announcements.get(i).getId());
+                    changes.add(new AnnouncementChangedEvent(announcements.get(i)));
+                }
+                // Одно событие на пачку: индексы, карточки и кэш обновляются после коммита одним проходом
+                eventPublisher.publishEvent(new AnnouncementBatchChangedEvent(changes));
+                entityManager.clear();
+            });
+        } catch (RuntimeException e) {
+            if (chunk.size() > 1) {
+                // Пачка откатилась целиком - сохраняем ее записи по одной, чтобы ошибку получила только плохая запись
+                log.warn("Failed to import a chunk of {} announcements, retrying one by one: {}", chunk.size(), e.getMessage());
+                for (Pending pending : chunk) {
+                    save(List.of(pending), userId);
+                }
+                return;
+            }
+            log.error("Failed to import announcement: {}", e.getMessage());
+            Pending pending = chunk.get(0);
+            pending.result.setImported(false);
+            pending.result.setAnnouncementId(null);
+            pending.result.setErrors(List.of("Failed to save: " + e.getMessage()));
+        }
+    }
+
+    private AnnouncementRequest fromCsv(List<String> header, List<String> record) throws IOException {
+        if (header == null) {
+            throw new IllegalArgumentException("CSV header is missing");
+        }
+        if (record.size() > header.size()) {
+            throw new IllegalArgumentException("Expected at most " + header.size() + " columns, got " + record.size());
+        }
+        ObjectNode node = objectMapper.createObjectNode();
+        for (int i = 0; i < record.size(); i++) {
+            String name = header.get(i).trim();
+            String value = record.get(i).trim();
+            if (value.isEmpty()) {
+                continue;
+            }
+            if (LIST_FIELDS.contains(name)) {
+                ArrayNode values = node.putArray(name);
+                for (String item : value.split(CSV_LIST_SEPARATOR)) {
+                    if (!item.isBlank()) {
+                        values.add(item.trim());
+                    }
+                }
+            } else {
+                node.put(name, value);
+            }
+        }
+        return objectMapper.treeToValue(node, AnnouncementRequest.class);
+    }
+
+    /**
+     * Одна запись CSV по RFC 4180: поля в кавычках могут содержать запятые, переводы строк и "" как кавычку.
+     * Возвращает null в конце файла, EOFException - если файл кончился внутри поля в кавычках.
+     */
+    static List<String> readCsvRecord(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        while (line != null && line.isBlank()) {
+            line = reader.readLine();
+        }
+        if (line == null) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            if (!quoted) {
+                break;
+            }
+            line = reader.readLine();
+            if (line == null) {
+                throw new EOFException("Unterminated quoted field at end of file");
+            }
+            field.append('\n');
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private record Pending(AnnouncementRequest request, BulkImportRowResult result) {
+    }
+}
@@ -2,125 +2,168 @@ package by.project.turamyzba.services.impl;
 
 import by.project.turamyzba.dto.requests.AnnouncementFilterRequest;
 import by.project.turamyzba.dto.requests.AnnouncementRequest;
+import by.project.turamyzba.dto.requests.GeoSearchRequest;
 import by.project.turamyzba.dto.responses.AnnouncementResponse;
+import by.project.turamyzba.dto.responses.AnnouncementSliceResponse;
+import by.project.turamyzba.dto.responses.TileClusterResponse;
+import by.project.turamyzba.events.AnnouncementChangedEvent;
+import by.project.turamyzba.exceptions.InvalidCursorException;
+import by.project.turamyzba.jwt.AuthenticatedUser;
 import by.project.turamyzba.mappers.AnnouncementMapper;
+import by.project.turamyzba.pagination.AnnouncementCursor;
+import by.project.turamyzba.readmodel.AnnouncementCardProjection;
 import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.entities.GeocodeStatus;
 import by.project.turamyzba.entities.Image;
 import by.project.turamyzba.entities.User;
 import by.project.turamyzba.repositories.AnnouncementRepository;
-import by.project.turamyzba.repositories.UserRepository;
+import by.project.turamyzba.search.AnnouncementFacetIndex;
+import by.project.turamyzba.search.AnnouncementGeoIndex;
+import by.project.turamyzba.search.AnnouncementTextIndex;
+import by.project.turamyzba.search.AnnouncementTileIndex;
+import by.project.turamyzba.search.GeoUtils;
+import by.project.turamyzba.search.GreatDealsIndex;
+import by.project.turamyzba.search.RelevanceIndex;
+import by.project.turamyzba.search.TextAnalyzer;
 import by.project.turamyzba.services.AnnouncementService;
 import by.project.turamyzba.services.UserService;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.JoinType;
 import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.coyote.BadRequestException;
-import org.modelmapper.ModelMapper;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.Page;
+import org.hibernate.jpa.HibernateHints;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.client.RestTemplate;
 
 import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class AnnouncementServiceImpl implements AnnouncementService {
+    private static final int ID_BATCH_SIZE = 1000;
+    private static final int STREAM_FETCH_SIZE = 500;
+    // Совпадает с @BatchSize на photos и preferences: коллекции пачки грузятся одним запросом
+    private static final int STREAM_BATCH_SIZE = 50;
 
-    @Value("${2gis.api.key}")
-    private String apiKey;
-
-    @Value("${2gis.api.url}")
-    private String apiUrl;
+    @PersistenceContext
+    private EntityManager entityManager;
 
     private final UserService userService;
 
-    private final ModelMapper modelMapper;
-
     private final AnnouncementRepository announcementRepository;
 
-    private final UserRepository userRepository;
+    private final AnnouncementFacetIndex facetIndex;
+
+    private final AnnouncementTextIndex textIndex;
+
+    private final AnnouncementGeoIndex geoIndex;
+
+    private final AnnouncementTileIndex tileIndex;
+
+    private final GreatDealsIndex greatDealsIndex;
+
+    private final RelevanceIndex relevanceIndex;
+
+    private final AnnouncementCardProjection cardProjection;
+
+    private final ApplicationEventPublisher eventPublisher;
 
-    private final RestTemplate restTemplate;
     @Transactional
     @Override
     public void createAnnouncement(AnnouncementRequest announcementRequest) throws IOException {
-        String[] coords = getCoordsFromAddress(announcementRequest.getRegion() + ", " + announcementRequest.getDistrict() + ", " + announcementRequest.getMicroDistrict() + ", " + announcementRequest.getAddress());
+        // Ссылка по id из principal: автору нужен только внешний ключ, SELECT users не выполняется
+        User user = entityManager.getReference(User.class, userService.getCurrentUserId());
 
-        if (coords.length < 2) {
-            throw new BadRequestException("Unable to determine coordinates for the given address");
-        }
-        User user =  userRepository.findByEmail(userService.getCurrentUser().getUsername())
-                .orElseThrow(() -> new IllegalArgumentException("User not found"));
-
-        log.info("User: {}", user);
+        log.info("User: {}", user.getId());
 
-        Announcement announcement = AnnouncementMapper.toEntity(announcementRequest, coords);
+        Announcement announcement = AnnouncementMapper.toEntity(announcementRequest);
+        // Координаты заполнит GeocodingWorker после коммита, 2GIS не держит соединение с БД
+        AnnouncementMapper.markGeocodePending(announcement);
 
         List<Image> images = AnnouncementMapper.toImages(announcementRequest.getImages(), announcement);
         announcement.setPhotos(images);
         announcement.setUser(user);
 
         announcementRepository.save(announcement);
+        eventPublisher.publishEvent(new AnnouncementChangedEvent(announcement));
     }
 
-    private String[] getCoordsFromAddress(String address) {
-        String[] coords = new String[2];
-        String response = restTemplate.getForObject(apiUrl + "/geocode?q=" + address + "&fields=items.point&key=" + apiKey, String.class);
-        log.info("Response from 2GIS API: {}", response);
-
-        ObjectMapper objectMapper = new ObjectMapper();
-        try {
-            coords[0] = objectMapper.readTree(response).get("result").get("items").get(0).get("point").get("lat").asText();
-            coords[1] = objectMapper.readTree(response).get("result").get("items").get(0).get("point").get("lon").asText();
-        } catch (Exception e) {
-            log.error("Error while parsing 2GIS API response: {}", e.getMessage());
-        }
-
-        return coords;
+    @Override
+    @Transactional(readOnly = true)
+    public List<AnnouncementResponse> getRoommateListings(String region, Integer minPrice, Integer maxPrice, String gender, Integer roommatesCount, Pageable pageable) {
+        log.info("Getting roommate listings with filters: city={}, minPrice={}, maxPrice={}, gender={}, roommatesCount={}",
+                region, minPrice, maxPrice, gender, roommatesCount);
+        // Только активные: архивных карточек в read-модели нет, как и в RelevanceIndex
+        return cardsInOrder(findIds(roommateSpecification(region, minPrice, maxPrice, gender, roommatesCount)
+                .and(filterSpecification(new AnnouncementFilterRequest())), pageable));
     }
 
     @Override
     @Transactional(readOnly = true)
-    public Page<Announcement> getAllRoommateListings(Pageable pageable) {
-        log.info("Getting all roommate listings");
-        return announcementRepository.findAllByIsDeletedFalse(pageable);
+    public List<AnnouncementResponse> getGreatDeals(int limit) {
+        if (greatDealsIndex.isReady()) {
+            return cardsInOrder(greatDealsIndex.ranking(limit));
+        }
+        // Рейтинг еще не посчитан - самые дешевые, как раньше
+        return toResponses(announcementRepository.findAllByIsDeletedFalse(PageRequest.of(0, limit, Sort.by(Sort.Direction.ASC, "cost"))).getContent());
     }
 
     @Override
-    @Transactional
-    public Page<Announcement> searchRoommateListings(String region, Integer minPrice, Integer maxPrice, String gender, Integer roommatesCount, Pageable pageable) {
-        log.info("Searching roommate listings with filters: city={}, minPrice={}, maxPrice={}, gender={}, roommatesCount={}",
-                region, minPrice, maxPrice, gender, roommatesCount);
-        Specification<Announcement> spec = Specification.where(null);
-
-        if (region != null && !region.isEmpty()) {
-            spec = spec.and((root, query, criteriaBuilder) -> criteriaBuilder.equal(root.get("region"), region));
-        }
-        if (minPrice != null) {
-            spec = spec.and((root, query, criteriaBuilder) -> criteriaBuilder.greaterThanOrEqualTo(root.get("cost"), minPrice));
-        }
-        if (maxPrice != null) {
-            spec = spec.and((root, query, criteriaBuilder) -> criteriaBuilder.lessThanOrEqualTo(root.get("cost"), maxPrice));
-        }
-        if (gender != null && !gender.isEmpty()) {
-            spec = spec.and((root, query, criteriaBuilder) -> criteriaBuilder.equal(root.get("selectedGender"), gender));
+    @Transactional(readOnly = true)
+    public List<AnnouncementResponse> getRelevantRoommateListings(String region, Integer minPrice, Integer maxPrice, String gender, Integer roommatesCount, Pageable pageable) {
+        if (!relevanceIndex.isReady() || !facetIndex.isReady()) {
+            Pageable byArriveDate = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by(Sort.Order.desc("arriveDate")));
+            return toResponses(announcementRepository.findAll(roommateSpecification(region, minPrice, maxPrice, gender, roommatesCount)
+                    .and(filterSpecification(new AnnouncementFilterRequest())), byArriveDate).getContent());
         }
-        if (roommatesCount != null) {
-            spec = spec.and((root, query, criteriaBuilder) -> criteriaBuilder.equal(root.get("numberOfPeopleAreYouAccommodating"), roommatesCount));
+        RoaringBitmap allowed = null;
+        if (region != null || minPrice != null || maxPrice != null || gender != null || roommatesCount != null) {
+            allowed = facetIndex.filter(AnnouncementFilterRequest.builder()
+                    .region(region)
+                    .minPrice(minPrice)
+                    .maxPrice(maxPrice)
+                    .selectedGender(gender)
+                    .numberOfPeopleAreYouAccommodating(roommatesCount)
+                    .build());
         }
-
-        return announcementRepository.findAll(spec, pageable);
+        AuthenticatedUser requester = currentUserOrNull();
+        Integer age = requester != null && requester.getBirthDate() != null
+                ? Period.between(requester.getBirthDate(), LocalDate.now()).getYears() : null;
+        return cardsInOrder(relevanceIndex.search(allowed, requester != null ? requester.getGender() : null, age,
+                pageable.getOffset(), pageable.getPageSize()));
     }
 
     @Override
@@ -130,11 +173,33 @@ public class AnnouncementServiceImpl implements AnnouncementService {
         return toAnnouncementResponse(announcementRepository.findById(id).orElseThrow(() -> new IllegalArgumentException("Announcement not found")));
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Instant> getAnnouncementVersion(Long id) {
+        // В карточке имя и фото автора, поэтому версия - позднейшее из updatedAt объявления и автора
+        for (Object[] row : announcementRepository.findVersionsById(id)) {
+            if (row[0] == null) {
+                return Optional.empty();
+            }
+            Instant version = ((LocalDateTime) row[0]).atZone(ZoneId.systemDefault()).toInstant();
+            if (row[1] instanceof Instant userUpdatedAt && userUpdatedAt.isAfter(version)) {
+                version = userUpdatedAt;
+            }
+            return Optional.of(version);
+        }
+        return Optional.empty();
+    }
+
     @Override
     @Transactional(readOnly = true)
     public List<AnnouncementResponse> getUserAnnouncements(){
-        User user = userService.getUserByEmail(userService.getCurrentUser().getUsername())
-                .orElseThrow(() -> new UsernameNotFoundException("User not found!"));
+        if (cardProjection.isReady()) {
+            // Активные объявления автора уже лежат в read-модели
+            List<Long> ids = new ArrayList<>(cardProjection.announcementIds(userService.getCurrentUserId()));
+            ids.sort(Comparator.naturalOrder());
+            return cardProjection.cards(ids);
+        }
+        User user = entityManager.getReference(User.class, userService.getCurrentUserId());
         return announcementRepository.findAllByUserAndIsArchivedFalseAndIsDeletedFalse(user).stream()
                 .map(this::toAnnouncementResponse)
                 .collect(Collectors.toList());
@@ -143,8 +208,7 @@ public class AnnouncementServiceImpl implements AnnouncementService {
     @Override
     @Transactional(readOnly = true)
     public List<AnnouncementResponse> getUserArchiveAnnouncements() {
-        User user = userService.getUserByEmail(userService.getCurrentUser().getUsername())
-                .orElseThrow(() -> new UsernameNotFoundException("User not found!"));
+        User user = entityManager.getReference(User.class, userService.getCurrentUserId());
         return announcementRepository.findAllByUserAndIsArchivedTrueAndIsDeletedFalse(user).stream()
                 .map(this::toAnnouncementResponse)
                 .collect(Collectors.toList());
@@ -155,15 +219,15 @@ public class AnnouncementServiceImpl implements AnnouncementService {
     public void archiveAnnouncement(Long announcementId) throws BadRequestException {
         Announcement announcement = announcementRepository.findById(announcementId)
                 .orElseThrow(() -> new EntityNotFoundException("Обьявление не найдено"));
-        User user = userService.getUserByEmail(userService.getCurrentUser().getUsername())
-                        .orElseThrow(() -> new UsernameNotFoundException("User not found!"));
+        Long userId = userService.getCurrentUserId();
 
-        if(announcement.getUser().equals(user)) {
+        if(announcement.getUser().getId().equals(userId)) {
             announcement.setIsArchived(true);
         } else {
             throw new BadRequestException("bad request!");
         }
         announcementRepository.save(announcement);
+        eventPublisher.publishEvent(new AnnouncementChangedEvent(announcement));
     }
 
     @Override
@@ -171,16 +235,16 @@ public class AnnouncementServiceImpl implements AnnouncementService {
     public void restoreAnnouncement(Long announcementId) throws BadRequestException {
         Announcement announcement = announcementRepository.findById(announcementId)
                 .orElseThrow(() -> new EntityNotFoundException("Обьявление не найдено"));
-        User user = userService.getUserByEmail(userService.getCurrentUser().getUsername())
-                .orElseThrow(() -> new UsernameNotFoundException("User not found!"));
+        Long userId = userService.getCurrentUserId();
 
-        if(!announcement.getIsDeleted() && announcement.getUser().equals(user)){
+        if(!announcement.getIsDeleted() && announcement.getUser().getId().equals(userId)){
             announcement.setIsArchived(false);
         } else {
             throw new BadRequestException("bad request!");
         }
 
         announcementRepository.save(announcement);
+        eventPublisher.publishEvent(new AnnouncementChangedEvent(announcement));
     }
 
     @Override
@@ -188,23 +252,280 @@ public class AnnouncementServiceImpl implements AnnouncementService {
     public void deleteAnnouncement(Long announcementId) throws BadRequestException {
         Announcement announcement = announcementRepository.findById(announcementId)
                 .orElseThrow(() -> new EntityNotFoundException("Обьявление не найдено"));
-        User user = userService.getUserByEmail(userService.getCurrentUser().getUsername())
-                .orElseThrow(() -> new UsernameNotFoundException("User not found!"));
+        Long userId = userService.getCurrentUserId();
 
-        if(announcement.getIsArchived() && announcement.getUser().equals(user)) {
+        if(announcement.getIsArchived() && announcement.getUser().getId().equals(userId)) {
             announcement.setIsDeleted(true);
         } else {
             throw new BadRequestException("bad request!");
         }
         announcementRepository.save(announcement);
+        eventPublisher.publishEvent(new AnnouncementChangedEvent(announcement));
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<Announcement> getFilteredAnnouncements(AnnouncementFilterRequest request) {
-        return announcementRepository.findAll((root, query, criteriaBuilder) -> {
+    public List<AnnouncementResponse> getFilteredAnnouncements(AnnouncementFilterRequest request) {
+        if (!facetIndex.isReady()) {
+            return cardsInOrder(findIds(filterSpecification(request), Pageable.unpaged(Sort.by("id"))));
+        }
+        return cardsInOrder(facetIndex.search(request));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamFilteredAnnouncements(AnnouncementFilterRequest request, Consumer<AnnouncementResponse> consumer) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Announcement> query = criteriaBuilder.createQuery(Announcement.class);
+        Root<Announcement> root = query.from(Announcement.class);
+        root.fetch("user", JoinType.LEFT);
+        query.where(filterSpecification(request).toPredicate(root, query, criteriaBuilder))
+                .orderBy(criteriaBuilder.asc(root.get("id")));
+
+        // Курсор БД с fetch size: в памяти держим только текущую пачку, контекст очищаем после каждой
+        try (Stream<Announcement> announcements = entityManager.createQuery(query)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream()) {
+            Iterator<Announcement> iterator = announcements.iterator();
+            List<Announcement> batch = new ArrayList<>(STREAM_BATCH_SIZE);
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() == STREAM_BATCH_SIZE || !iterator.hasNext()) {
+                    for (Announcement announcement : batch) {
+                        consumer.accept(toAnnouncementResponse(announcement));
+                    }
+                    batch.clear();
+                    entityManager.clear();
+                }
+            }
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<AnnouncementResponse> searchAnnouncements(AnnouncementFilterRequest request, String query, Pageable pageable) {
+        log.info("Full-text search: query={}, page={}", query, pageable.getPageNumber());
+        if (textIndex.isReady() && facetIndex.isReady()) {
+            return cardsInOrder(textIndex.search(query, facetIndex.filter(request), pageable.getOffset(), pageable.getPageSize()));
+        }
+        // Индексы еще не построены - неранжированный LIKE вместе с фильтрами
+        return toResponses(announcementRepository.findAll(filterSpecification(request).and(textSpecification(query)), pageable).getContent());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<AnnouncementResponse> findNearby(AnnouncementFilterRequest request, GeoSearchRequest geo, Pageable pageable) {
+        if (geoIndex.isReady() && facetIndex.isReady()) {
+            return cardsInOrder(geoIndex.search(geo, facetIndex.filter(request), pageable.getOffset(), pageable.getPageSize()));
+        }
+        // Индексы еще не построены - отбор по прямоугольнику в SQL, точный радиус и сортировка в памяти
+        double minLat = geo.hasRadius() ? geo.getLatitude() - GeoUtils.latitudeDelta(geo.getRadiusKm()) : geo.getMinLatitude();
+        double maxLat = geo.hasRadius() ? geo.getLatitude() + GeoUtils.latitudeDelta(geo.getRadiusKm()) : geo.getMaxLatitude();
+        double minLon = geo.hasRadius() ? geo.getLongitude() - GeoUtils.longitudeDelta(geo.getLatitude(), geo.getRadiusKm()) : geo.getMinLongitude();
+        double maxLon = geo.hasRadius() ? geo.getLongitude() + GeoUtils.longitudeDelta(geo.getLatitude(), geo.getRadiusKm()) : geo.getMaxLongitude();
+
+        Comparator<Announcement> order = geo.hasCenter() && !Boolean.FALSE.equals(geo.getSortByDistance())
+                ? Comparator.comparingDouble((Announcement announcement) -> GeoUtils.distanceKm(geo.getLatitude(), geo.getLongitude(), announcement.getLatitude(), announcement.getLongitude()))
+                        .thenComparing(Announcement::getId, Comparator.reverseOrder())
+                : Comparator.comparing(Announcement::getId).reversed();
+        return announcementRepository.findAll(filterSpecification(request).and(boundingBox(minLat, maxLat, minLon, maxLon))).stream()
+                .filter(announcement -> !geo.hasRadius() || GeoUtils.distanceKm(geo.getLatitude(), geo.getLongitude(),
+                        announcement.getLatitude(), announcement.getLongitude()) <= geo.getRadiusKm())
+                .sorted(order)
+                .skip(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .map(this::toAnnouncementResponse)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<TileClusterResponse> getTileClusters(int zoom, int x, int y) {
+        if (tileIndex.isReady()) {
+            return tileIndex.tile(zoom, x, y);
+        }
+        List<Announcement> announcements = announcementRepository.findAll(filterSpecification(new AnnouncementFilterRequest())
+                .and(boundingBox(GeoUtils.tileLatitude(y + 1, zoom), GeoUtils.tileLatitude(y, zoom),
+                        GeoUtils.tileLongitude(x, zoom), GeoUtils.tileLongitude(x + 1, zoom))));
+        return AnnouncementTileIndex.cluster(zoom, x, y, announcements);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public AnnouncementSliceResponse scrollRoommateListings(String region, Integer minPrice, Integer maxPrice, String gender,
+                                                            Integer roommatesCount, Sort sort, String cursor, int limit) {
+        return scroll(roommateSpecification(region, minPrice, maxPrice, gender, roommatesCount)
+                .and(filterSpecification(new AnnouncementFilterRequest())), sort, cursor, limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public AnnouncementSliceResponse scrollFilteredAnnouncements(AnnouncementFilterRequest request, Sort sort, String cursor, int limit) {
+        return scroll(filterSpecification(request), sort, cursor, limit);
+    }
+
+    @Transactional
+    @Override
+    public AnnouncementResponse updateAnnouncement(Long id, AnnouncementRequest announcementRequest) {
+        Announcement announcement = announcementRepository.findById(id).orElseThrow(() -> new IllegalArgumentException("Announcement not found"));
+
+        Long userId = userService.getCurrentUserId();
+
+        if(!announcement.getUser().getId().equals(userId)) {
+            throw new IllegalArgumentException("You can't update this announcement");
+        }
+
+        if(!announcementRequest.getAddress().equals(announcement.getAddress())) {
+            AnnouncementMapper.markGeocodePending(announcement);
+        }
+
+        AnnouncementMapper.updateAnnouncementFromRequest(announcement, announcementRequest);
+
+        // Если поменялись только фото, @PreUpdate не сработает, а от updatedAt зависит ETag
+        if (AnnouncementMapper.updatePhotos(announcement, announcementRequest.getImages())) {
+            announcement.setUpdatedAt(LocalDateTime.now());
+        }
+
+        Announcement updatedAnnouncement = announcementRepository.save(announcement);
+        eventPublisher.publishEvent(new AnnouncementChangedEvent(updatedAnnouncement));
+
+        return toAnnouncementResponse(updatedAnnouncement);
+    }
+
+
+    public AnnouncementResponse toAnnouncementResponse(Announcement announcement) {
+        return AnnouncementMapper.toResponse(announcement);
+    }
+
+    // Карточки из read-модели без обращения к БД, пока она строится - из сущностей
+    private List<AnnouncementResponse> cardsInOrder(List<Long> ids) {
+        if (cardProjection.isReady()) {
+            return cardProjection.cards(ids);
+        }
+        return toResponses(findAllInOrder(ids));
+    }
+
+    private List<AnnouncementResponse> toResponses(List<Announcement> announcements) {
+        return announcements.stream()
+                .map(this::toAnnouncementResponse)
+                .collect(Collectors.toList());
+    }
+
+    // Подгружает объявления по id пачками и возвращает их в порядке ids
+    private List<Announcement> findAllInOrder(List<Long> ids) {
+        Map<Long, Announcement> byId = new HashMap<>(ids.size() * 2);
+        for (int from = 0; from < ids.size(); from += ID_BATCH_SIZE) {
+            for (Announcement announcement : announcementRepository.findAllByIdInOrderByIdAsc(ids.subList(from, Math.min(from + ID_BATCH_SIZE, ids.size())))) {
+                byId.put(announcement.getId(), announcement);
+            }
+        }
+        List<Announcement> announcements = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Announcement announcement = byId.get(id);
+            if (announcement != null) {
+                announcements.add(announcement);
+            }
+        }
+        return announcements;
+    }
+
+    private Specification<Announcement> textSpecification(String query) {
+        return (root, criteriaQuery, criteriaBuilder) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            for (String term : TextAnalyzer.analyze(query)) {
+                String pattern = "%" + term + "%";
+                predicates.add(criteriaBuilder.like(criteriaBuilder.lower(root.get("title")), pattern));
+                predicates.add(criteriaBuilder.like(criteriaBuilder.lower(root.get("apartmentsInfo")), pattern));
+            }
+            return predicates.isEmpty() ? criteriaBuilder.conjunction() : criteriaBuilder.or(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    // Keyset-пагинация: берем limit + 1 строк после курсора, лишняя строка говорит о наличии следующей страницы.
+    // Из БД читаются только id и ключ сортировки, карточки берет cardsInOrder
+    private AnnouncementSliceResponse scroll(Specification<Announcement> filter, Sort sort, String cursor, int limit) {
+        Sort.Order order = sort.iterator().next();
+
+        Specification<Announcement> spec = filter
+                .and(AnnouncementCursor.orderBy(order.getProperty(), order.getDirection()));
+        if (cursor != null && !cursor.isBlank()) {
+            AnnouncementCursor after = AnnouncementCursor.decode(cursor);
+            if (!after.getProperty().equals(order.getProperty())) {
+                throw new InvalidCursorException("Cursor does not match the requested sort");
+            }
+            spec = spec.and(after.after(order.getDirection()));
+        }
+
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> query = criteriaBuilder.createQuery(Object[].class);
+        Root<Announcement> root = query.from(Announcement.class);
+        query.multiselect(root.get("id"), root.get(order.getProperty()));
+        Predicate predicate = spec.toPredicate(root, query, criteriaBuilder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        List<Object[]> rows = entityManager.createQuery(query).setMaxResults(limit + 1).getResultList();
+        boolean hasNext = rows.size() > limit;
+        List<Object[]> content = hasNext ? rows.subList(0, limit) : rows;
+        Object[] last = content.isEmpty() ? null : content.get(content.size() - 1);
+
+        return AnnouncementSliceResponse.builder()
+                .content(cardsInOrder(content.stream().map(row -> (Long) row[0]).toList()))
+                .nextCursor(hasNext ? AnnouncementCursor.of(order.getProperty(), last[1], (Long) last[0]).encode() : null)
+                .hasNext(hasNext)
+                .build();
+    }
+
+    // Только id страницы в нужном порядке: сущности с фото и автором не грузятся, карточки берет cardsInOrder
+    private List<Long> findIds(Specification<Announcement> spec, Pageable pageable) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+        Root<Announcement> root = query.from(Announcement.class);
+        query.select(root.get("id"));
+        Predicate predicate = spec.toPredicate(root, query, criteriaBuilder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, criteriaBuilder));
+        TypedQuery<Long> typedQuery = entityManager.createQuery(query);
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult(Math.toIntExact(pageable.getOffset())).setMaxResults(pageable.getPageSize());
+        }
+        return typedQuery.getResultList();
+    }
+
+    private Specification<Announcement> roommateSpecification(String region, Integer minPrice, Integer maxPrice, String gender, Integer roommatesCount) {
+        Specification<Announcement> spec = Specification.where(null);
+
+        if (region != null && !region.isEmpty()) {
+            spec = spec.and((root, query, criteriaBuilder) -> criteriaBuilder.equal(root.get("region"), region));
+        }
+        if (minPrice != null) {
+            spec = spec.and((root, query, criteriaBuilder) -> criteriaBuilder.greaterThanOrEqualTo(root.get("cost"), minPrice));
+        }
+        if (maxPrice != null) {
+            spec = spec.and((root, query, criteriaBuilder) -> criteriaBuilder.lessThanOrEqualTo(root.get("cost"), maxPrice));
+        }
+        if (gender != null && !gender.isEmpty()) {
+            spec = spec.and((root, query, criteriaBuilder) -> criteriaBuilder.equal(root.get("selectedGender"), gender));
+        }
+        if (roommatesCount != null) {
+            spec = spec.and((root, query, criteriaBuilder) -> criteriaBuilder.equal(root.get("numberOfPeopleAreYouAccommodating"), roommatesCount));
+        }
+
+        return spec;
+    }
+
+    // Эталон для AnnouncementFacetIndex: индекс обязан возвращать те же id
+    static Specification<Announcement> filterSpecification(AnnouncementFilterRequest request) {
+        return (root, query, criteriaBuilder) -> {
             List<Predicate> predicates = new ArrayList<>();
 
+            // Только активные объявления, как и в AnnouncementFacetIndex
+            predicates.add(criteriaBuilder.isFalse(root.get("isDeleted")));
+            predicates.add(criteriaBuilder.or(criteriaBuilder.isNull(root.get("isArchived")), criteriaBuilder.isFalse(root.get("isArchived"))));
+
             // Фильтрация по гендеру
             if (request.getSelectedGender() != null && !request.getSelectedGender().isEmpty()) {
                 predicates.add(criteriaBuilder.equal(root.get("selectedGender"), request.getSelectedGender()));
@@ -311,54 +632,21 @@ public class AnnouncementServiceImpl implements AnnouncementService {
 
             // Строим окончательный запрос
             return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
-        });
+        };
     }
 
-    @Transactional
-    @Override
-    public AnnouncementResponse updateAnnouncement(Long id, AnnouncementRequest announcementRequest) {
-        Announcement announcement = announcementRepository.findById(id).orElseThrow(() -> new IllegalArgumentException("Announcement not found"));
-
-        User user = userRepository.findByEmail(userService.getCurrentUser().getUsername())
-                .orElseThrow(() -> new IllegalArgumentException("User not found"));
-
-        if(!announcement.getUser().equals(user)) {
-            throw new IllegalArgumentException("You can't update this announcement");
-        }
-
-        if (announcement.getPhotos() != null) {
-            announcement.getPhotos().clear();
-        } else {
-            announcement.setPhotos(new ArrayList<>());
-        }
-
-        if(!announcementRequest.getAddress().equals(announcement.getAddress())) {
-            String[] coords = getCoordsFromAddress(announcementRequest.getAddress());
-            announcement.setCoordsX(coords[0]);
-            announcement.setCoordsY(coords[1]);
-        }
-
-        AnnouncementMapper.updateAnnouncementFromRequest(announcement, announcementRequest);
-
-        List<Image> images = AnnouncementMapper.toImages(announcementRequest.getImages(), announcement);
-        announcement.setPhotos(images);
-
-        Announcement updatedAnnouncement = announcementRepository.save(announcement);
-
-        return toAnnouncementResponse(updatedAnnouncement);
+    // Как GeoUtils.coordinates в гео-индексах: у PENDING координаты еще не определены для текущего адреса
+    private Specification<Announcement> boundingBox(double minLat, double maxLat, double minLon, double maxLon) {
+        return (root, query, criteriaBuilder) -> criteriaBuilder.and(
+                criteriaBuilder.between(root.get("latitude"), minLat, maxLat),
+                criteriaBuilder.between(root.get("longitude"), minLon, maxLon),
+                criteriaBuilder.or(criteriaBuilder.isNull(root.get("geocodeStatus")),
+                        criteriaBuilder.notEqual(root.get("geocodeStatus"), GeocodeStatus.PENDING)));
     }
 
-
-    public AnnouncementResponse toAnnouncementResponse(Announcement announcement) {
-        AnnouncementResponse response = modelMapper.map(announcement, AnnouncementResponse.class);
-
-        response.setPhotos(announcement.getPhotos().stream()
-                .map(AnnouncementMapper::toImageResponse)
-                .collect(Collectors.toList()));
-        response.setUser(AnnouncementMapper.toUserResponse(announcement.getUser()));
-
-        return response;
+    // /announcement/all открыт без токена, там principal - строка anonymousUser
+    private AuthenticatedUser currentUserOrNull() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user ? user : null;
     }
-
 }
-
@@ -0,0 +1,188 @@
+package by.project.turamyzba.services.impl;
+
+import by.project.turamyzba.entities.GeocodeCacheEntry;
+import by.project.turamyzba.repositories.GeocodeCacheRepository;
+import by.project.turamyzba.services.GeocodingService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Геокодирование через 2GIS с двумя уровнями кэша: LRU в памяти и таблица geocode_cache.
+ * Ключ - нормализованный адрес. Одновременные запросы одного адреса ждут одного обращения к 2GIS.
+ */
+@Slf4j
+@Service
+public class GeocodingServiceImpl implements GeocodingService {
+    private static final String[] NOT_FOUND = new String[0];
+
+    private final String apiKey;
+    private final String apiUrl;
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final GeocodeCacheRepository geocodeCacheRepository;
+    // Запись в кэш не должна откатывать и не должна зависеть от транзакции объявления
+    private final TransactionTemplate cacheTransaction;
+
+    private final Map<String, String[]> memory;
+    private final Map<String, CompletableFuture<String[]>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter memoryHits;
+    private final Counter databaseHits;
+    private final Counter coalesced;
+    private final Counter remoteCalls;
+
+    public GeocodingServiceImpl(@Value("${2gis.api.key}") String apiKey,
+                                @Value("${2gis.api.url}") String apiUrl,
+                                @Value("${geocode.cache-size:10000}") int cacheSize,
+                                @Qualifier("geocodingRestTemplate") RestTemplate restTemplate,
+                                ObjectMapper objectMapper,
+                                GeocodeCacheRepository geocodeCacheRepository,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry) {
+        this.apiKey = apiKey;
+        this.apiUrl = apiUrl;
+        this.restTemplate = restTemplate;
+        this.objectMapper = objectMapper;
+        this.geocodeCacheRepository = geocodeCacheRepository;
+        this.cacheTransaction = new TransactionTemplate(transactionManager);
+        this.cacheTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String[]> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        this.memoryHits = requests(meterRegistry, "memory");
+        this.databaseHits = requests(meterRegistry, "database");
+        this.coalesced = requests(meterRegistry, "coalesced");
+        this.remoteCalls = requests(meterRegistry, "remote");
+        Gauge.builder("geocode.cache.hit_ratio", this, GeocodingServiceImpl::hitRatio)
+                .description("Share of geocode lookups answered without calling 2GIS")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String[] getCoordinates(String address) {
+        String key = normalize(address);
+        String[] cached;
+        synchronized (memory) {
+            cached = memory.get(key);
+        }
+        if (cached != null) {
+            memoryHits.increment();
+            return cached.clone();
+        }
+
+        CompletableFuture<String[]> lookup = new CompletableFuture<>();
+        CompletableFuture<String[]> running = inFlight.putIfAbsent(key, lookup);
+        if (running != null) {
+            coalesced.increment();
+            try {
+                return running.join().clone();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        try {
+            String[] coords = load(key, address);
+            lookup.complete(coords);
+            return coords.clone();
+        } catch (RuntimeException e) {
+            lookup.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, lookup);
+        }
+    }
+
+    private String[] load(String key, String address) {
+        Optional<GeocodeCacheEntry> stored = geocodeCacheRepository.findById(key);
+        if (stored.isPresent()) {
+            databaseHits.increment();
+            return remember(key, new String[]{stored.get().getLatitude(), stored.get().getLongitude()});
+        }
+
+        remoteCalls.increment();
+        String[] coords = requestCoordinates(address);
+        if (coords.length == 0) {
+            // Ненайденные адреса не кэшируем: пользователь скорее всего исправит адрес
+            return coords;
+        }
+        try {
+            cacheTransaction.executeWithoutResult(status -> geocodeCacheRepository.save(GeocodeCacheEntry.builder()
+                    .address(key)
+                    .latitude(coords[0])
+                    .longitude(coords[1])
+                    .createdAt(LocalDateTime.now())
+                    .build()));
+        } catch (DataAccessException e) {
+            // Адрес одновременно сохранил другой инстанс
+            log.warn("Failed to store geocode cache entry for {}: {}", key, e.getMessage());
+        }
+        return remember(key, coords);
+    }
+
+    private String[] requestCoordinates(String address) {
+        String response = restTemplate.getForObject(apiUrl + "/geocode?q={q}&fields=items.point&key={key}", String.class, address, apiKey);
+        try {
+            JsonNode point = objectMapper.readTree(response).path("result").path("items").path(0).path("point");
+            if (point.hasNonNull("lat") && point.hasNonNull("lon")) {
+                return new String[]{point.get("lat").asText(), point.get("lon").asText()};
+            }
+            log.warn("2GIS returned no point for address: {}", address);
+        } catch (Exception e) {
+            log.error("Error while parsing 2GIS API response: {}", e.getMessage());
+        }
+        return NOT_FOUND;
+    }
+
+    private String[] remember(String key, String[] coords) {
+        synchronized (memory) {
+            memory.put(key, coords);
+        }
+        return coords;
+    }
+
+    private double hitRatio() {
+        double hits = memoryHits.count() + databaseHits.count() + coalesced.count();
+        double total = hits + remoteCalls.count();
+        return total == 0 ? Double.NaN : hits / total;
+    }
+
+    static String normalize(String address) {
+        return address.toLowerCase(Locale.ROOT)
+                .replace('ё', 'е')
+                .replaceAll("\\s+", " ")
+                .replaceAll(" ?, ?", ", ")
+                .trim();
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String source) {
+        return Counter.builder("geocode.requests")
+                .description("Geocode lookups by the layer that answered them")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+}
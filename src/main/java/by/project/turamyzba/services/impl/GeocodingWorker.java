@@ -0,0 +1,225 @@
+package by.project.turamyzba.services.impl;
+
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.entities.GeocodeStatus;
+import by.project.turamyzba.events.AnnouncementBatchChangedEvent;
+import by.project.turamyzba.events.AnnouncementChangedEvent;
+import by.project.turamyzba.http.Deadline;
+import by.project.turamyzba.mappers.AnnouncementMapper;
+import by.project.turamyzba.repositories.AnnouncementRepository;
+import by.project.turamyzba.services.GeocodingService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Фоновое геокодирование объявлений со статусом PENDING.
+ * Берет пачку ожидающих адресов, геокодирует их параллельно на отдельном пуле и сохраняет координаты
+ * каждой записи в своей транзакции. Ошибки 2GIS повторяются с экспоненциальной задержкой,
+ * ненайденный адрес сразу получает FAILED. На один адрес дается deadline-ms вместе с ожиданием
+ * свободного соединения, чтобы зависший 2GIS не держал поток пула дольше срока.
+ */
+@Slf4j
+@Component
+public class GeocodingWorker {
+    private final AnnouncementRepository announcementRepository;
+    private final GeocodingService geocodingService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transaction;
+    private final ExecutorService executor;
+    // Запуски после коммита идут в свой поток, а не в общий ForkJoinPool, и сливаются в один проход
+    private final ExecutorService triggers;
+    private final AtomicBoolean drainRequested = new AtomicBoolean();
+    // Пачку обрабатывает один поток: плановый опрос и запуск после создания объявления не берут одни и те же строки
+    private final ReentrantLock draining = new ReentrantLock();
+
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Duration deadline;
+
+    private final Counter resolved;
+    private final Counter retried;
+    private final Counter failed;
+
+    public GeocodingWorker(@Value("${geocode.worker.threads:4}") int threads,
+                           @Value("${geocode.worker.batch-size:50}") int batchSize,
+                           @Value("${geocode.worker.max-attempts:6}") int maxAttempts,
+                           @Value("${geocode.worker.initial-backoff-seconds:5}") long initialBackoffSeconds,
+                           @Value("${geocode.worker.max-backoff-seconds:1800}") long maxBackoffSeconds,
+                           @Value("${geocode.worker.deadline-ms:10000}") long deadlineMs,
+                           AnnouncementRepository announcementRepository,
+                           GeocodingService geocodingService,
+                           ApplicationEventPublisher eventPublisher,
+                           PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry) {
+        this.announcementRepository = announcementRepository;
+        this.geocodingService = geocodingService;
+        this.eventPublisher = eventPublisher;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.triggers = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "geocode-drain");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = Duration.ofSeconds(initialBackoffSeconds);
+        this.maxBackoff = Duration.ofSeconds(maxBackoffSeconds);
+        this.deadline = Duration.ofMillis(deadlineMs);
+        this.resolved = processed(meterRegistry, "resolved");
+        this.retried = processed(meterRegistry, "retry");
+        this.failed = processed(meterRegistry, "failed");
+    }
+
+    /**
+     * Новое объявление не ждет планового опроса: пачка запускается сразу после коммита.
+     * Пока запуск ждет в очереди, новые события его не дублируют - он и так заберет их строки.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAnnouncementChanged(AnnouncementChangedEvent event) {
+        if (event.getAnnouncement().getGeocodeStatus() == GeocodeStatus.PENDING) {
+            requestDrain();
+        }
+    }
+
+    // Пачка импорта: один запуск на всю пачку
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAnnouncementsChanged(AnnouncementBatchChangedEvent event) {
+        if (event.getChanges().stream().anyMatch(change -> change.getAnnouncement().getGeocodeStatus() == GeocodeStatus.PENDING)) {
+            requestDrain();
+        }
+    }
+
+    private void requestDrain() {
+        if (drainRequested.compareAndSet(false, true)) {
+            triggers.execute(() -> {
+                // Сбрасываем до прохода: объявление, закоммиченное во время прохода, запустит следующий
+                drainRequested.set(false);
+                drain();
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${geocode.worker.poll-ms:5000}")
+    public void drain() {
+        if (!draining.tryLock()) {
+            return;
+        }
+        try {
+            List<Announcement> batch;
+            do {
+                batch = announcementRepository.findPendingGeocode(LocalDateTime.now(), PageRequest.of(0, batchSize));
+                // Один запрос на адрес: при импорте в пачке много объявлений из одного дома
+                Map<String, List<Long>> byAddress = batch.stream().collect(Collectors.groupingBy(
+                        GeocodingWorker::fullAddress, LinkedHashMap::new, Collectors.mapping(Announcement::getId, Collectors.toList())));
+                List<CompletableFuture<Void>> lookups = byAddress.entrySet().stream()
+                        .map(entry -> CompletableFuture.runAsync(() -> geocode(entry.getKey(), entry.getValue()), executor))
+                        .toList();
+                CompletableFuture.allOf(lookups.toArray(CompletableFuture[]::new)).join();
+            } while (batch.size() == batchSize);
+        } catch (RuntimeException e) {
+            log.error("Failed to process pending geocodes: {}", e.getMessage());
+        } finally {
+            draining.unlock();
+        }
+    }
+
+    private void geocode(String address, List<Long> ids) {
+        String[] coords;
+        try {
+            coords = Deadline.within(deadline, () -> geocodingService.getCoordinates(address));
+        } catch (RuntimeException e) {
+            log.warn("Geocoding of announcements {} failed: {}", ids, e.getMessage());
+            coords = null;
+        }
+        String[] result = coords;
+        for (Long id : ids) {
+            transaction.executeWithoutResult(status -> apply(id, address, result));
+        }
+    }
+
+    // null - временная ошибка, пустой массив - 2GIS адрес не нашел
+    private void apply(Long id, String address, String[] coords) {
+        Announcement announcement = announcementRepository.findById(id).orElse(null);
+        // Пока шел запрос, объявление могли удалить или сменить адрес - тогда результат уже не нужен
+        if (announcement == null || announcement.getGeocodeStatus() != GeocodeStatus.PENDING
+                || !Objects.equals(fullAddress(announcement), address)) {
+            return;
+        }
+
+        if (coords != null && coords.length == 2) {
+            announcement.setCoordsX(coords[0]);
+            announcement.setCoordsY(coords[1]);
+            announcement.setLatitude(AnnouncementMapper.parseCoordinate(coords[0]));
+            announcement.setLongitude(AnnouncementMapper.parseCoordinate(coords[1]));
+            announcement.setGeocodeStatus(GeocodeStatus.RESOLVED);
+            announcement.setGeocodeNextAttemptAt(null);
+            resolved.increment();
+        } else {
+            int attempts = announcement.getGeocodeAttempts() == null ? 1 : announcement.getGeocodeAttempts() + 1;
+            announcement.setGeocodeAttempts(attempts);
+            if (coords != null || attempts >= maxAttempts) {
+                announcement.setGeocodeStatus(GeocodeStatus.FAILED);
+                announcement.setGeocodeNextAttemptAt(null);
+                failed.increment();
+                log.warn("Unable to determine coordinates for announcement {} after {} attempts", id, attempts);
+            } else {
+                announcement.setGeocodeNextAttemptAt(LocalDateTime.now().plus(backoff(attempts)));
+                retried.increment();
+            }
+        }
+
+        announcementRepository.save(announcement);
+        if (announcement.getGeocodeStatus() == GeocodeStatus.RESOLVED) {
+            eventPublisher.publishEvent(new AnnouncementChangedEvent(announcement));
+        }
+    }
+
+    private Duration backoff(int attempts) {
+        Duration delay = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        triggers.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    // Один адрес для всех объявлений, чтобы одинаковые дома попадали в один ключ кэша геокодера
+    static String fullAddress(Announcement announcement) {
+        return announcement.getRegion() + ", " + announcement.getDistrict() + ", " + announcement.getMicroDistrict() + ", " + announcement.getAddress();
+    }
+
+    private static Counter processed(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("geocode.pending.processed")
+                .description("Pending geocode attempts by outcome")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -4,10 +4,13 @@ import by.project.turamyzba.dto.requests.PasswordDTO;
 import by.project.turamyzba.dto.requests.ProfileDTO;
 import by.project.turamyzba.dto.responses.ProfileResponse;
 import by.project.turamyzba.entities.User;
+import by.project.turamyzba.events.UserAccountChangedEvent;
+import by.project.turamyzba.events.UserProfileChangedEvent;
 import by.project.turamyzba.repositories.UserRepository;
 import by.project.turamyzba.services.ProfileService;
 import by.project.turamyzba.services.UserService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -24,6 +27,7 @@ public class ProfileServiceImpl implements ProfileService {
     private final UserService userService;
     private final PasswordEncoder passwordEncoder;
     private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     public ProfileResponse getUser() {
@@ -41,6 +45,8 @@ public class ProfileServiceImpl implements ProfileService {
                 .orElseThrow(() -> new IllegalArgumentException("User not found with email: " + email));
         updateUserData(updatedUser, profileDTO);
         userService.updateProfile(updatedUser);
+        // Имя и фото автора показываются в карточках его объявлений
+        eventPublisher.publishEvent(new UserProfileChangedEvent(updatedUser.getId()));
         return convertToProfileResponse(updatedUser);
     }
 
@@ -55,6 +61,7 @@ public class ProfileServiceImpl implements ProfileService {
             throw new BadCredentialsException("Старый пароль неверный");
         }
         userRepository.save(user);
+        eventPublisher.publishEvent(new UserAccountChangedEvent(user.getId()));
     }
 
     @Override
@@ -63,7 +70,9 @@ public class ProfileServiceImpl implements ProfileService {
         User user = userService.getUserByEmail(userService.getCurrentUser().getUsername())
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
         user.setProfilePhoto(fileUrl);
+        user.setUpdatedAt(Instant.now());
         userRepository.save(user);
+        eventPublisher.publishEvent(new UserProfileChangedEvent(user.getId()));
     }
 
     private ProfileResponse convertToProfileResponse(User user) {
@@ -12,6 +12,7 @@ import by.project.turamyzba.repositories.anketa.QuestionRepository;
 import by.project.turamyzba.repositories.anketa.UserAnswerRepository;
 import by.project.turamyzba.services.SurveyService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -34,7 +35,12 @@ public class SurveyServiceImpl implements SurveyService {
     // Сохранение ответов пользователя
     @Override
     @Transactional
-    public void saveUserAnswers(User user, List<UserAnswerDTO> userAnswers) {
+    public void saveUserAnswers(Long userId, List<UserAnswerDTO> userAnswers) {
+        User user = userRepository.getUserById(userId);
+        if (user == null) {
+            throw new UsernameNotFoundException("User not found!");
+        }
+
         // Удалить предыдущие ответы пользователя
         userAnswerRepository.deleteAllByUser(user);
 
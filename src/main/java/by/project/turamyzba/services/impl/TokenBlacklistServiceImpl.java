@@ -1,15 +1,85 @@
 package by.project.turamyzba.services.impl;
 
+import by.project.turamyzba.entities.RevokedToken;
+import by.project.turamyzba.jwt.TokenBloomFilter;
+import by.project.turamyzba.jwt.TokenDigest;
+import by.project.turamyzba.repositories.RevokedTokenRepository;
 import by.project.turamyzba.services.TokenBlacklistService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * Черный список отозванных токенов до их exp.
+ * Ключ - 128-битный дайджест токена, записи лежат в очереди по времени истечения и удаляются фоновой очисткой,
+ * как только exp прошел. Перед картой стоит Bloom-фильтр: для неотозванного токена, то есть почти всегда,
+ * проверка обходится без обращения к карте.
+ * Отзыв сохраняется в таблицу revoked_tokens, каждый экземпляр раз в poll-ms забирает из нее новые отзывы
+ * других экземпляров, поэтому logout действует во всем кластере и переживает перезапуск.
+ * Проверка токена в JwtFilter по-прежнему идет только по памяти.
+ */
+@Slf4j
 @Service
 public class TokenBlacklistServiceImpl implements TokenBlacklistService {
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final Map<TokenDigest, Entry> tokenBlacklist = new ConcurrentHashMap<>();
+    private final PriorityBlockingQueue<Entry> expiryQueue = new PriorityBlockingQueue<>(64, Comparator.comparingLong(Entry::expiresAt));
 
-    // Используем ConcurrentHashMap для хранения токенов в памяти
-    private final ConcurrentHashMap<String, Long> tokenBlacklist = new ConcurrentHashMap<>();
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final TransactionTemplate transaction;
+    private final long expectedTokens;
+    // Отзыв, закоммиченный чуть раньше последнего опроса или с часов соседнего экземпляра, которые немного отстают,
+    // все равно попадет в следующий опрос
+    private final Duration pollOverlap;
+    private volatile Instant lastPolledAt;
+    private final Timer propagationLag;
+    private volatile TokenBloomFilter bloomFilter;
+    // Добавления берут read-lock и идут параллельно, перестройка фильтра берет write-lock,
+    // чтобы ни одна запись не попала в уже замененный фильтр
+    private final ReentrantReadWriteLock filterLock = new ReentrantReadWriteLock();
+    private long insertedSinceRebuild;
+    private long expiredSinceRebuild;
+
+    public TokenBlacklistServiceImpl(@Value("${security.blacklist.expected-tokens:1000000}") long expectedTokens,
+                                     @Value("${security.blacklist.poll-overlap-ms:10000}") long pollOverlapMs,
+                                     RevokedTokenRepository revokedTokenRepository,
+                                     PlatformTransactionManager transactionManager,
+                                     MeterRegistry meterRegistry) {
+        this.expectedTokens = expectedTokens;
+        this.pollOverlap = Duration.ofMillis(pollOverlapMs);
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.bloomFilter = new TokenBloomFilter(expectedTokens, FALSE_POSITIVE_RATE);
+        Gauge.builder("security.blacklist.size", tokenBlacklist, Map::size)
+                .description("Revoked tokens that have not expired yet")
+                .register(meterRegistry);
+        this.propagationLag = Timer.builder("security.blacklist.propagation_lag")
+                .description("Time from a revocation on another instance until this instance enforces it")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("security.blacklist.sync_age", this, TokenBlacklistServiceImpl::syncAgeSeconds)
+                .description("Seconds since revocations were last pulled from the database")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
 
     /**
      * Добавить токен в черный список.
@@ -19,9 +89,17 @@ public class TokenBlacklistServiceImpl implements TokenBlacklistService {
     @Override
     public void addTokenToBlacklist(String token, Date expirationTime) {
         long timeToLive = expirationTime.getTime() - System.currentTimeMillis();
-        if (timeToLive > 0) {
-            tokenBlacklist.put(token, expirationTime.getTime());
+        if (timeToLive <= 0) {
+            return;
         }
+        TokenDigest digest = TokenDigest.of(token);
+        // Сначала БД: если отзыв не сохранился, logout падает, а не действует только на этом экземпляре
+        transaction.executeWithoutResult(status -> revokedTokenRepository.save(RevokedToken.builder()
+                .tokenDigest(digest.toHex())
+                .expiresAt(expirationTime.toInstant())
+                .revokedAt(Instant.now())
+                .build()));
+        remember(digest, expirationTime.getTime());
     }
 
     /**
@@ -31,8 +109,121 @@ public class TokenBlacklistServiceImpl implements TokenBlacklistService {
      */
     @Override
     public boolean isTokenBlacklisted(String token) {
-        Long expirationTime = tokenBlacklist.get(token);
+        TokenDigest digest = TokenDigest.of(token);
+        if (!bloomFilter.mightContain(digest)) {
+            return false;
+        }
+        Entry entry = tokenBlacklist.get(digest);
         // Если токен найден в черном списке и еще не истек его срок
-        return expirationTime != null && expirationTime > System.currentTimeMillis();
+        return entry != null && entry.expiresAt() > System.currentTimeMillis();
+    }
+
+    /**
+     * Забирает отзывы, сделанные после прошлого опроса (с запасом pollOverlap), при первом вызове - все действующие.
+     * Задержка распространения ограничена poll-ms и видна в security.blacklist.propagation_lag.
+     */
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${security.blacklist.poll-ms:1000}")
+    public void pollRevocations() {
+        Instant startedAt = Instant.now();
+        List<RevokedToken> revoked;
+        try {
+            revoked = lastPolledAt == null
+                    ? revokedTokenRepository.findAllByExpiresAtAfter(startedAt)
+                    : revokedTokenRepository.findAllByRevokedAtAfterAndExpiresAtAfter(lastPolledAt.minus(pollOverlap), startedAt);
+        } catch (RuntimeException e) {
+            log.error("Failed to poll revoked tokens: {}", e.getMessage());
+            return;
+        }
+        boolean initial = lastPolledAt == null;
+        for (RevokedToken row : revoked) {
+            long expiresAt = row.getExpiresAt().toEpochMilli();
+            if (remember(TokenDigest.fromHex(row.getTokenDigest()), expiresAt) && !initial) {
+                propagationLag.record(Duration.between(row.getRevokedAt(), Instant.now()));
+            }
+        }
+        lastPolledAt = startedAt;
+    }
+
+    @Scheduled(fixedDelayString = "${security.blacklist.purge-ms:600000}")
+    public void purgeExpired() {
+        try {
+            Integer purged = transaction.execute(status -> revokedTokenRepository.deleteExpired(Instant.now()));
+            log.debug("Purged {} expired revoked tokens", purged);
+        } catch (RuntimeException e) {
+            log.error("Failed to purge expired revoked tokens: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${security.blacklist.sweep-ms:1000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        int evicted = 0;
+        Entry head;
+        while ((head = expiryQueue.peek()) != null && head.expiresAt() <= now) {
+            Entry expired = expiryQueue.poll();
+            if (expired != null) {
+                tokenBlacklist.remove(expired.digest(), expired);
+                evicted++;
+            }
+        }
+        if (evicted == 0) {
+            return;
+        }
+        boolean rebuild;
+        synchronized (this) {
+            expiredSinceRebuild += evicted;
+            // Фильтр помнит и истекшие токены: когда их больше половины или он переполнен, строим заново
+            rebuild = expiredSinceRebuild * 2 > insertedSinceRebuild || insertedSinceRebuild > expectedTokens;
+        }
+        if (rebuild) {
+            rebuildFilter();
+        }
+    }
+
+    // true, если токена еще не было в локальном списке
+    private boolean remember(TokenDigest digest, long expiresAt) {
+        if (expiresAt <= System.currentTimeMillis()) {
+            return false;
+        }
+        Entry entry = new Entry(digest, expiresAt);
+        filterLock.readLock().lock();
+        try {
+            if (tokenBlacklist.putIfAbsent(digest, entry) != null) {
+                return false;
+            }
+            expiryQueue.add(entry);
+            bloomFilter.add(digest);
+            synchronized (this) {
+                insertedSinceRebuild++;
+            }
+            return true;
+        } finally {
+            filterLock.readLock().unlock();
+        }
+    }
+
+    private double syncAgeSeconds() {
+        Instant polledAt = lastPolledAt;
+        return polledAt == null ? Double.NaN : Duration.between(polledAt, Instant.now()).toMillis() / 1000.0;
+    }
+
+    private void rebuildFilter() {
+        filterLock.writeLock().lock();
+        try {
+            TokenBloomFilter rebuilt = new TokenBloomFilter(Math.max(expectedTokens, tokenBlacklist.size() * 2L), FALSE_POSITIVE_RATE);
+            tokenBlacklist.keySet().forEach(rebuilt::add);
+            bloomFilter = rebuilt;
+            synchronized (this) {
+                insertedSinceRebuild = tokenBlacklist.size();
+                expiredSinceRebuild = 0;
+            }
+            log.debug("Token blacklist filter rebuilt for {} revoked tokens", tokenBlacklist.size());
+        } finally {
+            filterLock.writeLock().unlock();
+        }
+    }
+
+    private record Entry(TokenDigest digest, long expiresAt) {
     }
 }
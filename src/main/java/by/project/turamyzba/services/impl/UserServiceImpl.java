@@ -2,11 +2,15 @@ package by.project.turamyzba.services.impl;
 
 import by.project.turamyzba.dto.requests.UserDTO;
 import by.project.turamyzba.entities.User;
+import by.project.turamyzba.events.UserAccountChangedEvent;
+import by.project.turamyzba.jwt.AuthenticatedUser;
+import by.project.turamyzba.jwt.PrincipalCache;
+import by.project.turamyzba.mappers.UserMapper;
 import by.project.turamyzba.repositories.UserRepository;
 import by.project.turamyzba.services.UserService;
 import by.project.turamyzba.exceptions.UserAlreadyExistsException;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -23,15 +27,24 @@ import java.util.Optional;
 public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
-    private final ModelMapper modelMapper;
     private final EmailServiceImpl emailService;
+    private final PrincipalCache principalCache;
+    private final ApplicationEventPublisher eventPublisher;
 
 
     @Override
     public UserDetails loadUserByUsername(String username) {
         User user = getUserByEmail(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found!"));
-        return new org.springframework.security.core.userdetails.User(user.getUsername(), user.getPassword(), user.getAuthorities());
+        return toPrincipal(user, user.getPassword());
+    }
+
+    // Для JwtFilter: вход по паролю идет через loadUserByUsername и всегда читает БД.
+    // Хэш пароля в кэш и SecurityContext не попадает: запросу с токеном он не нужен
+    @Override
+    public AuthenticatedUser loadPrincipal(String email) {
+        return principalCache.get(email, key -> toPrincipal(getUserByEmail(key)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found!")), null));
     }
 
     @Transactional
@@ -81,6 +94,17 @@ public class UserServiceImpl implements UserService {
     public void updatePassword(User user) {
         user.setPassword(passwordEncoder.encode(user.getPassword()));
         userRepository.save(user);
+        eventPublisher.publishEvent(new UserAccountChangedEvent(user.getId()));
+    }
+
+    @Transactional
+    @Override
+    public void upgradePasswordHash(String email, String rawPassword) {
+        userRepository.findByEmail(email).ifPresent(user -> {
+            user.setPassword(passwordEncoder.encode(rawPassword));
+            userRepository.save(user);
+            eventPublisher.publishEvent(new UserAccountChangedEvent(user.getId()));
+        });
     }
 
     @Override
@@ -88,8 +112,12 @@ public class UserServiceImpl implements UserService {
         return userRepository.findByEmail(email);
     }
 
+    private static AuthenticatedUser toPrincipal(User user, String password) {
+        return new AuthenticatedUser(user.getId(), user.getEmail(), password, user.getGender(), user.getBirthDate());
+    }
+
     private User convertToUser(UserDTO userDTO) {
-        return modelMapper.map(userDTO, User.class);
+        return UserMapper.toEntity(userDTO);
     }
 
     private String generateCode() {
@@ -109,6 +137,21 @@ public class UserServiceImpl implements UserService {
         return null;
     }
 
+    // id берется из principal запроса, пользователь из БД не читается
+    @Override
+    public Long getCurrentUserId() {
+        UserDetails principal = getCurrentUser();
+        if (principal instanceof AuthenticatedUser user) {
+            return user.getId();
+        }
+        if (principal == null) {
+            throw new UsernameNotFoundException("User not found!");
+        }
+        return getUserByEmail(principal.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found!"))
+                .getId();
+    }
+
     @Override
     @Transactional
     public void resentCode(String email) {
@@ -0,0 +1,368 @@
+package by.project.turamyzba.cache;
+
+import by.project.turamyzba.dto.requests.AnnouncementFilterRequest;
+import by.project.turamyzba.dto.responses.AnnouncementResponse;
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.events.AnnouncementBatchChangedEvent;
+import by.project.turamyzba.events.AnnouncementChangedEvent;
+import by.project.turamyzba.events.UserProfileChangedEvent;
+import by.project.turamyzba.readmodel.AnnouncementCardProjection;
+import by.project.turamyzba.repositories.AnnouncementRepository;
+import by.project.turamyzba.search.RelevanceIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+class AnnouncementQueryCacheTest {
+    private static final AnnouncementFilterRequest ALMATY = AnnouncementFilterRequest.builder().region("Алматы").build();
+    private static final AnnouncementFilterRequest ASTANA = AnnouncementFilterRequest.builder().region("Астана").build();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final AtomicInteger loads = new AtomicInteger();
+    private final AnnouncementCardProjection cardProjection = mock(AnnouncementCardProjection.class);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void loadInFlightDuringChangeIsReturnedButNotCached() throws Exception {
+        AnnouncementQueryCache cache = new AnnouncementQueryCache(60, 100, cardProjection, meterRegistry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<List<AnnouncementResponse>> inFlight = executor.submit(() -> cache.get("a", ALMATY, () -> {
+            started.countDown();
+            await(release);
+            return page(1);
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Даже изменение, которое не касается страницы: запрос мог прочитать данные до коммита
+        cache.onAnnouncementChanged(new AnnouncementChangedEvent(announcement(99, "Шымкент")));
+        release.countDown();
+        assertEquals(page(1), inFlight.get(5, TimeUnit.SECONDS));
+
+        cache.get("a", ALMATY, counting(page(1)));
+        assertEquals(1, loads.get());
+        cache.get("a", ALMATY, counting(page(1)));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void changeEvictsPagesContainingListingOrNowMatchingIt() {
+        AnnouncementQueryCache cache = new AnnouncementQueryCache(60, 100, cardProjection, meterRegistry);
+        cache.get("almaty", ALMATY, counting(page(1, 2)));
+        cache.get("astana", ASTANA, counting(page()));
+        cache.get("shymkent", AnnouncementFilterRequest.builder().region("Шымкент").build(), counting(page(3)));
+        cache.get("all", null, counting(page(1, 2, 3)));
+        assertEquals(4, loads.get());
+
+        // 2 переехало в Астану: уходит со страницы Алматы и появляется в пустой выдаче Астаны
+        cache.onAnnouncementChanged(new AnnouncementChangedEvent(announcement(2, "Астана")));
+        cache.get("shymkent", AnnouncementFilterRequest.builder().region("Шымкент").build(), counting(page(3)));
+        assertEquals(4, loads.get());
+        cache.get("almaty", ALMATY, counting(page(1)));
+        cache.get("astana", ASTANA, counting(page(2)));
+        cache.get("all", null, counting(page(1, 2, 3)));
+        assertEquals(7, loads.get());
+        assertEquals(3, meterRegistry.counter("announcements.query_cache.invalidations").count());
+
+        // Архивное объявление под фильтр не попадает, сбрасываются только страницы, где оно было
+        Announcement archived = announcement(4, "Алматы");
+        archived.setIsArchived(true);
+        cache.onAnnouncementChanged(new AnnouncementChangedEvent(archived));
+        cache.get("almaty", ALMATY, counting(page(1)));
+        assertEquals(7, loads.get());
+    }
+
+    @Test
+    void batchEvictsPagesAffectedByAnyOfItsChanges() {
+        AnnouncementQueryCache cache = new AnnouncementQueryCache(60, 100, cardProjection, meterRegistry);
+        cache.get("almaty", ALMATY, counting(page(1, 2)));
+        cache.get("astana", ASTANA, counting(page(3)));
+        cache.get("shymkent", AnnouncementFilterRequest.builder().region("Шымкент").build(), counting(page(4)));
+        assertEquals(3, loads.get());
+
+        // 1 архивирован (страница Алматы), новое 5 подходит под фильтр Астаны, Шымкент не затронут
+        Announcement archived = announcement(1, "Алматы");
+        archived.setIsArchived(true);
+        cache.onAnnouncementsChanged(new AnnouncementBatchChangedEvent(List.of(
+                new AnnouncementChangedEvent(archived), new AnnouncementChangedEvent(announcement(5, "Астана")))));
+        cache.get("shymkent", AnnouncementFilterRequest.builder().region("Шымкент").build(), counting(page(4)));
+        assertEquals(3, loads.get());
+        cache.get("almaty", ALMATY, counting(page(2)));
+        cache.get("astana", ASTANA, counting(page(3, 5)));
+        assertEquals(5, loads.get());
+        assertEquals(2, meterRegistry.counter("announcements.query_cache.invalidations").count());
+    }
+
+    @Test
+    void profileChangeEvictsPagesWithAuthorsListings() {
+        AnnouncementQueryCache cache = new AnnouncementQueryCache(60, 100, cardProjection, meterRegistry);
+        when(cardProjection.isReady()).thenReturn(true);
+        when(cardProjection.announcementIds(7L)).thenReturn(Set.of(2L, 5L));
+        when(cardProjection.announcementIds(8L)).thenReturn(Set.of());
+        cache.get("first", ALMATY, counting(page(1, 2)));
+        cache.get("second", ALMATY, counting(page(3, 4)));
+        assertEquals(2, loads.get());
+
+        cache.onUserProfileChanged(new UserProfileChangedEvent(8L));
+        cache.onUserProfileChanged(new UserProfileChangedEvent(7L));
+        cache.get("first", ALMATY, counting(page(1, 2)));
+        cache.get("second", ALMATY, counting(page(3, 4)));
+        assertEquals(3, loads.get());
+
+        // Пока карточки строятся, объявления автора неизвестны
+        when(cardProjection.isReady()).thenReturn(false);
+        cache.onUserProfileChanged(new UserProfileChangedEvent(8L));
+        cache.get("first", ALMATY, counting(page(1, 2)));
+        cache.get("second", ALMATY, counting(page(3, 4)));
+        assertEquals(5, loads.get());
+    }
+
+    @Test
+    void matchesFollowsFilterSpecification() {
+        assertMatches(filter -> filter.setSelectedGender("Женский"), a -> a.setSelectedGender("Женский"), a -> a.setSelectedGender("Мужской"));
+        assertMatches(filter -> filter.setRegion("Алматы"), a -> a.setRegion("Алматы"), a -> a.setRegion("Астана"));
+        assertMatches(filter -> filter.setDistrict("Медеуский"), a -> a.setDistrict("Медеуский"), a -> a.setDistrict("Алмалинский"));
+        assertMatches(filter -> filter.setMicroDistrict("Самал-2"), a -> a.setMicroDistrict("Самал-2"), a -> a.setMicroDistrict("Самал-1"));
+        assertMatches(filter -> filter.setQuantityOfRooms("2"), a -> a.setQuantityOfRooms("2"), a -> a.setQuantityOfRooms("3"));
+        assertMatches(filter -> filter.setTypeOfHousing("Квартира"), a -> a.setTypeOfHousing("Квартира"), a -> a.setTypeOfHousing("Дом"));
+        assertMatches(filter -> filter.setNumberOfPeopleAreYouAccommodating(2),
+                a -> a.setNumberOfPeopleAreYouAccommodating(2), a -> a.setNumberOfPeopleAreYouAccommodating(3));
+        assertMatches(filter -> filter.setArriveDate(LocalDate.of(2026, 9, 1)),
+                a -> a.setArriveDate(LocalDate.of(2026, 9, 1)), a -> a.setArriveDate(LocalDate.of(2026, 9, 2)));
+        assertMatches(filter -> filter.setArePetsAllowed(false), a -> a.setArePetsAllowed(false), a -> a.setArePetsAllowed(true));
+        assertMatches(filter -> filter.setIsCommunalServiceIncluded(true),
+                a -> a.setIsCommunalServiceIncluded(true), a -> a.setIsCommunalServiceIncluded(false));
+        assertMatches(filter -> filter.setIntendedForStudents(true), a -> a.setIntendedForStudents(true), a -> a.setIntendedForStudents(false));
+
+        // Границы включительно
+        assertMatches(filter -> filter.setMinPrice(100), a -> a.setCost(100), a -> a.setCost(99));
+        assertMatches(filter -> filter.setMaxPrice(100), a -> a.setCost(100), a -> a.setCost(101));
+        assertMatches(filter -> filter.setMinArea(40), a -> a.setAreaOfTheApartment(40), a -> a.setAreaOfTheApartment(39));
+        assertMatches(filter -> filter.setMaxArea(40), a -> a.setAreaOfTheApartment(40), a -> a.setAreaOfTheApartment(41));
+        assertMatches(filter -> filter.setMinAge(20), a -> a.setMinAge(20), a -> a.setMinAge(19));
+        assertMatches(filter -> filter.setMaxAge(30), a -> a.setMaxAge(30), a -> a.setMaxAge(31));
+
+        assertMatches(filter -> filter.setNotTheFirstFloor(true), a -> a.setNumberOfFloor(2), a -> a.setNumberOfFloor(1));
+        assertMatches(filter -> filter.setNotTheTopFloor(true), a -> {
+            a.setNumberOfFloor(4);
+            a.setMaxFloorInTheBuilding(5);
+        }, a -> {
+            a.setNumberOfFloor(5);
+            a.setMaxFloorInTheBuilding(5);
+        });
+        Announcement topFloorUnknown = announcement(1, "Алматы");
+        topFloorUnknown.setNumberOfFloor(4);
+        assertFalse(AnnouncementQueryCache.matches(AnnouncementFilterRequest.builder().notTheTopFloor(true).build(), topFloorUnknown));
+
+        // false у флагов этажа и пустые строки фильтра ничего не ограничивают
+        AnnouncementFilterRequest unset = AnnouncementFilterRequest.builder()
+                .selectedGender("").region("").district("").microDistrict("").quantityOfRooms("").typeOfHousing("")
+                .notTheFirstFloor(false).notTheTopFloor(false)
+                .build();
+        assertTrue(AnnouncementQueryCache.matches(unset, new Announcement()));
+        assertTrue(AnnouncementQueryCache.matches(null, new Announcement()));
+    }
+
+    @Test
+    void entriesExpireAfterTtl() throws InterruptedException {
+        AnnouncementQueryCache cache = new AnnouncementQueryCache(0, 100, cardProjection, meterRegistry);
+        cache.get("a", ALMATY, counting(page(1)));
+        Thread.sleep(5);
+        cache.get("a", ALMATY, counting(page(1)));
+        assertEquals(2, loads.get());
+        assertEquals(2, meterRegistry.counter("announcements.query_cache.requests", "result", "miss").count());
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        AnnouncementQueryCache cache = new AnnouncementQueryCache(60, 2, cardProjection, meterRegistry);
+        cache.get("a", ALMATY, counting(page(1)));
+        cache.get("b", ALMATY, counting(page(2)));
+        cache.get("a", ALMATY, counting(page(1)));
+        cache.get("c", ALMATY, counting(page(3)));
+        assertEquals(3, loads.get());
+
+        cache.get("a", ALMATY, counting(page(1)));
+        assertEquals(3, loads.get());
+        cache.get("b", ALMATY, counting(page(2)));
+        assertEquals(4, loads.get());
+        assertEquals(2, meterRegistry.counter("announcements.query_cache.requests", "result", "hit").count());
+    }
+
+    @Test
+    void coalescedCallersSeeLoaderException() throws Exception {
+        AnnouncementQueryCache cache = new AnnouncementQueryCache(60, 100, cardProjection, meterRegistry);
+        IllegalStateException failure = new IllegalStateException("database is down");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<List<AnnouncementResponse>> first = executor.submit(() -> cache.get("a", ALMATY, () -> {
+            started.countDown();
+            await(release);
+            throw failure;
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<List<AnnouncementResponse>> second = executor.submit(() -> cache.get("a", ALMATY, counting(page(1))));
+        while (meterRegistry.counter("announcements.query_cache.requests", "result", "coalesced").count() < 1) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        assertSame(failure, assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS)).getCause());
+        assertSame(failure, assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS)).getCause());
+        assertEquals(0, loads.get());
+
+        // Ошибка не кэшируется
+        assertEquals(page(1), cache.get("a", ALMATY, counting(page(1))));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void invalidationRunsAfterIndexesAndCardsAreUpdated() {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(ListenerOrderConfig.class)) {
+            AnnouncementQueryCache cache = context.getBean(AnnouncementQueryCache.class);
+            RelevanceIndex relevanceIndex = context.getBean(RelevanceIndex.class);
+            AnnouncementCardProjection projection = context.getBean(AnnouncementCardProjection.class);
+            AnnouncementChangedEvent event = new AnnouncementChangedEvent(announcement(1, "Алматы"));
+
+            new TransactionTemplate(context.getBean(PlatformTransactionManager.class))
+                    .executeWithoutResult(status -> context.publishEvent(event));
+
+            InOrder afterIndex = inOrder(relevanceIndex, cache);
+            afterIndex.verify(relevanceIndex).onAnnouncementChanged(event);
+            afterIndex.verify(cache).onAnnouncementChanged(event);
+            InOrder afterCards = inOrder(projection, cache);
+            afterCards.verify(projection).onAnnouncementChanged(event);
+            afterCards.verify(cache).onAnnouncementChanged(event);
+
+            UserProfileChangedEvent profileChanged = new UserProfileChangedEvent(7L);
+            new TransactionTemplate(context.getBean(PlatformTransactionManager.class))
+                    .executeWithoutResult(status -> context.publishEvent(profileChanged));
+            InOrder profileAfterCards = inOrder(projection, cache);
+            profileAfterCards.verify(projection).onUserProfileChanged(profileChanged);
+            profileAfterCards.verify(cache).onUserProfileChanged(profileChanged);
+        }
+    }
+
+    private static void assertMatches(Consumer<AnnouncementFilterRequest> filterSetter,
+                                      Consumer<Announcement> matching, Consumer<Announcement> other) {
+        AnnouncementFilterRequest filter = new AnnouncementFilterRequest();
+        filterSetter.accept(filter);
+        Announcement announcement = new Announcement();
+        matching.accept(announcement);
+        assertTrue(AnnouncementQueryCache.matches(filter, announcement), filter.toString());
+        other.accept(announcement);
+        assertFalse(AnnouncementQueryCache.matches(filter, announcement), filter.toString());
+        // null в объявлении не проходит заданное условие, как в SQL
+        assertFalse(AnnouncementQueryCache.matches(filter, new Announcement()), filter.toString());
+        assertTrue(AnnouncementQueryCache.matches(new AnnouncementFilterRequest(), announcement));
+    }
+
+    private Supplier<List<AnnouncementResponse>> counting(List<AnnouncementResponse> page) {
+        return () -> {
+            loads.incrementAndGet();
+            return page;
+        };
+    }
+
+    private static List<AnnouncementResponse> page(long... ids) {
+        return Arrays.stream(ids).mapToObj(id -> AnnouncementResponse.builder().id(id).build()).toList();
+    }
+
+    private static Announcement announcement(long id, String region) {
+        return Announcement.builder()
+                .id(id)
+                .region(region)
+                .isDeleted(false)
+                .isArchived(false)
+                .build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Configuration
+    @EnableTransactionManagement
+    static class ListenerOrderConfig {
+        // Кэш объявлен первым: порядок слушателей не должен зависеть от порядка бинов
+        @Bean
+        AnnouncementQueryCache announcementQueryCache(AnnouncementCardProjection announcementCardProjection) {
+            return spy(new AnnouncementQueryCache(60, 100, announcementCardProjection, new SimpleMeterRegistry()));
+        }
+
+        @Bean
+        RelevanceIndex relevanceIndex() {
+            return spy(new RelevanceIndex(null));
+        }
+
+        @Bean
+        AnnouncementCardProjection announcementCardProjection(PlatformTransactionManager transactionManager) {
+            return spy(new AnnouncementCardProjection(mock(AnnouncementRepository.class), transactionManager, new SimpleMeterRegistry()));
+        }
+
+        @Bean
+        PlatformTransactionManager transactionManager() {
+            return new AbstractPlatformTransactionManager() {
+                @Override
+                protected Object doGetTransaction() {
+                    return new Object();
+                }
+
+                @Override
+                protected void doBegin(Object transaction, TransactionDefinition definition) {
+                }
+
+                @Override
+                protected void doCommit(DefaultTransactionStatus status) {
+                }
+
+                @Override
+                protected void doRollback(DefaultTransactionStatus status) {
+                }
+            };
+        }
+    }
+}
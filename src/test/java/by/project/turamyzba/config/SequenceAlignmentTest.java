@@ -0,0 +1,71 @@
+package by.project.turamyzba.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SequenceAlignmentTest {
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(contains("information_schema.tables"), eq(Integer.class), anyString())).thenReturn(1);
+        when(jdbcTemplate.queryForList(anyString())).thenReturn(List.of());
+    }
+
+    @Test
+    void existingTablesGetSequencesPastTheirIds() {
+        when(jdbcTemplate.queryForObject(contains("information_schema.tables"), eq(Integer.class), eq("user_answer"))).thenReturn(0);
+        when(jdbcTemplate.queryForList(contains("setval('announcements_seq'"))).thenReturn(List.of(Map.of("setval", 120L)));
+
+        new SequenceAlignment(jdbcTemplate).afterPropertiesSet();
+
+        verify(jdbcTemplate).execute("create sequence if not exists announcements_seq increment by 50");
+        verify(jdbcTemplate).queryForList("select setval('announcements_seq', (select max(id) from announcements)) " +
+                "where (select max(id) from announcements) >= (select last_value from announcements_seq)");
+        verify(jdbcTemplate).execute("create sequence if not exists users_seq increment by 50");
+        // Таблицы еще нет - ее и последовательность создаст Hibernate
+        verify(jdbcTemplate, never()).execute(contains("user_answer_seq"));
+    }
+
+    @Test
+    void failureStopsStartup() {
+        doThrow(new DataAccessResourceFailureException("permission denied for schema public"))
+                .when(jdbcTemplate).execute(contains("images_seq"));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> new SequenceAlignment(jdbcTemplate).afterPropertiesSet());
+
+        assertTrue(e.getMessage().contains("images_seq"));
+    }
+
+    @Test
+    void entityManagerFactoryWaitsForAlignment() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerBeanDefinition("entityManagerFactory", new RootBeanDefinition(LocalContainerEntityManagerFactoryBean.class));
+        beanFactory.registerBeanDefinition("sequenceAlignment", new RootBeanDefinition(SequenceAlignment.class));
+
+        JpaBatchingConfig.sequenceAlignmentDependsOnPostProcessor().postProcessBeanFactory(beanFactory);
+
+        assertArrayEquals(new String[]{"sequenceAlignment"}, beanFactory.getBeanDefinition("entityManagerFactory").getDependsOn());
+    }
+}
@@ -0,0 +1,172 @@
+package by.project.turamyzba.controllers;
+
+import by.project.turamyzba.cache.AnnouncementQueryCache;
+import by.project.turamyzba.dto.responses.AnnouncementResponse;
+import by.project.turamyzba.dto.responses.UserResponse;
+import by.project.turamyzba.jwt.AuthenticatedUser;
+import by.project.turamyzba.readmodel.AnnouncementCardProjection;
+import by.project.turamyzba.services.AnnouncementImportService;
+import by.project.turamyzba.services.AnnouncementService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.method.annotation.AuthenticationPrincipalArgumentResolver;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class AnnouncementControllerTest {
+    private static final LocalDateTime UPDATED_AT = LocalDateTime.of(2026, 10, 1, 12, 0);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AnnouncementService announcementService = mock(AnnouncementService.class);
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        AnnouncementQueryCache queryCache = new AnnouncementQueryCache(60, 100, mock(AnnouncementCardProjection.class), meterRegistry);
+        mockMvc = MockMvcBuilders
+                .standaloneSetup(new AnnouncementController(announcementService, mock(AnnouncementImportService.class), queryCache, new ObjectMapper()))
+                .setCustomArgumentResolvers(new AuthenticationPrincipalArgumentResolver())
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void anonymousListIsPublicAndVariesByAuthorization() throws Exception {
+        when(announcementService.getRelevantRoommateListings(any(), any(), any(), any(), any(), any())).thenReturn(List.of(card(1L, "Айгерим")));
+
+        String eTag = mockMvc.perform(get("/announcement/all"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=30, public"))
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.AUTHORIZATION)))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/announcement/all").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag))
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.AUTHORIZATION)))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void authenticatedListIsPrivate() throws Exception {
+        when(announcementService.getRelevantRoommateListings(any(), any(), any(), any(), any(), any())).thenReturn(List.of(card(1L, "Айгерим")));
+        AuthenticatedUser user = new AuthenticatedUser(7L, "user@mail.kz", null, "Женский", LocalDate.of(2000, 1, 1));
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(user, null, List.of()));
+
+        mockMvc.perform(get("/announcement/all"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=30, private"))
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.AUTHORIZATION)));
+    }
+
+    @Test
+    void detailAnswers304ToMatchingValidatorsWithoutLoadingTheAnnouncement() throws Exception {
+        Instant version = Instant.parse("2026-10-01T12:00:00Z");
+        when(announcementService.getAnnouncementVersion(1L)).thenReturn(Optional.of(version));
+        when(announcementService.getAnnouncementById(1L)).thenReturn(card(1L, "Айгерим"));
+        String eTag = "\"1-" + version.toEpochMilli() + "\"";
+
+        mockMvc.perform(get("/announcement/detail/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag))
+                .andExpect(header().dateValue(HttpHeaders.LAST_MODIFIED, version.toEpochMilli()))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=30, public"));
+        mockMvc.perform(get("/announcement/detail/1").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/announcement/detail/1").header(HttpHeaders.IF_MODIFIED_SINCE, httpDate(version)))
+                .andExpect(status().isNotModified());
+        verify(announcementService, times(1)).getAnnouncementById(1L);
+
+        mockMvc.perform(get("/announcement/detail/1").header(HttpHeaders.IF_MODIFIED_SINCE, httpDate(version.minusSeconds(1))))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/announcement/detail/1").header(HttpHeaders.IF_NONE_MATCH, "\"1-0\""))
+                .andExpect(status().isOk());
+        verify(announcementService, times(3)).getAnnouncementById(1L);
+    }
+
+    @Test
+    void detailWithoutUpdatedAtHasNoValidators() throws Exception {
+        when(announcementService.getAnnouncementVersion(1L)).thenReturn(Optional.empty());
+        when(announcementService.getAnnouncementById(1L)).thenReturn(AnnouncementResponse.builder().id(1L).build());
+
+        mockMvc.perform(get("/announcement/detail/1").header(HttpHeaders.IF_NONE_MATCH, "\"1-0\""))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG))
+                .andExpect(header().doesNotExist(HttpHeaders.LAST_MODIFIED))
+                .andExpect(header().doesNotExist(HttpHeaders.CACHE_CONTROL))
+                .andExpect(jsonPath("$.id").value(1));
+    }
+
+    @Test
+    void listETagChangesWithAuthorProfile() throws Exception {
+        when(announcementService.getGreatDeals(anyInt())).thenReturn(List.of(card(1L, "Айгерим")));
+        String eTag = mockMvc.perform(get("/announcement/great-deals"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // updatedAt объявления прежний, поменялось только имя автора
+        when(announcementService.getGreatDeals(anyInt())).thenReturn(List.of(card(1L, "Айгерім")));
+        mockMvc.perform(get("/announcement/great-deals").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void unpagedSearchIsNotCached() throws Exception {
+        when(announcementService.getFilteredAnnouncements(any())).thenReturn(List.of(AnnouncementResponse.builder().id(1L).build()));
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get("/announcement/search").contentType(MediaType.APPLICATION_JSON).content("{}"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0].id").value(1));
+        }
+
+        verify(announcementService, times(2)).getFilteredAnnouncements(any());
+        assertEquals(0, meterRegistry.get("announcements.query_cache.size").gauge().value());
+    }
+
+    private static AnnouncementResponse card(long id, String authorName) {
+        return AnnouncementResponse.builder()
+                .id(id)
+                .updatedAt(UPDATED_AT)
+                .user(UserResponse.builder().firstName(authorName).build())
+                .build();
+    }
+
+    private static String httpDate(Instant instant) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(instant.atZone(ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,110 @@
+package by.project.turamyzba.events;
+
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.repositories.AnnouncementRepository;
+import by.project.turamyzba.repositories.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AnnouncementChangeFeedTest {
+    private final AnnouncementRepository announcementRepository = mock(AnnouncementRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private AnnouncementChangeFeed changeFeed;
+
+    @BeforeEach
+    void setUp() {
+        changeFeed = new AnnouncementChangeFeed(10_000, announcementRepository, userRepository, eventPublisher, meterRegistry);
+        when(userRepository.findVersionsUpdatedAfter(any())).thenReturn(List.of());
+    }
+
+    @Test
+    void changeFromAnotherInstanceIsPublishedOnceAcrossOverlappingPolls() {
+        Announcement archived = announcement(1, LocalDateTime.now());
+        archived.setIsArchived(true);
+        when(announcementRepository.findAllUpdatedAfter(any())).thenReturn(List.of(archived));
+
+        changeFeed.poll();
+        changeFeed.poll();
+
+        ArgumentCaptor<AnnouncementBatchChangedEvent> published = ArgumentCaptor.forClass(AnnouncementBatchChangedEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(published.capture());
+        assertEquals(1, published.getValue().getChanges().size());
+        assertSame(archived, published.getValue().getChanges().get(0).getAnnouncement());
+        assertFalse(published.getValue().getChanges().get(0).isActive());
+        assertEquals(1, meterRegistry.get("announcements.change_feed.propagation_lag").timer().count());
+
+        // Новая версия того же объявления публикуется снова
+        when(announcementRepository.findAllUpdatedAfter(any())).thenReturn(List.of(announcement(1, LocalDateTime.now().plusSeconds(1))));
+        changeFeed.poll();
+        verify(eventPublisher, times(2)).publishEvent(any(AnnouncementBatchChangedEvent.class));
+    }
+
+    @Test
+    void ownCommittedChangeIsNotPublishedAgain() {
+        Announcement announcement = announcement(1, LocalDateTime.now());
+        changeFeed.onAnnouncementChanged(new AnnouncementChangedEvent(announcement));
+        when(announcementRepository.findAllUpdatedAfter(any())).thenReturn(List.of(announcement(1, announcement.getUpdatedAt())));
+
+        changeFeed.poll();
+
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void profileChangeFromAnotherInstanceIsPublishedOnce() {
+        when(announcementRepository.findAllUpdatedAfter(any())).thenReturn(List.of());
+        when(userRepository.findVersionsUpdatedAfter(any())).thenReturn(List.<Object[]>of(new Object[]{7L, Instant.now()}));
+
+        changeFeed.poll();
+        changeFeed.poll();
+
+        ArgumentCaptor<UserProfileChangedEvent> published = ArgumentCaptor.forClass(UserProfileChangedEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(published.capture());
+        assertEquals(7L, published.getValue().getUserId());
+    }
+
+    @Test
+    void failedPollRetriesFromTheSameWindow() {
+        when(announcementRepository.findAllUpdatedAfter(any())).thenReturn(List.of());
+        changeFeed.poll();
+        doThrow(new IllegalStateException("db is down")).when(announcementRepository).findAllUpdatedAfter(any());
+        changeFeed.poll();
+        doReturn(List.of()).when(announcementRepository).findAllUpdatedAfter(any());
+        changeFeed.poll();
+
+        ArgumentCaptor<LocalDateTime> since = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(announcementRepository, times(3)).findAllUpdatedAfter(since.capture());
+        assertEquals(since.getAllValues().get(1), since.getAllValues().get(2));
+    }
+
+    private static Announcement announcement(long id, LocalDateTime updatedAt) {
+        return Announcement.builder()
+                .id(id)
+                .updatedAt(updatedAt)
+                .isDeleted(false)
+                .isArchived(false)
+                .build();
+    }
+}
@@ -0,0 +1,211 @@
+package by.project.turamyzba.http;
+
+import by.project.turamyzba.exceptions.UpstreamUnavailableException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutboundHttpClientFactoryTest {
+    private HttpServer server;
+    private String baseUrl;
+    private final AtomicInteger failingCalls = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private SimpleMeterRegistry meterRegistry;
+    private OutboundHttpClientFactory factory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // Локальная заглушка: /ok отвечает сразу, /slow спит 1 с, /trickle отдает тело по байту в 100 мс,
+        // /fail отдает 500, /hold ждет release
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/ok", exchange -> respond(exchange, 200));
+        server.createContext("/slow", exchange -> {
+            sleep(1000);
+            respond(exchange, 200);
+        });
+        server.createContext("/trickle", exchange -> {
+            exchange.sendResponseHeaders(200, 15);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (int i = 0; i < 15; i++) {
+                    out.write('x');
+                    out.flush();
+                    sleep(100);
+                }
+            } catch (IOException e) {
+                // Клиент оборвал соединение
+            }
+        });
+        server.createContext("/fail", exchange -> {
+            failingCalls.incrementAndGet();
+            respond(exchange, 500);
+        });
+        server.createContext("/hold", exchange -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200);
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("http.client.upstreams.stub.timeout-ms", "300")
+                .withProperty("http.client.upstreams.stub.failure-threshold", "3")
+                .withProperty("http.client.upstreams.stub.open-ms", "300")
+                .withProperty("http.client.upstreams.narrow.max-concurrent", "2")
+                .withProperty("http.client.upstreams.narrow.bulkhead-wait-ms", "0");
+        meterRegistry = new SimpleMeterRegistry();
+        factory = new OutboundHttpClientFactory(20, 10, 1000, 30, environment, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        release.countDown();
+        factory.destroy();
+        server.stop(0);
+    }
+
+    @Test
+    void slowResponseIsCutAtUpstreamTimeout() {
+        RestTemplate restTemplate = factory.create("stub");
+
+        long start = System.nanoTime();
+        ResourceAccessException e = assertThrows(ResourceAccessException.class,
+                () -> restTemplate.getForObject(baseUrl + "/slow", String.class));
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 900);
+        assertEquals(1, meterRegistry.get("http.client.upstream.requests")
+                .tags("upstream", "stub", "outcome", "timeout").timer().count());
+        assertInstanceOf(SocketTimeoutException.class, e.getCause());
+    }
+
+    @Test
+    void slowlySentBodyIsCutAtUpstreamTimeout() {
+        RestTemplate restTemplate = factory.create("stub");
+
+        // Каждое чтение укладывается в таймаут ответа, весь обмен занял бы 1.5 с.
+        // Ошибку чтения тела RestTemplate оборачивает в RestClientException, а не ResourceAccessException
+        long start = System.nanoTime();
+        RestClientException e = assertThrows(RestClientException.class,
+                () -> restTemplate.getForObject(baseUrl + "/trickle", String.class));
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 900);
+        assertInstanceOf(SocketTimeoutException.class, e.getCause());
+        assertEquals(1, meterRegistry.get("http.client.upstream.requests")
+                .tags("upstream", "stub", "outcome", "timeout").timer().count());
+        assertEquals(0, meterRegistry.get("http.client.upstream.in_flight").tag("upstream", "stub").gauge().value());
+
+        // Отмененный таймер не обрывает следующий обмен на том же соединении
+        assertEquals("ok", restTemplate.getForObject(baseUrl + "/ok", String.class));
+    }
+
+    @Test
+    void callerDeadlineCoversBodyRead() {
+        RestTemplate restTemplate = factory.create("default");
+
+        long start = System.nanoTime();
+        RestClientException e = assertThrows(RestClientException.class, () -> Deadline.within(Duration.ofMillis(250),
+                () -> restTemplate.getForObject(baseUrl + "/trickle", String.class)));
+
+        assertInstanceOf(SocketTimeoutException.class, e.getCause());
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 900);
+    }
+
+    @Test
+    void callerDeadlineShortensTimeout() {
+        RestTemplate restTemplate = factory.create("default");
+
+        long start = System.nanoTime();
+        assertThrows(ResourceAccessException.class, () -> Deadline.within(Duration.ofMillis(150),
+                () -> restTemplate.getForObject(baseUrl + "/slow", String.class)));
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 900);
+    }
+
+    @Test
+    void consecutiveFailuresOpenCircuitUntilProbeSucceeds() throws InterruptedException {
+        RestTemplate restTemplate = factory.create("stub");
+
+        for (int i = 0; i < 3; i++) {
+            assertThrows(HttpServerErrorException.class, () -> restTemplate.getForObject(baseUrl + "/fail", String.class));
+        }
+        assertThrows(UpstreamUnavailableException.class, () -> restTemplate.getForObject(baseUrl + "/fail", String.class));
+        assertEquals(3, failingCalls.get());
+
+        Thread.sleep(350);
+        assertEquals("ok", restTemplate.getForObject(baseUrl + "/ok", String.class));
+        assertEquals(0, meterRegistry.get("http.client.upstream.circuit_state").tag("upstream", "stub").gauge().value());
+    }
+
+    @Test
+    void bulkheadRejectsCallsAboveLimit() throws Exception {
+        RestTemplate restTemplate = factory.create("narrow");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<String>> held = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                held.add(executor.submit(() -> restTemplate.getForObject(baseUrl + "/hold", String.class)));
+            }
+            while (meterRegistry.get("http.client.upstream.in_flight").tag("upstream", "narrow").gauge().value() < 2) {
+                Thread.sleep(10);
+            }
+
+            assertThrows(UpstreamUnavailableException.class, () -> restTemplate.getForObject(baseUrl + "/ok", String.class));
+
+            release.countDown();
+            for (Future<String> call : held) {
+                assertEquals("ok", call.get());
+            }
+            assertEquals("ok", restTemplate.getForObject(baseUrl + "/ok", String.class));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status) throws IOException {
+        byte[] body = (status == 200 ? "ok" : "error").getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
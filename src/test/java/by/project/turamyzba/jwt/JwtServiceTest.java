@@ -0,0 +1,68 @@
+package by.project.turamyzba.jwt;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JwtServiceTest {
+    private static final byte[] SECRET = "0123456789abcdef0123456789abcdef".getBytes();
+
+    private final JwtService jwtService = new JwtService(Base64.getEncoder().encodeToString(SECRET), 100);
+
+    private final UserDetails user = User.withUsername("owner@turamyzba.kz").password("secret").authorities(List.of()).build();
+
+    @Test
+    void accessTokenIsVerifiedOnceAndServedFromCache() {
+        Map<String, String> tokens = jwtService.generateTokens("owner@turamyzba.kz");
+
+        JwtService.VerifiedToken first = jwtService.verify(tokens.get("accessToken"));
+
+        assertEquals("owner@turamyzba.kz", first.username());
+        assertTrue(jwtService.validateToken(first, user));
+        assertSame(first, jwtService.verify(tokens.get("accessToken")));
+        assertFalse(jwtService.validateToken(jwtService.verify(tokens.get("refreshToken")), user));
+    }
+
+    @Test
+    void tamperedTokenIsRejected() {
+        String token = jwtService.generateTokens("owner@turamyzba.kz").get("accessToken");
+        String forged = Jwts.builder()
+                .setSubject("admin@turamyzba.kz")
+                .claim("typ", "access")
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(Keys.hmacShaKeyFor("fedcba9876543210fedcba9876543210".getBytes()), SignatureAlgorithm.HS256)
+                .compact();
+
+        jwtService.verify(token);
+
+        assertThrows(SignatureException.class, () -> jwtService.verify(forged));
+    }
+
+    @Test
+    void expiredTokenIsRejected() {
+        String expired = Jwts.builder()
+                .setSubject("owner@turamyzba.kz")
+                .claim("typ", "access")
+                .setExpiration(new Date(System.currentTimeMillis() - 1_000))
+                .signWith(Keys.hmacShaKeyFor(SECRET), SignatureAlgorithm.HS256)
+                .compact();
+
+        assertThrows(ExpiredJwtException.class, () -> jwtService.verify(expired));
+    }
+}
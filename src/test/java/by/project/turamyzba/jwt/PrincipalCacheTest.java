@@ -0,0 +1,47 @@
+package by.project.turamyzba.jwt;
+
+import by.project.turamyzba.events.UserAccountChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PrincipalCacheTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PrincipalCache cache = new PrincipalCache(60, 100, meterRegistry);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void principalIsLoadedOnceUntilInvalidated() {
+        AuthenticatedUser first = cache.get("owner@turamyzba.kz", this::load);
+        assertSame(first, cache.get("owner@turamyzba.kz", this::load));
+        assertEquals(1, loads.get());
+
+        cache.onUserAccountChanged(new UserAccountChangedEvent(1L));
+        cache.get("owner@turamyzba.kz", this::load);
+
+        assertEquals(2, loads.get());
+        assertEquals(1, meterRegistry.get("auth.principal.cache").tag("result", "hit").counter().count());
+    }
+
+    @Test
+    void loadStartedBeforeInvalidationIsNotCached() {
+        cache.get("owner@turamyzba.kz", email -> {
+            // Пароль сменили, пока шло чтение из БД: прочитанный principal уже устарел
+            cache.invalidate(1L);
+            return load(email);
+        });
+        cache.get("owner@turamyzba.kz", this::load);
+
+        assertEquals(2, loads.get());
+    }
+
+    private AuthenticatedUser load(String email) {
+        loads.incrementAndGet();
+        return new AuthenticatedUser(1L, email, "hash", "Женщина", LocalDate.of(2000, 1, 1));
+    }
+}
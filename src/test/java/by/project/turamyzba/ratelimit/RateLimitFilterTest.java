@@ -0,0 +1,218 @@
+package by.project.turamyzba.ratelimit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimitFilterTest {
+    private SimpleMeterRegistry meterRegistry;
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new RateLimitFilter(List.of(
+                RateLimitRule.builder().method(HttpMethod.POST).path("/auth/login").ipLimit(3).emailLimit(2).build()),
+                Duration.ofSeconds(30), new ClientIpResolver(List.of("192.168.0.0/16")), new ObjectMapper(), meterRegistry);
+    }
+
+    @Test
+    void requestsAboveIpLimitGet429BeforeChain() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, login("10.0.0.1", "{}").getStatus());
+        }
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request("10.0.0.1", "{}"), response, chain);
+
+        assertEquals(429, response.getStatus());
+        assertNotNull(response.getHeader("Retry-After"));
+        assertNull(chain.getRequest());
+        assertEquals(200, login("10.0.0.2", "{}").getStatus());
+        assertEquals(1, meterRegistry.get("http.rate_limit.rejected").tag("key", "ip").counter().count());
+    }
+
+    @Test
+    void emailLimitAppliesAcrossIpsAndBodyReachesController() throws Exception {
+        String body = "{\"email\":\"User@Mail.kz\",\"password\":\"secret\"}";
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request("10.0.0.1", body), new MockHttpServletResponse(), chain);
+        assertEquals(body, new String(((HttpServletRequest) chain.getRequest()).getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+
+        assertEquals(200, login("10.0.0.2", body.replace("User@Mail.kz", "user@mail.kz")).getStatus());
+        assertEquals(429, login("10.0.0.3", body).getStatus());
+        assertEquals(200, login("10.0.0.3", "{\"email\":\"other@mail.kz\"}").getStatus());
+    }
+
+    @Test
+    void forwardedForFromTrustedProxyIdentifiesClient() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, login(forwarded("192.168.1.1", "203.0.113.5")).getStatus());
+        }
+        assertEquals(429, login(forwarded("192.168.1.2", "203.0.113.5")).getStatus());
+        assertEquals(200, login(forwarded("192.168.1.1", "203.0.113.6")).getStatus());
+        // Подставленный клиентом адрес левее последнего недоверенного не учитывается
+        assertEquals(429, login(forwarded("192.168.1.1", "198.51.100.1, 203.0.113.5, 192.168.1.3")).getStatus());
+    }
+
+    @Test
+    void forwardedForFromUntrustedAddressIsIgnored() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, login(forwarded("198.51.100.1", "203.0.113." + i)).getStatus());
+        }
+        assertEquals(429, login(forwarded("198.51.100.1", "203.0.113.9")).getStatus());
+    }
+
+    @Test
+    void bufferedBodyIsReadAsynchronously() throws Exception {
+        String body = "{\"email\":\"user@mail.kz\"}";
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request("10.0.0.1", body), new MockHttpServletResponse(), chain);
+
+        assertEquals(body, readAsync(((HttpServletRequest) chain.getRequest()).getInputStream()));
+    }
+
+    @Test
+    void longBodyIsReadAsynchronouslyThroughOriginalStream() throws Exception {
+        byte[] body = ("{\"email\":\"" + "a".repeat(20_000) + "\"}").getBytes(StandardCharsets.UTF_8);
+        ByteArrayInputStream source = new ByteArrayInputStream(body);
+        ServletInputStream original = new ServletInputStream() {
+            @Override
+            public boolean isFinished() {
+                return source.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            // Как контейнер: данные, пока они есть, затем конец тела
+            @Override
+            public void setReadListener(ReadListener listener) {
+                try {
+                    if (!isFinished()) {
+                        listener.onDataAvailable();
+                    }
+                    listener.onAllDataRead();
+                } catch (IOException e) {
+                    listener.onError(e);
+                }
+            }
+
+            @Override
+            public int read() {
+                return source.read();
+            }
+        };
+        HttpServletRequest request = new HttpServletRequestWrapper(request("10.0.0.1", "")) {
+            @Override
+            public ServletInputStream getInputStream() {
+                return original;
+            }
+        };
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertEquals(new String(body, StandardCharsets.UTF_8), readAsync(((HttpServletRequest) chain.getRequest()).getInputStream()));
+    }
+
+    @Test
+    void otherRoutesAreNotLimited() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/auth/login");
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request, response, new MockFilterChain());
+            assertEquals(200, response.getStatus());
+        }
+    }
+
+    @Test
+    void idleKeysAreEvicted() {
+        RateLimiter limiter = new RateLimiter(2, Duration.ofSeconds(10));
+        assertTrue(limiter.tryAcquire("a", 1_000));
+        assertTrue(limiter.tryAcquire("a", 2_000));
+        assertFalse(limiter.tryAcquire("a", 3_000));
+        assertTrue(limiter.tryAcquire("b", 15_000));
+
+        limiter.evictIdle(25_000);
+
+        assertEquals(1, limiter.size());
+        assertTrue(limiter.tryAcquire("a", 25_000));
+    }
+
+    private MockHttpServletResponse login(String ip, String body) throws Exception {
+        return login(request(ip, body));
+    }
+
+    private MockHttpServletResponse login(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private static MockHttpServletRequest forwarded(String proxy, String forwardedFor) {
+        MockHttpServletRequest request = request(proxy, "{}");
+        request.addHeader("X-Forwarded-For", forwardedFor);
+        return request;
+    }
+
+    private static String readAsync(ServletInputStream in) {
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        AtomicBoolean done = new AtomicBoolean();
+        in.setReadListener(new ReadListener() {
+            @Override
+            public void onDataAvailable() throws IOException {
+                byte[] buffer = new byte[4096];
+                int n;
+                while (in.isReady() && (n = in.read(buffer)) != -1) {
+                    read.write(buffer, 0, n);
+                }
+            }
+
+            @Override
+            public void onAllDataRead() {
+                done.set(true);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                throw new AssertionError(t);
+            }
+        });
+        assertTrue(done.get());
+        assertTrue(in.isFinished());
+        return read.toString(StandardCharsets.UTF_8);
+    }
+
+    private static MockHttpServletRequest request(String ip, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/auth/login");
+        request.setRemoteAddr(ip);
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+}
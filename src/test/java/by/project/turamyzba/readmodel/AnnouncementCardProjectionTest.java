@@ -0,0 +1,122 @@
+package by.project.turamyzba.readmodel;
+
+import by.project.turamyzba.dto.responses.AnnouncementResponse;
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.entities.Image;
+import by.project.turamyzba.entities.User;
+import by.project.turamyzba.events.AnnouncementChangedEvent;
+import by.project.turamyzba.events.UserProfileChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.globally_quoted_identifiers=true",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({AnnouncementCardProjection.class, AnnouncementCardProjectionTest.Metrics.class})
+// Проекция сама открывает транзакции, данные должны быть закоммичены
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AnnouncementCardProjectionTest {
+    @Autowired
+    private AnnouncementCardProjection projection;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transaction;
+
+    private User owner;
+
+    private final List<Long> ids = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        transaction = new TransactionTemplate(transactionManager);
+        ids.clear();
+        transaction.executeWithoutResult(status -> {
+            entityManager.createQuery("delete from Image").executeUpdate();
+            entityManager.createNativeQuery("delete from \"advertisement_preferences\"").executeUpdate();
+            entityManager.createQuery("delete from Announcement").executeUpdate();
+            entityManager.createQuery("delete from User").executeUpdate();
+            owner = new User();
+            owner.setEmail("owner@turamyzba.kz");
+            owner.setFirstName("Owner");
+            owner.setLastName("Test");
+            entityManager.persist(owner);
+            for (int i = 0; i < 3; i++) {
+                Announcement announcement = Announcement.builder()
+                        .title("Announcement " + i)
+                        .region("Алматы")
+                        .cost(50_000 + i * 1_000)
+                        .preferences(new ArrayList<>(List.of("Не курит")))
+                        .isArchived(false)
+                        .user(owner)
+                        .build();
+                announcement.setPhotos(new ArrayList<>(List.of(
+                        Image.builder().url("https://img/" + i).announcement(announcement).build())));
+                entityManager.persist(announcement);
+                ids.add(announcement.getId());
+            }
+        });
+        projection.rebuild();
+    }
+
+    @Test
+    void cardsAreServedInRequestedOrderWithoutStatements() {
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        List<AnnouncementResponse> cards = projection.cards(List.of(ids.get(2), ids.get(0), -1L, ids.get(1)));
+
+        assertTrue(projection.isReady());
+        assertEquals(List.of(ids.get(2), ids.get(0), ids.get(1)), cards.stream().map(AnnouncementResponse::getId).toList());
+        assertEquals("https://img/2", cards.get(0).getPhotos().get(0).getUrl());
+        assertEquals("Owner", cards.get(0).getUser().getFirstName());
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void changesAreAppliedAfterAnnouncementAndProfileEvents() {
+        Announcement archived = transaction.execute(status -> {
+            Announcement announcement = entityManager.find(Announcement.class, ids.get(0));
+            announcement.setIsArchived(true);
+            entityManager.find(User.class, owner.getId()).setFirstName("Renamed");
+            return announcement;
+        });
+
+        projection.onAnnouncementChanged(new AnnouncementChangedEvent(archived));
+        projection.onUserProfileChanged(new UserProfileChangedEvent(owner.getId()));
+
+        List<AnnouncementResponse> cards = projection.cards(ids);
+        assertEquals(List.of(ids.get(1), ids.get(2)), cards.stream().map(AnnouncementResponse::getId).toList());
+        assertTrue(cards.stream().allMatch(card -> "Renamed".equals(card.getUser().getFirstName())));
+    }
+
+    static class Metrics {
+        @Bean
+        SimpleMeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package by.project.turamyzba.search;
+
+import by.project.turamyzba.dto.requests.AnnouncementFilterRequest;
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.events.AnnouncementChangedEvent;
+import by.project.turamyzba.repositories.AnnouncementRepository;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AnnouncementFacetIndexTest {
+    private static final int COUNT = 2500;
+
+    private final AnnouncementRepository announcementRepository = mock(AnnouncementRepository.class);
+    private final AnnouncementFacetIndex facetIndex = new AnnouncementFacetIndex(announcementRepository);
+
+    @Test
+    void rebuildReadsDatabaseWithoutWriteLockAndReplaysChangesMadeDuringLoad() {
+        when(announcementRepository.findActiveAfter(anyLong(), any())).thenAnswer(invocation -> {
+            long afterId = invocation.getArgument(0);
+            // Слушатели коммитов не должны ждать чтения из БД
+            assertFalse(facetIndex.lock.isWriteLocked());
+            assertFalse(facetIndex.isReady());
+            if (afterId == 1000) {
+                facetIndex.onAnnouncementChanged(new AnnouncementChangedEvent(announcement(5, "Астана", 10)));
+                facetIndex.onAnnouncementChanged(new AnnouncementChangedEvent(announcement(5, "Астана", 1)));
+                facetIndex.onAnnouncementChanged(new AnnouncementChangedEvent(announcement(COUNT + 1, "Астана", 2)));
+                Announcement archived = announcement(7, "Алматы", 7);
+                archived.setIsArchived(true);
+                facetIndex.onAnnouncementChanged(new AnnouncementChangedEvent(archived));
+            }
+            return LongStream.rangeClosed(afterId + 1, Math.min(afterId + 1000, COUNT))
+                    .mapToObj(id -> announcement(id, "Алматы", (int) (COUNT - id + 100)))
+                    .toList();
+        });
+
+        facetIndex.rebuild();
+
+        assertTrue(facetIndex.isReady());
+        assertArrayEquals(new int[]{5, COUNT + 1}, facetIndex.filter(AnnouncementFilterRequest.builder().region("Астана").build()).toArray());
+        assertArrayEquals(new int[]{5, COUNT + 1}, facetIndex.filter(AnnouncementFilterRequest.builder().maxPrice(99).build()).toArray());
+        RoaringBitmap almaty = facetIndex.filter(AnnouncementFilterRequest.builder().region("Алматы").build());
+        assertEquals(COUNT - 2, almaty.getCardinality());
+        assertFalse(almaty.contains(7));
+        // Диапазон по цене после одной сортировки: cost = COUNT - id + 100
+        assertArrayEquals(new int[]{COUNT - 1, COUNT}, facetIndex.filter(AnnouncementFilterRequest.builder().minPrice(100).maxPrice(101).build()).toArray());
+
+        facetIndex.onAnnouncementChanged(new AnnouncementChangedEvent(announcement(COUNT, "Алматы", 5000)));
+        assertArrayEquals(new int[]{COUNT - 1}, facetIndex.filter(AnnouncementFilterRequest.builder().minPrice(100).maxPrice(101).build()).toArray());
+    }
+
+    @Test
+    void failedRebuildStopsBufferingChanges() {
+        when(announcementRepository.findActiveAfter(anyLong(), any())).thenThrow(new IllegalStateException("db is down"));
+
+        assertThrows(IllegalStateException.class, facetIndex::rebuild);
+
+        // Индекс остается не готовым (сервисы идут в SQL), но изменения снова применяются сразу
+        assertFalse(facetIndex.isReady());
+        facetIndex.onAnnouncementChanged(new AnnouncementChangedEvent(announcement(1, "Астана", 1)));
+        assertArrayEquals(new int[]{1}, facetIndex.filter(AnnouncementFilterRequest.builder().region("Астана").build()).toArray());
+    }
+
+    private static Announcement announcement(long id, String region, int cost) {
+        return Announcement.builder()
+                .id(id)
+                .region(region)
+                .cost(cost)
+                .isDeleted(false)
+                .isArchived(false)
+                .build();
+    }
+}
@@ -0,0 +1,121 @@
+package by.project.turamyzba.search;
+
+import by.project.turamyzba.dto.requests.AnnouncementFilterRequest;
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.events.AnnouncementChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnnouncementTextIndexTest {
+    private final AnnouncementTextIndex textIndex = new AnnouncementTextIndex(null);
+    private final AnnouncementFacetIndex facetIndex = new AnnouncementFacetIndex(null);
+
+    @BeforeEach
+    void setUp() {
+        index(1, "Алматы", "Комната для студентки", "Светлая квартира рядом с университетом");
+        index(2, "Алматы", "Квартира в центре", "Просторная квартира, квартира после ремонта");
+        index(3, "Астана", "Квартира у метро", "Две комнаты, рядом метро и парк");
+        index(4, "Алматы", "Подселение", "Ищу соседку в квартиру, до метро пять минут");
+        index(5, "Астана", "Бөлме жалға беріледі", "Пәтерде екі бөлме, студенттерге ыңғайлы");
+        index(6, "Алматы", "Дом", "Частный дом с садом, квартира не нужна, много места для всех жильцов и гостей и машин");
+    }
+
+    @Test
+    void titleMatchOutranksDescriptionMatch() {
+        // "метро": в заголовке у 3, в описании у 4
+        assertEquals(List.of(3L, 4L), textIndex.search("метро", null, 0, 10));
+    }
+
+    @Test
+    void rareTermOutweighsCommonTerm() {
+        // "квартира" есть почти везде, "студентка" - только у 1
+        assertEquals(1L, textIndex.search("квартира студентка", null, 0, 10).get(0));
+    }
+
+    @Test
+    void termFrequencyAndLengthNormalizationOrderMatches() {
+        // 2: квартира в заголовке и дважды в описании, 6: один раз в длинном описании
+        List<Long> ids = textIndex.search("квартиры", null, 0, 10);
+        assertEquals(2L, ids.get(0));
+        assertEquals(6L, ids.get(ids.size() - 1));
+    }
+
+    @Test
+    void inflectedQueryFindsOtherFormsInBothLanguages() {
+        assertEquals(List.of(5L), textIndex.search("бөлмелер", null, 0, 10));
+        assertEquals(List.of(5L), textIndex.search("пәтерге", null, 0, 10));
+        assertTrue(textIndex.search("квартирами", null, 0, 10).containsAll(List.of(1L, 2L, 3L, 4L, 6L)));
+    }
+
+    @Test
+    void facetFilterRestrictsRankedResults() {
+        List<Long> all = textIndex.search("квартира метро", null, 0, 10);
+        List<Long> almaty = textIndex.search("квартира метро",
+                facetIndex.filter(AnnouncementFilterRequest.builder().region("Алматы").build()), 0, 10);
+
+        assertEquals(all.stream().filter(id -> id != 3L && id != 5L).toList(), almaty);
+        assertEquals(List.of(3L), textIndex.search("метро",
+                facetIndex.filter(AnnouncementFilterRequest.builder().region("Астана").build()), 0, 10));
+        assertTrue(textIndex.search("метро",
+                facetIndex.filter(AnnouncementFilterRequest.builder().region("Шымкент").build()), 0, 10).isEmpty());
+    }
+
+    @Test
+    void pagesByOffsetConcatenateToFullRanking() {
+        List<Long> full = textIndex.search("квартира", null, 0, 10);
+        List<Long> paged = new ArrayList<>();
+        for (int offset = 0; offset < full.size(); offset += 2) {
+            paged.addAll(textIndex.search("квартира", null, offset, 2));
+        }
+
+        assertEquals(full, paged);
+        assertTrue(textIndex.search("квартира", null, full.size(), 2).isEmpty());
+        assertTrue(textIndex.search("квартира", null, 0, 0).isEmpty());
+    }
+
+    @Test
+    void hugePageIsEmptyInsteadOfOverflowing() {
+        // page=5000000&limit=100 и page, при котором offset + limit не помещается в int
+        assertTrue(textIndex.search("квартира", null, 4_999_999L * 100, 100).isEmpty());
+        assertTrue(textIndex.search("квартира", null, Integer.MAX_VALUE, 100).isEmpty());
+    }
+
+    @Test
+    void archivedAnnouncementLeavesIndex() {
+        Announcement archived = announcement(3, "Астана", "Квартира у метро", "Две комнаты, рядом метро и парк");
+        archived.setIsArchived(true);
+        textIndex.onAnnouncementChanged(new AnnouncementChangedEvent(archived));
+
+        assertEquals(List.of(4L), textIndex.search("метро", null, 0, 10));
+        assertTrue(textIndex.search("парк", null, 0, 10).isEmpty());
+    }
+
+    @Test
+    void unknownOrEmptyQueryReturnsNothing() {
+        assertTrue(textIndex.search("бассейн", null, 0, 10).isEmpty());
+        assertTrue(textIndex.search(" ,. ", null, 0, 10).isEmpty());
+    }
+
+    private void index(long id, String region, String title, String info) {
+        AnnouncementChangedEvent event = new AnnouncementChangedEvent(announcement(id, region, title, info));
+        textIndex.onAnnouncementChanged(event);
+        facetIndex.onAnnouncementChanged(event);
+    }
+
+    private static Announcement announcement(long id, String region, String title, String info) {
+        return Announcement.builder()
+                .id(id)
+                .region(region)
+                .title(title)
+                .apartmentsInfo(info)
+                .isDeleted(false)
+                .isArchived(false)
+                .build();
+    }
+}
@@ -0,0 +1,166 @@
+package by.project.turamyzba.search;
+
+import by.project.turamyzba.dto.responses.TileClusterResponse;
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.entities.GeocodeStatus;
+import by.project.turamyzba.events.AnnouncementChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnnouncementTileIndexTest {
+    private final AnnouncementTileIndex tileIndex = new AnnouncementTileIndex(null, 64);
+
+    @Test
+    void tileBoundsFollowWebMercator() {
+        assertEquals(-180, GeoUtils.tileLongitude(0, 0), 1e-9);
+        assertEquals(180, GeoUtils.tileLongitude(1, 0), 1e-9);
+        assertEquals(85.0511, GeoUtils.tileLatitude(0, 0), 1e-4);
+        assertEquals(-85.0511, GeoUtils.tileLatitude(1, 0), 1e-4);
+        assertEquals(0, GeoUtils.tileLatitude(1, 1), 1e-9);
+        assertEquals(0, GeoUtils.tileLongitude(1, 1), 1e-9);
+
+        // Алматы на zoom 10 - тайл 730/375, как у OSM
+        Announcement almaty = announcement(1, 43.25, 76.95, 100_000);
+        assertEquals(1, AnnouncementTileIndex.cluster(10, 730, 375, List.of(almaty)).size());
+        assertTrue(AnnouncementTileIndex.cluster(10, 731, 375, List.of(almaty)).isEmpty());
+        assertTrue(AnnouncementTileIndex.cluster(10, 730, 374, List.of(almaty)).isEmpty());
+    }
+
+    @Test
+    void pointFallsInsideBoundsOfItsTile() {
+        Random random = new Random(5);
+        for (int i = 0; i < 500; i++) {
+            double latitude = (random.nextDouble() - 0.5) * 170;
+            double longitude = (random.nextDouble() - 0.5) * 360;
+            int zoom = random.nextInt(AnnouncementTileIndex.MAX_ZOOM + 1);
+            int x = (int) (GeoUtils.mercatorX(longitude) * (1 << zoom));
+            int y = (int) (GeoUtils.mercatorY(latitude) * (1 << zoom));
+
+            assertTrue(AnnouncementTileIndex.isValidTile(zoom, x, y));
+            assertEquals(1, AnnouncementTileIndex.cluster(zoom, x, y, List.of(announcement(1, latitude, longitude, null))).size());
+            assertTrue(longitude >= GeoUtils.tileLongitude(x, zoom) && longitude <= GeoUtils.tileLongitude(x + 1, zoom));
+            assertTrue(latitude <= GeoUtils.tileLatitude(y, zoom) && latitude >= GeoUtils.tileLatitude(y + 1, zoom));
+        }
+        assertFalse(AnnouncementTileIndex.isValidTile(3, 8, 0));
+        assertFalse(AnnouncementTileIndex.isValidTile(AnnouncementTileIndex.MAX_ZOOM + 1, 0, 0));
+    }
+
+    @Test
+    void nearbyListingsMergeWhenZoomedOutAndSplitWhenZoomedIn() {
+        // Около 150 м друг от друга
+        Announcement first = announcement(1, 43.2500, 76.9500, 80_000);
+        Announcement second = announcement(2, 43.2510, 76.9512, 120_000);
+        index(first, second);
+
+        TileClusterResponse merged = single(tileOf(10, first));
+        assertEquals(2, merged.getCount());
+        assertNull(merged.getAnnouncementId());
+        assertEquals(80_000, merged.getMinCost());
+        assertEquals(120_000, merged.getMaxCost());
+        assertEquals((43.2500 + 43.2510) / 2, merged.getLatitude(), 1e-9);
+        assertEquals((76.9500 + 76.9512) / 2, merged.getLongitude(), 1e-9);
+
+        List<TileClusterResponse> split = clustersAround(18, first, second);
+        assertEquals(2, split.size());
+        assertEquals(List.of(1L, 2L), split.stream().map(TileClusterResponse::getAnnouncementId).sorted().toList());
+
+        // Число кластеров не убывает с приближением, сумма count всегда равна числу объявлений
+        int previous = 0;
+        for (int zoom = 0; zoom <= AnnouncementTileIndex.MAX_ZOOM; zoom++) {
+            List<TileClusterResponse> clusters = clustersAround(zoom, first, second);
+            assertEquals(2, clusters.stream().mapToInt(TileClusterResponse::getCount).sum(), "zoom " + zoom);
+            assertTrue(clusters.size() >= previous, "zoom " + zoom);
+            previous = clusters.size();
+        }
+    }
+
+    @Test
+    void indexedTilesMatchClusteringFromDatabaseRows() {
+        Random random = new Random(9);
+        List<Announcement> announcements = new ArrayList<>();
+        for (int i = 1; i <= 300; i++) {
+            announcements.add(announcement(i, 43.2 + random.nextDouble() * 0.1, 76.85 + random.nextDouble() * 0.2,
+                    random.nextInt(5) == 0 ? null : 50_000 + random.nextInt(20) * 5_000));
+        }
+        index(announcements.toArray(new Announcement[0]));
+
+        // Ниже и выше BASE_ZOOM индекс собирает тайл разными путями
+        for (int zoom : new int[]{0, 5, 9, 12, 13, 14, 15, 17, 20}) {
+            for (Announcement announcement : announcements.subList(0, 20)) {
+                int[] tile = tileOf(zoom, announcement);
+                assertEquals(AnnouncementTileIndex.cluster(zoom, tile[0], tile[1], announcements), tileIndex.tile(zoom, tile[0], tile[1]),
+                        "zoom " + zoom);
+            }
+        }
+    }
+
+    @Test
+    void changedListingInvalidatesCachedTiles() {
+        Announcement first = announcement(1, 43.25, 76.95, 80_000);
+        index(first);
+        int[] tile = tileOf(12, first);
+        assertEquals(1, single(tile).getCount());
+
+        Announcement second = announcement(2, 43.2501, 76.9501, 90_000);
+        index(second);
+        assertEquals(2, single(tile).getCount());
+
+        second.setIsArchived(true);
+        index(second);
+        first.setGeocodeStatus(GeocodeStatus.PENDING);
+        index(first);
+        assertTrue(tileIndex.tile(12, tile[0], tile[1]).isEmpty());
+    }
+
+    private List<TileClusterResponse> clustersAround(int zoom, Announcement... announcements) {
+        List<TileClusterResponse> clusters = new ArrayList<>();
+        List<String> seen = new ArrayList<>();
+        for (Announcement announcement : announcements) {
+            int[] tile = tileOf(zoom, announcement);
+            if (!seen.contains(tile[0] + "/" + tile[1])) {
+                seen.add(tile[0] + "/" + tile[1]);
+                clusters.addAll(tileIndex.tile(zoom, tile[0], tile[1]));
+            }
+        }
+        return clusters;
+    }
+
+    private TileClusterResponse single(int[] tile) {
+        List<TileClusterResponse> clusters = tileIndex.tile(tile[2], tile[0], tile[1]);
+        assertEquals(1, clusters.size());
+        return clusters.get(0);
+    }
+
+    private void index(Announcement... announcements) {
+        for (Announcement announcement : announcements) {
+            tileIndex.onAnnouncementChanged(new AnnouncementChangedEvent(announcement));
+        }
+    }
+
+    private static int[] tileOf(int zoom, Announcement announcement) {
+        return new int[]{
+                (int) (GeoUtils.mercatorX(announcement.getLongitude()) * (1 << zoom)),
+                (int) (GeoUtils.mercatorY(announcement.getLatitude()) * (1 << zoom)),
+                zoom};
+    }
+
+    private static Announcement announcement(long id, double latitude, double longitude, Integer cost) {
+        return Announcement.builder()
+                .id(id)
+                .latitude(latitude)
+                .longitude(longitude)
+                .cost(cost)
+                .geocodeStatus(GeocodeStatus.RESOLVED)
+                .isDeleted(false)
+                .isArchived(false)
+                .build();
+    }
+}
@@ -0,0 +1,43 @@
+package by.project.turamyzba.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeoUtilsTest {
+
+    @Test
+    void distanceBetweenKnownPoints() {
+        // Алматы - Астана
+        assertEquals(972, GeoUtils.distanceKm(43.2389, 76.8897, 51.1694, 71.4491), 3);
+        assertEquals(0, GeoUtils.distanceKm(43.25, 76.95, 43.25, 76.95), 1e-9);
+    }
+
+    @Test
+    void boundingBoxContainsWholeCircle() {
+        for (double latitude : new double[]{0, 43.25, 51.17, 70}) {
+            for (double radiusKm : new double[]{0.1, 1.112, 25, 500}) {
+                double dLat = GeoUtils.latitudeDelta(radiusKm);
+                double dLon = GeoUtils.longitudeDelta(latitude, radiusKm);
+                for (int bearing = 0; bearing < 360; bearing++) {
+                    double[] point = destination(latitude, 0, bearing, radiusKm);
+                    assertEquals(radiusKm, GeoUtils.distanceKm(latitude, 0, point[0], point[1]), 1e-6);
+                    assertTrue(Math.abs(point[0] - latitude) <= dLat + 1e-9, "latitude at " + latitude + ", " + radiusKm + " km, " + bearing);
+                    assertTrue(Math.abs(point[1]) <= dLon + 1e-9, "longitude at " + latitude + ", " + radiusKm + " km, " + bearing);
+                }
+            }
+        }
+    }
+
+    // Точка на расстоянии distanceKm по азимуту bearing на сфере GeoUtils
+    private static double[] destination(double latitude, double longitude, double bearing, double distanceKm) {
+        double angular = distanceKm / GeoUtils.EARTH_RADIUS_KM;
+        double lat1 = Math.toRadians(latitude);
+        double theta = Math.toRadians(bearing);
+        double lat2 = Math.asin(Math.sin(lat1) * Math.cos(angular) + Math.cos(lat1) * Math.sin(angular) * Math.cos(theta));
+        double lon2 = Math.toRadians(longitude) + Math.atan2(Math.sin(theta) * Math.sin(angular) * Math.cos(lat1),
+                Math.cos(angular) - Math.sin(lat1) * Math.sin(lat2));
+        return new double[]{Math.toDegrees(lat2), Math.toDegrees(lon2)};
+    }
+}
@@ -0,0 +1,137 @@
+package by.project.turamyzba.search;
+
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.events.AnnouncementChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GreatDealsIndexTest {
+    private static final int AREA = 50;
+
+    private final GreatDealsIndex greatDealsIndex = new GreatDealsIndex(null, new SimpleMeterRegistry());
+
+    @Test
+    void medianOfOddAndEvenCounts() {
+        SortedValues values = new SortedValues();
+        for (double value : new double[]{500, 100, 300, 200, 400}) {
+            values.add(value, (int) value);
+        }
+        assertEquals(300, values.median());
+
+        values.add(600, 600);
+        assertEquals(350, values.median());
+
+        values.add(350, 1);
+        values.add(350, 2);
+        assertEquals(350, values.median());
+        assertEquals(1, values.id(3));
+        assertEquals(2, values.id(4));
+
+        values.remove(350, 1);
+        values.remove(350, 2);
+        values.remove(100, 100);
+        assertEquals(400, values.median());
+    }
+
+    @Test
+    void dealsAreRankedByDiscountToDistrictMedian() {
+        // Медиана 300: скидки 2/3 и 1/3
+        index(1, "Алматы", "Бостандыкский", 100);
+        index(2, "Алматы", "Бостандыкский", 200);
+        index(3, "Алматы", "Бостандыкский", 300);
+        index(4, "Алматы", "Бостандыкский", 400);
+        index(5, "Алматы", "Бостандыкский", 500);
+        // Медиана (400 + 500) / 2 = 450: скидки 0.6, 0.4 и 1/9
+        index(11, "Алматы", "Медеуский", 180);
+        index(12, "Алматы", "Медеуский", 270);
+        index(13, "Алматы", "Медеуский", 400);
+        index(14, "Алматы", "Медеуский", 500);
+        index(15, "Алматы", "Медеуский", 700);
+        index(16, "Алматы", "Медеуский", 900);
+
+        assertEquals(List.of(1L, 11L, 12L, 2L, 13L), greatDealsIndex.ranking(GreatDealsIndex.RANKING_SIZE));
+        assertEquals(List.of(1L, 11L), greatDealsIndex.ranking(2));
+
+        // Новое объявление по медиане сдвигает медиану Медеуского района до 400: скидки 0.55, 0.325 и 0
+        index(17, "Алматы", "Медеуский", 400);
+        assertEquals(List.of(1L, 11L, 2L, 12L), greatDealsIndex.ranking(GreatDealsIndex.RANKING_SIZE));
+    }
+
+    @Test
+    void equalDiscountsAreOrderedByNewestFirst() {
+        for (int id = 1; id <= 5; id++) {
+            index(id, "Астана", "Есильский", id == 3 ? 300 : 100);
+        }
+        index(6, "Астана", "Есильский", 300);
+        index(7, "Астана", "Есильский", 300);
+        index(8, "Астана", "Есильский", 300);
+        // Медиана (100 + 300) / 2 = 200, у 1, 2, 4 и 5 одинаковая скидка
+        assertEquals(List.of(5L, 4L, 2L, 1L), greatDealsIndex.ranking(GreatDealsIndex.RANKING_SIZE));
+    }
+
+    @Test
+    void smallDistrictsAreNotRanked() {
+        index(1, "Алматы", "Алатауский", 10);
+        assertTrue(greatDealsIndex.ranking(GreatDealsIndex.RANKING_SIZE).isEmpty());
+
+        // Тот же район в другом регионе - отдельная медиана
+        for (int id = 2; id <= 5; id++) {
+            index(id, "Шымкент", "Алатауский", 10 * id);
+        }
+        assertTrue(greatDealsIndex.ranking(GreatDealsIndex.RANKING_SIZE).isEmpty());
+
+        index(6, "Алматы", "Алатауский", 300);
+        index(7, "Алматы", "Алатауский", 300);
+        index(8, "Алматы", "Алатауский", 300);
+        index(9, "Алматы", "Алатауский", 300);
+        assertEquals(List.of(1L), greatDealsIndex.ranking(GreatDealsIndex.RANKING_SIZE));
+
+        archive(9, "Алматы", "Алатауский", 300);
+        assertTrue(greatDealsIndex.ranking(GreatDealsIndex.RANKING_SIZE).isEmpty());
+    }
+
+    @Test
+    void listingsWithoutAreaOrCostAreIgnored() {
+        for (int id = 1; id <= 5; id++) {
+            index(id, "Алматы", "Ауэзовский", 100 * id);
+        }
+        greatDealsIndex.onAnnouncementChanged(new AnnouncementChangedEvent(announcement(6, "Алматы", "Ауэзовский", 1_000, null)));
+        greatDealsIndex.onAnnouncementChanged(new AnnouncementChangedEvent(announcement(7, "Алматы", "Ауэзовский", 1_000, 0)));
+        greatDealsIndex.onAnnouncementChanged(new AnnouncementChangedEvent(announcement(8, "Алматы", "Ауэзовский", null, AREA)));
+        greatDealsIndex.onAnnouncementChanged(new AnnouncementChangedEvent(announcement(9, "Алматы", "", 1, AREA)));
+
+        // Медиана осталась 300 - объявления без площади не учитываются и не попадают в рейтинг
+        assertEquals(List.of(1L, 2L), greatDealsIndex.ranking(GreatDealsIndex.RANKING_SIZE));
+
+        // Площадь удалили у объявления из рейтинга
+        greatDealsIndex.onAnnouncementChanged(new AnnouncementChangedEvent(announcement(1, "Алматы", "Ауэзовский", 100 * AREA, null)));
+        assertTrue(greatDealsIndex.ranking(GreatDealsIndex.RANKING_SIZE).isEmpty());
+    }
+
+    private void index(long id, String region, String district, int pricePerMeter) {
+        greatDealsIndex.onAnnouncementChanged(new AnnouncementChangedEvent(announcement(id, region, district, pricePerMeter * AREA, AREA)));
+    }
+
+    private void archive(long id, String region, String district, int pricePerMeter) {
+        Announcement announcement = announcement(id, region, district, pricePerMeter * AREA, AREA);
+        announcement.setIsArchived(true);
+        greatDealsIndex.onAnnouncementChanged(new AnnouncementChangedEvent(announcement));
+    }
+
+    private static Announcement announcement(long id, String region, String district, Integer cost, Integer area) {
+        return Announcement.builder()
+                .id(id)
+                .region(region)
+                .district(district)
+                .cost(cost)
+                .areaOfTheApartment(area)
+                .isDeleted(false)
+                .isArchived(false)
+                .build();
+    }
+}
@@ -0,0 +1,69 @@
+package by.project.turamyzba.search;
+
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.events.AnnouncementChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RelevanceIndexTest {
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2026, 10, 1, 12, 0);
+
+    private final RelevanceIndex relevanceIndex = new RelevanceIndex(null);
+
+    @BeforeEach
+    void setUp() {
+        // У 1-3 одинаковая базовая оценка, при равенстве новые выше; у 4 без возраста заполненность чуть ниже
+        index(1, "Мужской", 18, 25);
+        index(2, "Женский", 18, 25);
+        index(3, "Любой", 18, 25);
+        index(4, null, null, null);
+    }
+
+    @Test
+    void matchingGenderRanksAboveOtherGender() {
+        assertEquals(List.of(3L, 1L, 4L, 2L), relevanceIndex.search(null, "Мужской", null, 0, 10));
+        assertEquals(List.of(3L, 2L, 4L, 1L), relevanceIndex.search(null, "женский", null, 0, 10));
+    }
+
+    @Test
+    void anyOrUnknownRequesterGenderIsNeutral() {
+        assertEquals(List.of(3L, 2L, 1L, 4L), relevanceIndex.search(null, null, null, 0, 10));
+        assertEquals(List.of(3L, 2L, 1L, 4L), relevanceIndex.search(null, "Любой", null, 0, 10));
+    }
+
+    @Test
+    void ageBonusStillAppliesForAnyGender() {
+        index(5, "Мужской", 30, 40);
+        assertEquals(List.of(3L, 2L, 1L, 4L, 5L), relevanceIndex.search(null, "Любой", 20, 0, 10));
+        assertEquals(List.of(5L, 4L), relevanceIndex.search(null, "Любой", 35, 0, 2));
+    }
+
+    @Test
+    void pageBeyondCandidatesIsEmpty() {
+        assertEquals(List.of(1L, 4L), relevanceIndex.search(null, null, null, 2, 10));
+        assertEquals(List.of(), relevanceIndex.search(null, null, null, 4, 10));
+        assertEquals(List.of(), relevanceIndex.search(null, null, null, 100L * Integer.MAX_VALUE, 100));
+        assertEquals(List.of(), relevanceIndex.search(RoaringBitmap.bitmapOf(1, 2), null, null, 2, 10));
+    }
+
+    private void index(long id, String gender, Integer minAge, Integer maxAge) {
+        Announcement announcement = Announcement.builder()
+                .id(id)
+                .region("Алматы")
+                .district("Бостандыкский")
+                .selectedGender(gender)
+                .minAge(minAge)
+                .maxAge(maxAge)
+                .isDeleted(false)
+                .isArchived(false)
+                .build();
+        announcement.setCreatedAt(CREATED_AT);
+        relevanceIndex.onAnnouncementChanged(new AnnouncementChangedEvent(announcement));
+    }
+}
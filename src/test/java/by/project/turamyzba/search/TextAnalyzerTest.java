@@ -0,0 +1,52 @@
+package by.project.turamyzba.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TextAnalyzerTest {
+
+    @Test
+    void russianCaseFormsShareStem() {
+        for (String word : List.of("квартира", "квартиры", "квартире", "квартиру", "квартирой", "квартирами", "квартирах")) {
+            assertEquals("квартир", TextAnalyzer.stem(word), word);
+        }
+        for (String word : List.of("светлая", "светлой", "светлую", "светлые", "светлыми")) {
+            assertEquals("светл", TextAnalyzer.stem(word), word);
+        }
+    }
+
+    @Test
+    void kazakhAffixesAreStrippedOnlyFromKazakhWords() {
+        for (String word : List.of("пәтер", "пәтерге", "пәтерде", "пәтердің", "пәтерлер", "пәтерлердің", "пәтерден")) {
+            assertEquals("пәтер", TextAnalyzer.stem(word), word);
+        }
+        for (String word : List.of("бөлме", "бөлмеде", "бөлмелер", "бөлмеге")) {
+            assertEquals("бөлме", TextAnalyzer.stem(word), word);
+        }
+        // Без казахских букв -да и -те снимаются по русским правилам, а не как казахские аффиксы
+        assertEquals("вод", TextAnalyzer.stem("вода"));
+        assertEquals("студентк", TextAnalyzer.stem("студентке"));
+    }
+
+    @Test
+    void shortWordsAndNumbersAreKeptAsIs() {
+        assertEquals("дом", TextAnalyzer.stem("дом"));
+        assertEquals("дом", TextAnalyzer.stem("дома"));
+        assertEquals("2024", TextAnalyzer.stem("2024"));
+        // Основа не короче трех букв
+        assertEquals("тая", TextAnalyzer.stem("тая"));
+    }
+
+    @Test
+    void analyzeSplitsOnPunctuationAndNormalizes() {
+        assertEquals(List.of("светл", "квартир", "метр", "25", "минут", "пешк"),
+                TextAnalyzer.analyze("Светлая КВАРТИРА, у метро: 25 минут пешком!"));
+        assertEquals(TextAnalyzer.analyze("елка"), TextAnalyzer.analyze("Ёлка"));
+        assertTrue(TextAnalyzer.analyze("  - , !").isEmpty());
+        assertTrue(TextAnalyzer.analyze(null).isEmpty());
+    }
+}
@@ -0,0 +1,180 @@
+package by.project.turamyzba.services.impl;
+
+import by.project.turamyzba.dto.responses.BulkImportResponse;
+import by.project.turamyzba.dto.responses.BulkImportRowResult;
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.entities.GeocodeStatus;
+import by.project.turamyzba.entities.User;
+import by.project.turamyzba.events.AnnouncementBatchChangedEvent;
+import by.project.turamyzba.events.AnnouncementChangedEvent;
+import by.project.turamyzba.services.UserService;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.globally_quoted_identifiers=true")
+@Import(AnnouncementImportServiceImpl.class)
+@ImportAutoConfiguration({JacksonAutoConfiguration.class, ValidationAutoConfiguration.class})
+// Импорт сам открывает транзакции на каждую пачку
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RecordApplicationEvents
+class AnnouncementImportServiceImplTest {
+    private static final String CSV_HEADER = "title,selectedGender,address,isCommunalServiceIncluded,apartmentsInfo,cost,arriveDate,images,preferences\n";
+    private static final String APARTMENTS_INFO = "Светлая квартира рядом с метро";
+
+    @MockBean
+    private UserService userService;
+
+    @Autowired
+    private AnnouncementImportServiceImpl importService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationEvents events;
+
+    @BeforeEach
+    void setUp() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            entityManager.createQuery("delete from Image").executeUpdate();
+            entityManager.createNativeQuery("delete from \"advertisement_preferences\"").executeUpdate();
+            entityManager.createQuery("delete from Announcement").executeUpdate();
+            entityManager.createQuery("delete from User").executeUpdate();
+            User user = new User();
+            user.setEmail("agency@turamyzba.kz");
+            user.setFirstName("Agency");
+            user.setLastName("Test");
+            entityManager.persist(user);
+            when(userService.getCurrentUser()).thenReturn(user);
+            when(userService.getCurrentUserId()).thenReturn(user.getId());
+        });
+    }
+
+    @Test
+    void csvRowsAreImportedAndInvalidRowsReported() throws IOException {
+        String csv = CSV_HEADER
+                + "\"Комната, рядом с парком\",Женщина,\"Абая 10, кв. 5\",true,\"" + APARTMENTS_INFO + "\",90000,2025-02-01,https://img/1|https://img/2,Не курит|Без животных\n"
+                + "Комн,Мужчина,Абая 12,true,\"" + APARTMENTS_INFO + "\",80000,,,\n"
+                + "\"Квартира с \"\"видом\"\"\",Любой,Сатпаева 3,false,\"Многострочное\nописание квартиры\",,,,\n";
+
+        BulkImportResponse response = importService.importAnnouncements(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), MediaType.valueOf("text/csv"));
+
+        assertEquals(3, response.getTotal());
+        assertEquals(2, response.getImported());
+        List<BulkImportRowResult> rows = response.getRows();
+        assertTrue(rows.get(0).getImported());
+        assertFalse(rows.get(1).getImported());
+        assertTrue(rows.get(1).getErrors().get(0).startsWith("title:"));
+        assertTrue(rows.get(2).getImported());
+
+        Announcement first = entityManager.createQuery(
+                        "select a from Announcement a left join fetch a.photos where a.id = :id", Announcement.class)
+                .setParameter("id", rows.get(0).getAnnouncementId())
+                .getSingleResult();
+        assertEquals("Комната, рядом с парком", first.getTitle());
+        assertEquals("Абая 10, кв. 5", first.getAddress());
+        assertEquals(2, first.getPhotos().size());
+        assertEquals(GeocodeStatus.PENDING, first.getGeocodeStatus());
+        assertEquals("Квартира с \"видом\"", entityManager.find(Announcement.class, rows.get(2).getAnnouncementId()).getTitle());
+    }
+
+    @Test
+    void unterminatedQuoteIsReportedOnItsRow() throws IOException {
+        String csv = CSV_HEADER
+                + "Комната у парка,Женщина,Абая 10,true,\"" + APARTMENTS_INFO + "\",90000,,,\n"
+                + "Квартира у метро,Любой,\"Сатпаева 3,false,\"" + APARTMENTS_INFO + "\",,,,\n"
+                + "Комната у реки,Мужчина,Абая 12,true,\"" + APARTMENTS_INFO + "\",80000,,,\n";
+
+        BulkImportResponse response = importService.importAnnouncements(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), MediaType.valueOf("text/csv"));
+
+        // Кавычка во второй записи не закрыта до конца файла, третья запись стала частью ее поля
+        assertEquals(2, response.getTotal());
+        assertEquals(1, response.getImported());
+        assertTrue(response.getRows().get(0).getImported());
+        BulkImportRowResult malformed = response.getRows().get(1);
+        assertEquals(2, malformed.getRow());
+        assertFalse(malformed.getImported());
+        assertEquals(List.of("Malformed row: Unterminated quoted field at end of file"), malformed.getErrors());
+    }
+
+    @Test
+    void failedChunkIsRetriedRowByRow() throws IOException {
+        // Проходит валидацию, но не помещается в колонку region
+        String longRegion = "Алматинская область ".repeat(20);
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            ndjson.append("{\"title\":\"Объявление ").append(i).append("\",\"selectedGender\":\"Любой\",\"address\":\"Абая ")
+                    .append(i).append("\",\"isCommunalServiceIncluded\":true,\"apartmentsInfo\":\"").append(APARTMENTS_INFO)
+                    .append("\",\"region\":\"").append(i == 2 ? longRegion : "Алматы").append("\"}\n");
+        }
+
+        BulkImportResponse response = importService.importAnnouncements(
+                new ByteArrayInputStream(ndjson.toString().getBytes(StandardCharsets.UTF_8)), MediaType.APPLICATION_NDJSON);
+
+        assertEquals(5, response.getTotal());
+        assertEquals(4, response.getImported());
+        for (int i = 0; i < 5; i++) {
+            BulkImportRowResult row = response.getRows().get(i);
+            assertEquals(i != 2, row.getImported());
+            assertEquals(i != 2, row.getAnnouncementId() != null);
+        }
+        assertTrue(response.getRows().get(2).getErrors().get(0).startsWith("Failed to save"));
+        assertEquals(4L, entityManager.createQuery("select count(a) from Announcement a", Long.class).getSingleResult());
+    }
+
+    @Test
+    void ndjsonRowsAreImportedInChunks() throws IOException {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 1200; i++) {
+            ndjson.append("{\"title\":\"Объявление ").append(i).append("\",\"selectedGender\":\"Любой\",\"address\":\"Абая ")
+                    .append(i).append("\",\"isCommunalServiceIncluded\":true,\"apartmentsInfo\":\"").append(APARTMENTS_INFO)
+                    .append("\",\"images\":[\"https://img/").append(i).append("\"]}\n");
+        }
+        ndjson.append("{not json}\n");
+
+        BulkImportResponse response = importService.importAnnouncements(
+                new ByteArrayInputStream(ndjson.toString().getBytes(StandardCharsets.UTF_8)), MediaType.APPLICATION_NDJSON);
+
+        assertEquals(1201, response.getTotal());
+        assertEquals(1200, response.getImported());
+        assertNotNull(response.getRows().get(1199).getAnnouncementId());
+        assertTrue(response.getRows().get(1200).getErrors().get(0).startsWith("Malformed row"));
+        assertEquals(1200L, entityManager.createQuery("select count(i) from Image i", Long.class).getSingleResult());
+        // Одно событие на пачку вместо события на каждую строку
+        assertEquals(List.of(500, 500, 200), events.stream(AnnouncementBatchChangedEvent.class)
+                .map(event -> event.getChanges().size())
+                .toList());
+        assertEquals(0, events.stream(AnnouncementChangedEvent.class).count());
+    }
+}
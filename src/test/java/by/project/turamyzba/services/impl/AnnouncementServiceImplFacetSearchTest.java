@@ -0,0 +1,224 @@
+package by.project.turamyzba.services.impl;
+
+import by.project.turamyzba.dto.requests.AnnouncementFilterRequest;
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.entities.User;
+import by.project.turamyzba.events.AnnouncementChangedEvent;
+import by.project.turamyzba.repositories.AnnouncementRepository;
+import by.project.turamyzba.search.AnnouncementFacetIndex;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * AnnouncementFacetIndex должен отвечать на /announcement/search так же, как SQL-фильтр filterSpecification:
+ * те же id в том же порядке, включая пустые строки в запросе и NULL-ы в колонках.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.globally_quoted_identifiers=true")
+@Import(AnnouncementFacetIndex.class)
+class AnnouncementServiceImplFacetSearchTest {
+    private static final String[] GENDERS = {"Мужчина", "Женщина", "Любой", "", null};
+    private static final String[] REGIONS = {"Алматы", "Астана", "Шымкент", "", null};
+    private static final String[] DISTRICTS = {"Алмалинский", "Бостандыкский", null};
+    private static final String[] MICRO_DISTRICTS = {"Самал", "Орбита", null};
+    private static final String[] ROOMS = {"1", "2", "3", null};
+    private static final String[] HOUSING = {"Квартира", "Дом", null};
+    private static final Integer[] PEOPLE = {1, 2, 3, null};
+    private static final LocalDate[] ARRIVE_DATES = {LocalDate.of(2024, 9, 1), LocalDate.of(2024, 10, 1), null};
+    private static final Boolean[] FLAGS = {true, false, null};
+
+    @Autowired
+    private AnnouncementFacetIndex facetIndex;
+
+    @Autowired
+    private AnnouncementRepository announcementRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final Random random = new Random(42);
+    private final List<Announcement> announcements = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setEmail("owner@turamyzba.kz");
+        entityManager.persist(user);
+        for (int i = 0; i < 300; i++) {
+            Announcement announcement = randomAnnouncement(user);
+            entityManager.persist(announcement);
+            announcements.add(announcement);
+        }
+        entityManager.flush();
+        facetIndex.rebuild();
+    }
+
+    @Test
+    void singleFiltersMatchSql() {
+        for (AnnouncementFilterRequest request : singleFilterRequests()) {
+            assertSameAsSql(request);
+        }
+    }
+
+    @Test
+    void combinedFiltersMatchSql() {
+        List<Consumer<AnnouncementFilterRequest>> filters = filters();
+        for (int i = 0; i < 300; i++) {
+            AnnouncementFilterRequest request = new AnnouncementFilterRequest();
+            for (int f = 0; f < 3; f++) {
+                filters.get(random.nextInt(filters.size())).accept(request);
+            }
+            assertSameAsSql(request);
+        }
+    }
+
+    @Test
+    void archivedDeletedAndEditedAnnouncementsFollowEvents() {
+        List<Announcement> active = announcements.stream()
+                .filter(announcement -> new AnnouncementChangedEvent(announcement).isActive())
+                .toList();
+        Announcement archived = active.get(0);
+        Announcement deleted = active.get(1);
+        Announcement edited = active.get(2);
+        Announcement restored = announcements.stream()
+                .filter(announcement -> Boolean.TRUE.equals(announcement.getIsArchived()) && !announcement.getIsDeleted())
+                .findFirst()
+                .orElseThrow();
+
+        archived.setIsArchived(true);
+        deleted.setIsDeleted(true);
+        edited.setRegion("Караганда");
+        edited.setCost(55_555);
+        restored.setIsArchived(false);
+        Announcement created = randomAnnouncement(edited.getUser());
+        created.setIsArchived(false);
+        created.setIsDeleted(false);
+        entityManager.persist(created);
+        entityManager.flush();
+        for (Announcement announcement : List.of(archived, deleted, edited, restored, created)) {
+            facetIndex.onAnnouncementChanged(new AnnouncementChangedEvent(announcement));
+        }
+
+        List<Long> all = facetIndex.search(new AnnouncementFilterRequest());
+        assertFalse(all.contains(archived.getId()));
+        assertFalse(all.contains(deleted.getId()));
+        assertTrue(all.contains(restored.getId()));
+        assertTrue(all.contains(created.getId()));
+        assertEquals(List.of(edited.getId()), facetIndex.search(AnnouncementFilterRequest.builder()
+                .region("Караганда").minPrice(55_555).maxPrice(55_555).build()));
+        for (AnnouncementFilterRequest request : singleFilterRequests()) {
+            assertSameAsSql(request);
+        }
+    }
+
+    private void assertSameAsSql(AnnouncementFilterRequest request) {
+        List<Long> expected = announcementRepository.findAll(AnnouncementServiceImpl.filterSpecification(request), Sort.by("id")).stream()
+                .map(Announcement::getId)
+                .toList();
+        assertEquals(expected, facetIndex.search(request), request.toString());
+    }
+
+    private List<AnnouncementFilterRequest> singleFilterRequests() {
+        List<AnnouncementFilterRequest> requests = new ArrayList<>();
+        requests.add(new AnnouncementFilterRequest());
+        for (Consumer<AnnouncementFilterRequest> filter : filters()) {
+            AnnouncementFilterRequest request = new AnnouncementFilterRequest();
+            filter.accept(request);
+            requests.add(request);
+        }
+        return requests;
+    }
+
+    // Каждое условие фильтра со всеми значениями из данных, пустой строкой и значением, которого нет ни в одном объявлении
+    private static List<Consumer<AnnouncementFilterRequest>> filters() {
+        List<Consumer<AnnouncementFilterRequest>> filters = new ArrayList<>();
+        addAll(filters, concat(GENDERS, "Неизвестно"), AnnouncementFilterRequest::setSelectedGender);
+        addAll(filters, concat(REGIONS, "Караганда"), AnnouncementFilterRequest::setRegion);
+        addAll(filters, concat(DISTRICTS, ""), AnnouncementFilterRequest::setDistrict);
+        addAll(filters, concat(MICRO_DISTRICTS, ""), AnnouncementFilterRequest::setMicroDistrict);
+        addAll(filters, concat(ROOMS, ""), AnnouncementFilterRequest::setQuantityOfRooms);
+        addAll(filters, concat(HOUSING, ""), AnnouncementFilterRequest::setTypeOfHousing);
+        addAll(filters, PEOPLE, AnnouncementFilterRequest::setNumberOfPeopleAreYouAccommodating);
+        addAll(filters, ARRIVE_DATES, AnnouncementFilterRequest::setArriveDate);
+        addAll(filters, FLAGS, AnnouncementFilterRequest::setArePetsAllowed);
+        addAll(filters, FLAGS, AnnouncementFilterRequest::setIsCommunalServiceIncluded);
+        addAll(filters, FLAGS, AnnouncementFilterRequest::setIntendedForStudents);
+        addAll(filters, FLAGS, AnnouncementFilterRequest::setNotTheFirstFloor);
+        addAll(filters, FLAGS, AnnouncementFilterRequest::setNotTheTopFloor);
+        // Границы совпадают со значениями в данных: условия включительные
+        for (Integer[] range : new Integer[][]{{60_000, 120_000}, {null, 80_000}, {150_000, null}, {100_000, 100_000}, {120_000, 60_000}}) {
+            filters.add(request -> {
+                request.setMinPrice(range[0]);
+                request.setMaxPrice(range[1]);
+            });
+        }
+        for (Integer[] range : new Integer[][]{{30, 60}, {null, 45}, {70, null}, {50, 50}}) {
+            filters.add(request -> {
+                request.setMinArea(range[0]);
+                request.setMaxArea(range[1]);
+            });
+        }
+        addAll(filters, new Integer[]{16, 18, 21, 25}, AnnouncementFilterRequest::setMinAge);
+        addAll(filters, new Integer[]{25, 30, 35, 40}, AnnouncementFilterRequest::setMaxAge);
+        return filters;
+    }
+
+    private Announcement randomAnnouncement(User user) {
+        return Announcement.builder()
+                .title("Announcement")
+                .selectedGender(pick(GENDERS))
+                .region(pick(REGIONS))
+                .district(pick(DISTRICTS))
+                .microDistrict(pick(MICRO_DISTRICTS))
+                .quantityOfRooms(pick(ROOMS))
+                .typeOfHousing(pick(HOUSING))
+                .numberOfPeopleAreYouAccommodating(pick(PEOPLE))
+                .arriveDate(pick(ARRIVE_DATES))
+                .arePetsAllowed(pick(FLAGS))
+                .isCommunalServiceIncluded(pick(FLAGS))
+                .intendedForStudents(pick(FLAGS))
+                .cost(random.nextInt(10) == 0 ? null : 40_000 + 10_000 * random.nextInt(17))
+                .areaOfTheApartment(random.nextInt(10) == 0 ? null : 20 + 5 * random.nextInt(17))
+                .numberOfFloor(pick(new Integer[]{1, 2, 5, 9, null}))
+                .maxFloorInTheBuilding(pick(new Integer[]{1, 5, 9, 12, null}))
+                .minAge(random.nextInt(5) == 0 ? null : 16 + random.nextInt(10))
+                .maxAge(random.nextInt(5) == 0 ? null : 25 + random.nextInt(16))
+                .isArchived(pick(new Boolean[]{false, false, false, true, null}))
+                .isDeleted(random.nextInt(20) == 0)
+                .user(user)
+                .build();
+    }
+
+    private <T> T pick(T[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static <T> void addAll(List<Consumer<AnnouncementFilterRequest>> filters, T[] values,
+                                   BiConsumer<AnnouncementFilterRequest, T> setter) {
+        for (T value : values) {
+            filters.add(request -> setter.accept(request, value));
+        }
+    }
+
+    private static String[] concat(String[] values, String extra) {
+        String[] result = Arrays.copyOf(values, values.length + 1);
+        result[values.length] = extra;
+        return result;
+    }
+}
@@ -0,0 +1,250 @@
+package by.project.turamyzba.services.impl;
+
+import by.project.turamyzba.config.JpaBatchingConfig;
+import by.project.turamyzba.dto.requests.AnnouncementFilterRequest;
+import by.project.turamyzba.dto.requests.GeoSearchRequest;
+import by.project.turamyzba.dto.responses.AnnouncementResponse;
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.entities.GeocodeStatus;
+import by.project.turamyzba.entities.User;
+import by.project.turamyzba.readmodel.AnnouncementCardProjection;
+import by.project.turamyzba.search.AnnouncementFacetIndex;
+import by.project.turamyzba.search.AnnouncementGeoIndex;
+import by.project.turamyzba.search.AnnouncementTextIndex;
+import by.project.turamyzba.search.AnnouncementTileIndex;
+import by.project.turamyzba.search.GeoUtils;
+import by.project.turamyzba.search.GreatDealsIndex;
+import by.project.turamyzba.search.RelevanceIndex;
+import by.project.turamyzba.services.UserService;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doReturn;
+
+/**
+ * Гео-индекс и SQL-запрос findNearby до готовности индекса должны совпадать с перебором по haversine,
+ * в том числе для точек на границах ячеек сетки и для объявлений, ожидающих геокодирования.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.globally_quoted_identifiers=true")
+@Import({AnnouncementServiceImpl.class, JpaBatchingConfig.class, AnnouncementFacetIndex.class})
+class AnnouncementServiceImplGeoSearchTest {
+    private static final double CENTER_LAT = 43.25;
+    private static final double CENTER_LON = 76.95;
+    // Шаг сетки AnnouncementGeoIndex
+    private static final double CELL = 0.01;
+
+    @MockBean
+    private UserService userService;
+
+    @MockBean
+    private AnnouncementTextIndex textIndex;
+
+    @MockBean
+    private AnnouncementTileIndex tileIndex;
+
+    @MockBean
+    private GreatDealsIndex greatDealsIndex;
+
+    @MockBean
+    private RelevanceIndex relevanceIndex;
+
+    @MockBean
+    private AnnouncementCardProjection cardProjection;
+
+    @Autowired
+    private AnnouncementServiceImpl announcementService;
+
+    @SpyBean
+    private AnnouncementGeoIndex geoIndex;
+
+    @Autowired
+    private AnnouncementFacetIndex facetIndex;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final List<Announcement> announcements = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setEmail("owner@turamyzba.kz");
+        entityManager.persist(user);
+
+        Random random = new Random(11);
+        double[] offsets = {-1e-9, 0, 1e-9};
+        // Точки на линиях сетки и вплотную к ним с обеих сторон
+        for (int lat = -3; lat <= 3; lat++) {
+            for (int lon = -3; lon <= 3; lon++) {
+                double offset = offsets[random.nextInt(offsets.length)];
+                add(user, CENTER_LAT + lat * CELL + offset, CENTER_LON + lon * CELL - offset, GeocodeStatus.RESOLVED, "Алматы");
+            }
+        }
+        for (int i = 0; i < 150; i++) {
+            add(user, CENTER_LAT + (random.nextDouble() - 0.5) * 0.08, CENTER_LON + (random.nextDouble() - 0.5) * 0.1,
+                    random.nextInt(10) == 0 ? null : GeocodeStatus.RESOLVED, random.nextBoolean() ? "Алматы" : "Астана");
+        }
+        // Одинаковые координаты: порядок держится на id
+        for (int i = 0; i < 3; i++) {
+            add(user, CENTER_LAT + 0.004, CENTER_LON + 0.004, GeocodeStatus.RESOLVED, "Алматы");
+        }
+        // Ждут геокодирования с координатами старого адреса - не должны попадать в выдачу
+        for (int i = 0; i < 5; i++) {
+            add(user, CENTER_LAT + i * 0.001, CENTER_LON, GeocodeStatus.PENDING, "Алматы");
+        }
+        Announcement archived = add(user, CENTER_LAT, CENTER_LON + 0.001, GeocodeStatus.RESOLVED, "Алматы");
+        archived.setIsArchived(true);
+        Announcement withoutCoordinates = add(user, 0, 0, GeocodeStatus.FAILED, "Алматы");
+        withoutCoordinates.setLatitude(null);
+        withoutCoordinates.setLongitude(null);
+        entityManager.flush();
+        entityManager.clear();
+        facetIndex.rebuild();
+        geoIndex.rebuild();
+    }
+
+    @Test
+    void radiusSearchMatchesHaversineInIndexAndSql() {
+        for (double[] center : centers()) {
+            for (double radius : new double[]{0.5, 1.0, 1.112, 2.5}) {
+                GeoSearchRequest geo = GeoSearchRequest.builder().latitude(center[0]).longitude(center[1]).radiusKm(radius).build();
+                List<Long> expected = bruteForce(announcement -> distance(center, announcement) <= radius, byDistance(center));
+
+                assertSameResults(expected, geo, new AnnouncementFilterRequest());
+            }
+        }
+    }
+
+    @Test
+    void boundingBoxMatchesInIndexAndSql() {
+        double minLat = CENTER_LAT - CELL;
+        double maxLat = CENTER_LAT + 2 * CELL;
+        double minLon = CENTER_LON - 1.5 * CELL;
+        double maxLon = CENTER_LON + CELL;
+        Predicate<Announcement> inside = announcement -> announcement.getLatitude() >= minLat && announcement.getLatitude() <= maxLat
+                && announcement.getLongitude() >= minLon && announcement.getLongitude() <= maxLon;
+        GeoSearchRequest box = GeoSearchRequest.builder()
+                .minLatitude(minLat).maxLatitude(maxLat).minLongitude(minLon).maxLongitude(maxLon).build();
+
+        assertSameResults(bruteForce(inside, Comparator.comparing(Announcement::getId).reversed()), box, new AnnouncementFilterRequest());
+
+        double[] center = {CENTER_LAT, CENTER_LON};
+        box.setLatitude(center[0]);
+        box.setLongitude(center[1]);
+        assertSameResults(bruteForce(inside, byDistance(center)), box, new AnnouncementFilterRequest());
+    }
+
+    @Test
+    void facetFilterAndPagingApplyToBothPaths() {
+        double[] center = {CENTER_LAT + CELL / 2, CENTER_LON};
+        GeoSearchRequest geo = GeoSearchRequest.builder().latitude(center[0]).longitude(center[1]).radiusKm(3.0).build();
+        AnnouncementFilterRequest filter = AnnouncementFilterRequest.builder().region("Астана").build();
+        List<Long> expected = bruteForce(announcement -> "Астана".equals(announcement.getRegion()) && distance(center, announcement) <= 3.0,
+                byDistance(center));
+        assertFalse(expected.isEmpty());
+
+        assertSameResults(expected, geo, filter);
+        assertSameResults(expected.subList(7, Math.min(14, expected.size())), geo, filter, PageRequest.of(1, 7));
+    }
+
+    @Test
+    void pageFarPastTheResultsIsEmpty() {
+        GeoSearchRequest geo = GeoSearchRequest.builder().latitude(CENTER_LAT).longitude(CENTER_LON).radiusKm(3.0).build();
+
+        // offset + limit больше Integer.MAX_VALUE
+        assertSameResults(List.of(), geo, new AnnouncementFilterRequest(), PageRequest.of(25_000_000, 100));
+    }
+
+    @Test
+    void pendingAnnouncementsAreExcluded() {
+        GeoSearchRequest geo = GeoSearchRequest.builder().latitude(CENTER_LAT).longitude(CENTER_LON).radiusKm(0.2).build();
+        List<Long> pending = announcements.stream()
+                .filter(announcement -> announcement.getGeocodeStatus() == GeocodeStatus.PENDING)
+                .map(Announcement::getId)
+                .toList();
+
+        List<Long> expected = bruteForce(announcement -> distance(new double[]{CENTER_LAT, CENTER_LON}, announcement) <= 0.2,
+                byDistance(new double[]{CENTER_LAT, CENTER_LON}));
+
+        assertFalse(expected.isEmpty());
+        assertTrue(pending.stream().noneMatch(expected::contains));
+        assertSameResults(expected, geo, new AnnouncementFilterRequest());
+    }
+
+    private void assertSameResults(List<Long> expected, GeoSearchRequest geo, AnnouncementFilterRequest filter) {
+        assertSameResults(expected, geo, filter, PageRequest.of(0, 1000));
+    }
+
+    // Тот же запрос через SQL (индекс как будто еще строится) и через индекс
+    private void assertSameResults(List<Long> expected, GeoSearchRequest geo, AnnouncementFilterRequest filter, Pageable pageable) {
+        doReturn(false).when(geoIndex).isReady();
+        assertEquals(expected, ids(announcementService.findNearby(filter, geo, pageable)), "SQL " + geo);
+        doCallRealMethod().when(geoIndex).isReady();
+        assertEquals(expected, ids(announcementService.findNearby(filter, geo, pageable)), "index " + geo);
+    }
+
+    private List<Long> bruteForce(Predicate<Announcement> condition, Comparator<Announcement> order) {
+        return announcements.stream()
+                .filter(announcement -> !Boolean.TRUE.equals(announcement.getIsArchived()))
+                .filter(announcement -> announcement.getGeocodeStatus() != GeocodeStatus.PENDING)
+                .filter(announcement -> announcement.getLatitude() != null && announcement.getLongitude() != null)
+                .filter(condition)
+                .sorted(order)
+                .map(Announcement::getId)
+                .toList();
+    }
+
+    private static Comparator<Announcement> byDistance(double[] center) {
+        return Comparator.comparingDouble((Announcement announcement) -> distance(center, announcement))
+                .thenComparing(Announcement::getId, Comparator.reverseOrder());
+    }
+
+    private static double distance(double[] center, Announcement announcement) {
+        return GeoUtils.distanceKm(center[0], center[1], announcement.getLatitude(), announcement.getLongitude());
+    }
+
+    // Центр на пересечении линий сетки, на линии и внутри ячейки
+    private static List<double[]> centers() {
+        return List.of(
+                new double[]{CENTER_LAT, CENTER_LON},
+                new double[]{CENTER_LAT + CELL, CENTER_LON + CELL / 2},
+                new double[]{CENTER_LAT - 0.0033, CENTER_LON + 0.0071});
+    }
+
+    private Announcement add(User user, double latitude, double longitude, GeocodeStatus status, String region) {
+        Announcement announcement = Announcement.builder()
+                .title("Announcement")
+                .region(region)
+                .latitude(latitude)
+                .longitude(longitude)
+                .geocodeStatus(status)
+                .isArchived(false)
+                .user(user)
+                .build();
+        entityManager.persist(announcement);
+        announcements.add(announcement);
+        return announcement;
+    }
+
+    private static List<Long> ids(List<AnnouncementResponse> responses) {
+        return responses.stream().map(AnnouncementResponse::getId).toList();
+    }
+}
@@ -0,0 +1,338 @@
+package by.project.turamyzba.services.impl;
+
+import by.project.turamyzba.config.JpaBatchingConfig;
+import by.project.turamyzba.dto.requests.AnnouncementFilterRequest;
+import by.project.turamyzba.dto.requests.AnnouncementRequest;
+import by.project.turamyzba.dto.responses.AnnouncementResponse;
+import by.project.turamyzba.dto.responses.AnnouncementSliceResponse;
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.entities.Image;
+import by.project.turamyzba.entities.User;
+import by.project.turamyzba.readmodel.AnnouncementCardProjection;
+import by.project.turamyzba.search.AnnouncementFacetIndex;
+import by.project.turamyzba.search.AnnouncementGeoIndex;
+import by.project.turamyzba.search.AnnouncementTextIndex;
+import by.project.turamyzba.search.AnnouncementTileIndex;
+import by.project.turamyzba.search.GreatDealsIndex;
+import by.project.turamyzba.search.RelevanceIndex;
+import by.project.turamyzba.services.UserService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.globally_quoted_identifiers=true",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({AnnouncementServiceImpl.class, JpaBatchingConfig.class})
+class AnnouncementServiceImplQueryCountTest {
+    private static final int PAGE_SIZE = 41;
+    // страница объявлений + count + photos + preferences
+    private static final long MAX_STATEMENTS_PER_PAGE = 4;
+
+    @MockBean
+    private UserService userService;
+
+    @MockBean
+    private AnnouncementFacetIndex facetIndex;
+
+    @MockBean
+    private AnnouncementTextIndex textIndex;
+
+    @MockBean
+    private AnnouncementGeoIndex geoIndex;
+
+    @MockBean
+    private AnnouncementTileIndex tileIndex;
+
+    @MockBean
+    private GreatDealsIndex greatDealsIndex;
+
+    @MockBean
+    private RelevanceIndex relevanceIndex;
+
+    @MockBean
+    private AnnouncementCardProjection cardProjection;
+
+    @Autowired
+    private AnnouncementServiceImpl announcementService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    private User owner;
+
+    @BeforeEach
+    void setUp() {
+        for (int u = 0; u < 3; u++) {
+            User user = new User();
+            user.setEmail("owner" + u + "@turamyzba.kz");
+            user.setFirstName("Owner");
+            user.setLastName("Test");
+            entityManager.persist(user);
+            if (u == 0) {
+                owner = user;
+            }
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                Announcement announcement = Announcement.builder()
+                        .title("Announcement " + u + "-" + i)
+                        .region("Алматы")
+                        .cost(50_000 + i * 1_000)
+                        .arriveDate(LocalDate.of(2024, 1, 1).plusDays(i))
+                        .preferences(new ArrayList<>(List.of("Не курит", "Без животных")))
+                        .isArchived(false)
+                        .user(user)
+                        .build();
+                List<Image> photos = new ArrayList<>();
+                for (int p = 0; p < 3; p++) {
+                    photos.add(Image.builder().url("https://img/" + u + "/" + i + "/" + p).announcement(announcement).build());
+                }
+                announcement.setPhotos(photos);
+                entityManager.persist(announcement);
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        when(userService.getCurrentUser()).thenReturn(owner);
+        when(userService.getCurrentUserId()).thenReturn(owner.getId());
+        when(userService.getUserByEmail(anyString())).thenReturn(Optional.of(owner));
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void allRoommateListingsPageUsesFixedNumberOfStatements() {
+        List<AnnouncementResponse> page = announcementService
+                .getRoommateListings(null, null, null, null, null, PageRequest.of(1, PAGE_SIZE, Sort.by(Sort.Order.asc("cost"))));
+
+        assertEquals(PAGE_SIZE, page.size());
+        assertStatementCount();
+    }
+
+    @Test
+    void filteredAnnouncementsUseFixedNumberOfStatements() {
+        List<AnnouncementResponse> result = announcementService
+                .getFilteredAnnouncements(AnnouncementFilterRequest.builder().region("Алматы").maxPrice(60_000).build());
+
+        assertEquals(33, result.size());
+        assertStatementCount();
+    }
+
+    @Test
+    void scrolledPageUsesFixedNumberOfStatements() {
+        String cursor = announcementService
+                .scrollRoommateListings(null, null, null, null, null, Sort.by(Sort.Order.desc("arriveDate")), "", PAGE_SIZE)
+                .getNextCursor();
+        statistics.clear();
+        entityManager.clear();
+
+        List<AnnouncementResponse> page = announcementService
+                .scrollRoommateListings(null, null, null, null, null, Sort.by(Sort.Order.desc("arriveDate")), cursor, PAGE_SIZE)
+                .getContent();
+
+        assertEquals(PAGE_SIZE, page.size());
+        assertStatementCount();
+    }
+
+    @Test
+    void userAnnouncementsUseFixedNumberOfStatements() {
+        List<AnnouncementResponse> result = announcementService.getUserAnnouncements();
+
+        assertEquals(PAGE_SIZE, result.size());
+        assertStatementCount();
+    }
+
+    @Test
+    void listsReadOnlyIdsWhenCardsAreReady() {
+        when(cardProjection.isReady()).thenReturn(true);
+        when(cardProjection.cards(anyList())).thenAnswer(invocation -> invocation.<List<Long>>getArgument(0).stream()
+                .map(id -> AnnouncementResponse.builder().id(id).build())
+                .toList());
+        when(cardProjection.announcementIds(owner.getId())).thenReturn(Set.of(3L, 1L, 2L));
+
+        List<AnnouncementResponse> byPrice = announcementService
+                .getRoommateListings("Алматы", null, null, null, null, PageRequest.of(1, PAGE_SIZE, Sort.by(Sort.Order.asc("cost"))));
+        AnnouncementSliceResponse firstSlice = announcementService
+                .scrollRoommateListings(null, null, null, null, null, Sort.by(Sort.Order.desc("arriveDate")), "", PAGE_SIZE);
+        AnnouncementSliceResponse secondSlice = announcementService
+                .scrollFilteredAnnouncements(new AnnouncementFilterRequest(), Sort.by(Sort.Order.desc("arriveDate")), firstSlice.getNextCursor(), PAGE_SIZE);
+        List<AnnouncementResponse> filtered = announcementService
+                .getFilteredAnnouncements(AnnouncementFilterRequest.builder().region("Алматы").maxPrice(60_000).build());
+        List<AnnouncementResponse> mine = announcementService.getUserAnnouncements();
+
+        assertEquals(PAGE_SIZE, byPrice.size());
+        assertEquals(PAGE_SIZE, firstSlice.getContent().size());
+        assertEquals(PAGE_SIZE, secondSlice.getContent().size());
+        assertTrue(secondSlice.getContent().stream().noneMatch(card -> firstSlice.getContent().stream().anyMatch(first -> first.getId().equals(card.getId()))));
+        assertEquals(33, filtered.size());
+        assertEquals(List.of(1L, 2L, 3L), mine.stream().map(AnnouncementResponse::getId).toList());
+        // По одному запросу id на выдачу, мои объявления целиком из read-модели, ни одной загруженной сущности
+        assertEquals(4, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(0, statistics.getCollectionLoadCount());
+    }
+
+    @Test
+    void streamedAnnouncementsLoadCollectionsPerBatch() {
+        List<AnnouncementResponse> result = new ArrayList<>();
+        announcementService.streamFilteredAnnouncements(new AnnouncementFilterRequest(), result::add);
+
+        assertEquals(3 * PAGE_SIZE, result.size());
+        assertEquals(3, result.get(0).getPhotos().size());
+        // курсор + photos и preferences на каждую пачку из 50
+        long statements = statistics.getPrepareStatementCount();
+        assertTrue(statements <= 1 + 2 * 3, "Expected at most 7 statements for the stream, but was " + statements);
+    }
+
+    @Test
+    void createdAnnouncementInsertsPhotosInOneBatch() throws Exception {
+        List<String> images = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            images.add("https://img/new/" + i);
+        }
+        announcementService.createAnnouncement(AnnouncementRequest.builder()
+                .title("Комната в центре")
+                .selectedGender("Любой")
+                .address("Абая 10")
+                .isCommunalServiceIncluded(true)
+                .apartmentsInfo("Светлая квартира рядом с метро")
+                .images(images)
+                .preferences(List.of("Не курит", "Без животных"))
+                .build());
+        entityManager.flush();
+
+        // пользователь + 2 nextval + announcement + пачка images + пачка preferences, а не по INSERT на каждое фото
+        long statements = statistics.getPrepareStatementCount();
+        assertTrue(statements <= 6, "Expected at most 6 statements to create an announcement with 25 photos, but was " + statements);
+    }
+
+    @Test
+    void reorderingPhotosWritesOnlyChangedRows() {
+        Announcement announcement = firstOwnedAnnouncement();
+        List<String> urls = announcement.getPhotos().stream().map(Image::getUrl).toList();
+        // Первое сохранение проставляет sort_order старым фото
+        saveUpdate(announcement, "Новый заголовок", urls);
+
+        List<String> reordered = new ArrayList<>(List.of(urls.get(2), urls.get(0), "https://img/new"));
+        announcementService.updateAnnouncement(announcement.getId(), updateRequest(announcement, "Еще один заголовок", reordered));
+        entityManager.flush();
+
+        // Одно фото добавлено, одно удалено, два сдвинуты, а не пересоздание всех фото
+        assertEquals(1, statistics.getEntityInsertCount());
+        assertEquals(1, statistics.getEntityDeleteCount());
+        assertEquals(3, statistics.getEntityUpdateCount());
+        entityManager.clear();
+        List<String> saved = entityManager.find(Announcement.class, announcement.getId()).getPhotos().stream().map(Image::getUrl).toList();
+        assertEquals(reordered, saved);
+    }
+
+    @Test
+    void unchangedPhotosKeepUpdatedAt() {
+        Announcement announcement = firstOwnedAnnouncement();
+        List<String> urls = announcement.getPhotos().stream().map(Image::getUrl).toList();
+        saveUpdate(announcement, "Новый заголовок", urls);
+        LocalDateTime updatedAt = entityManager.find(Announcement.class, announcement.getId()).getUpdatedAt();
+        entityManager.clear();
+
+        announcementService.updateAnnouncement(announcement.getId(), updateRequest(announcement, "Новый заголовок", urls));
+        entityManager.flush();
+
+        // Те же фото в том же порядке: ни одной записи, updatedAt и ETag прежние
+        assertEquals(0, statistics.getEntityInsertCount());
+        assertEquals(0, statistics.getEntityDeleteCount());
+        assertEquals(0, statistics.getEntityUpdateCount());
+        entityManager.clear();
+        assertEquals(updatedAt, entityManager.find(Announcement.class, announcement.getId()).getUpdatedAt());
+    }
+
+    private Announcement firstOwnedAnnouncement() {
+        return entityManager.createQuery(
+                        "select a from Announcement a left join fetch a.photos where a.user = :owner order by a.id", Announcement.class)
+                .setParameter("owner", owner)
+                .setMaxResults(1)
+                .getSingleResult();
+    }
+
+    private void saveUpdate(Announcement announcement, String title, List<String> images) {
+        announcementService.updateAnnouncement(announcement.getId(), updateRequest(announcement, title, images));
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+    }
+
+    private static AnnouncementRequest updateRequest(Announcement announcement, String title, List<String> images) {
+        return AnnouncementRequest.builder()
+                .title(title)
+                .selectedGender("Любой")
+                .region(announcement.getRegion())
+                .address("Абая 10")
+                .cost(announcement.getCost())
+                .isCommunalServiceIncluded(true)
+                .apartmentsInfo("Светлая квартира рядом с метро")
+                .images(images)
+                .build();
+    }
+
+    @Test
+    void versionIsTheLaterOfAnnouncementAndAuthorUpdates() {
+        Announcement announcement = entityManager
+                .createQuery("select a from Announcement a where a.user.id = :userId order by a.id", Announcement.class)
+                .setParameter("userId", owner.getId())
+                .setMaxResults(1)
+                .getSingleResult();
+        Instant announcementUpdatedAt = announcement.getUpdatedAt().atZone(ZoneId.systemDefault()).toInstant();
+        assertEquals(Optional.of(announcementUpdatedAt), announcementService.getAnnouncementVersion(announcement.getId()));
+
+        // Правка профиля автора меняет карточку, значит и версию
+        Instant profileUpdatedAt = announcementUpdatedAt.plusSeconds(60);
+        entityManager.createQuery("update User u set u.updatedAt = :updatedAt where u.id = :id")
+                .setParameter("updatedAt", profileUpdatedAt)
+                .setParameter("id", owner.getId())
+                .executeUpdate();
+        assertEquals(Optional.of(profileUpdatedAt), announcementService.getAnnouncementVersion(announcement.getId()));
+
+        entityManager.createQuery("update User u set u.updatedAt = :updatedAt where u.id = :id")
+                .setParameter("updatedAt", announcementUpdatedAt.minusSeconds(60))
+                .setParameter("id", owner.getId())
+                .executeUpdate();
+        assertEquals(Optional.of(announcementUpdatedAt), announcementService.getAnnouncementVersion(announcement.getId()));
+        assertEquals(Optional.empty(), announcementService.getAnnouncementVersion(-1L));
+    }
+
+    private void assertStatementCount() {
+        long statements = statistics.getPrepareStatementCount();
+        assertTrue(statements <= MAX_STATEMENTS_PER_PAGE,
+                "Expected at most " + MAX_STATEMENTS_PER_PAGE + " statements per page, but was " + statements);
+    }
+}
@@ -0,0 +1,157 @@
+package by.project.turamyzba.services.impl;
+
+import by.project.turamyzba.config.JpaBatchingConfig;
+import by.project.turamyzba.dto.responses.AnnouncementResponse;
+import by.project.turamyzba.dto.responses.AnnouncementSliceResponse;
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.entities.User;
+import by.project.turamyzba.exceptions.InvalidCursorException;
+import by.project.turamyzba.readmodel.AnnouncementCardProjection;
+import by.project.turamyzba.search.AnnouncementFacetIndex;
+import by.project.turamyzba.search.AnnouncementGeoIndex;
+import by.project.turamyzba.search.AnnouncementTextIndex;
+import by.project.turamyzba.search.AnnouncementTileIndex;
+import by.project.turamyzba.search.GreatDealsIndex;
+import by.project.turamyzba.search.RelevanceIndex;
+import by.project.turamyzba.services.UserService;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.globally_quoted_identifiers=true")
+@Import({AnnouncementServiceImpl.class, JpaBatchingConfig.class})
+class AnnouncementServiceImplScrollTest {
+    // Одинаковые ключи и NULL-ы: порядок внутри них держится только на id
+    private static final LocalDate[] ARRIVE_DATES = {
+            LocalDate.of(2024, 3, 1), null, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 3, 1), null,
+            LocalDate.of(2024, 2, 1), LocalDate.of(2024, 3, 1), null, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 3, 1)
+    };
+    private static final Integer[] COSTS = {70_000, 50_000, null, 50_000, 90_000, null, 50_000, 70_000, null, 50_000};
+
+    @MockBean
+    private UserService userService;
+
+    @MockBean
+    private AnnouncementFacetIndex facetIndex;
+
+    @MockBean
+    private AnnouncementTextIndex textIndex;
+
+    @MockBean
+    private AnnouncementGeoIndex geoIndex;
+
+    @MockBean
+    private AnnouncementTileIndex tileIndex;
+
+    @MockBean
+    private GreatDealsIndex greatDealsIndex;
+
+    @MockBean
+    private RelevanceIndex relevanceIndex;
+
+    @MockBean
+    private AnnouncementCardProjection cardProjection;
+
+    @Autowired
+    private AnnouncementServiceImpl announcementService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final List<Announcement> announcements = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setEmail("owner@turamyzba.kz");
+        entityManager.persist(user);
+        for (int i = 0; i < ARRIVE_DATES.length; i++) {
+            Announcement announcement = Announcement.builder()
+                    .title("Announcement " + i)
+                    .region("Алматы")
+                    .arriveDate(ARRIVE_DATES[i])
+                    .cost(COSTS[i])
+                    .isArchived(false)
+                    .user(user)
+                    .build();
+            entityManager.persist(announcement);
+            announcements.add(announcement);
+        }
+        Announcement deleted = Announcement.builder().title("Deleted").region("Алматы").cost(50_000).isArchived(false).user(user).build();
+        entityManager.persist(deleted);
+        deleted.setIsDeleted(true);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void arriveDatePagesFollowKeyThenIdInBothDirections() {
+        for (Sort.Direction direction : Sort.Direction.values()) {
+            assertEquals(expectedOrder(Announcement::getArriveDate, direction), scrollAll(Sort.by(direction, "arriveDate"), 2),
+                    "arriveDate " + direction);
+        }
+    }
+
+    @Test
+    void costPagesFollowKeyThenIdInBothDirections() {
+        for (Sort.Direction direction : Sort.Direction.values()) {
+            assertEquals(expectedOrder(Announcement::getCost, direction), scrollAll(Sort.by(direction, "cost"), 3),
+                    "cost " + direction);
+        }
+    }
+
+    @Test
+    void pageBoundaryInsideRunOfEqualKeys() {
+        // Четыре объявления с ценой 50 000 подряд, граница страницы по одному проходит внутри них
+        assertEquals(expectedOrder(Announcement::getCost, Sort.Direction.ASC), scrollAll(Sort.by(Sort.Direction.ASC, "cost"), 1));
+    }
+
+    @Test
+    void cursorFromAnotherSortIsRejected() {
+        String cursor = announcementService.scrollRoommateListings(null, null, null, null, null,
+                Sort.by(Sort.Order.asc("cost")), "", 2).getNextCursor();
+
+        assertThrows(InvalidCursorException.class, () -> announcementService.scrollRoommateListings(null, null, null, null, null,
+                Sort.by(Sort.Order.desc("arriveDate")), cursor, 2));
+    }
+
+    private List<Long> scrollAll(Sort sort, int limit) {
+        List<Long> ids = new ArrayList<>();
+        String cursor = "";
+        for (int pages = 0; pages <= announcements.size(); pages++) {
+            AnnouncementSliceResponse slice = announcementService.scrollRoommateListings(null, null, null, null, null, sort, cursor, limit);
+            slice.getContent().stream().map(AnnouncementResponse::getId).forEach(ids::add);
+            if (!slice.getHasNext()) {
+                return ids;
+            }
+            assertFalse(slice.getContent().isEmpty());
+            cursor = slice.getNextCursor();
+        }
+        throw new AssertionError("Scrolling did not terminate: " + ids);
+    }
+
+    // Порядок Postgres: NULL-ы в конце при ASC и в начале при DESC, при равных ключах - id в том же направлении
+    private <T extends Comparable<T>> List<Long> expectedOrder(Function<Announcement, T> key, Sort.Direction direction) {
+        Comparator<Announcement> byKey = Comparator.comparing(key, Comparator.nullsLast(Comparator.<T>naturalOrder()));
+        Comparator<Announcement> order = byKey.thenComparing(Announcement::getId);
+        return announcements.stream()
+                .sorted(direction.isAscending() ? order : order.reversed())
+                .map(Announcement::getId)
+                .toList();
+    }
+}
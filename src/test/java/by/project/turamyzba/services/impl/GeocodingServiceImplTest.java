@@ -0,0 +1,125 @@
+package by.project.turamyzba.services.impl;
+
+import by.project.turamyzba.entities.GeocodeCacheEntry;
+import by.project.turamyzba.repositories.GeocodeCacheRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.client.ResponseCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.client.ExpectedCount.once;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.queryParam;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class GeocodingServiceImplTest {
+    private static final String API_URL = "http://2gis.stub";
+    private static final String POINT_RESPONSE = "{\"result\":{\"items\":[{\"point\":{\"lat\":43.238949,\"lon\":76.889709}}]}}";
+
+    private MockRestServiceServer server;
+    private GeocodeCacheRepository repository;
+    private SimpleMeterRegistry meterRegistry;
+    private GeocodingServiceImpl geocodingService;
+
+    @BeforeEach
+    void setUp() {
+        RestTemplate restTemplate = new RestTemplate();
+        server = MockRestServiceServer.bindTo(restTemplate).build();
+        repository = mock(GeocodeCacheRepository.class);
+        when(repository.findById(anyString())).thenReturn(Optional.empty());
+        meterRegistry = new SimpleMeterRegistry();
+        geocodingService = new GeocodingServiceImpl("key", API_URL, 100, restTemplate, new ObjectMapper(),
+                repository, mock(PlatformTransactionManager.class), meterRegistry);
+    }
+
+    @Test
+    void repeatedAddressIsServedFromMemory() {
+        server.expect(once(), requestTo(org.hamcrest.Matchers.startsWith(API_URL + "/geocode")))
+                .andExpect(queryParam("key", "key"))
+                .andRespond(withSuccess(POINT_RESPONSE, MediaType.APPLICATION_JSON));
+
+        String[] first = geocodingService.getCoordinates("Алматы, Алмалинский район, null, Абая 10");
+        String[] second = geocodingService.getCoordinates("  алматы,  Алмалинский район , null,Абая   10 ");
+
+        server.verify();
+        assertArrayEquals(new String[]{"43.238949", "76.889709"}, first);
+        assertArrayEquals(first, second);
+        verify(repository).save(any(GeocodeCacheEntry.class));
+        assertEquals(0.5, meterRegistry.get("geocode.cache.hit_ratio").gauge().value());
+    }
+
+    @Test
+    void storedAddressDoesNotCallRemote() {
+        when(repository.findById("алматы, абая 10")).thenReturn(Optional.of(GeocodeCacheEntry.builder()
+                .address("алматы, абая 10").latitude("43.1").longitude("76.1").build()));
+
+        assertArrayEquals(new String[]{"43.1", "76.1"}, geocodingService.getCoordinates("Алматы, Абая 10"));
+
+        server.verify();
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void concurrentLookupsShareOneRemoteCall() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ResponseCreator slowResponse = request -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return withSuccess(POINT_RESPONSE, MediaType.APPLICATION_JSON).createResponse(request);
+        };
+        server.expect(once(), requestTo(org.hamcrest.Matchers.startsWith(API_URL + "/geocode"))).andRespond(slowResponse);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String[]>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> geocodingService.getCoordinates("Астана, Кенесары 1")));
+            }
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<String[]> result : results) {
+                assertArrayEquals(new String[]{"43.238949", "76.889709"}, result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        server.verify();
+        assertEquals(1, meterRegistry.get("geocode.requests").tag("source", "remote").counter().count());
+    }
+
+    @Test
+    void unknownAddressIsNotCached() {
+        server.expect(once(), requestTo(org.hamcrest.Matchers.startsWith(API_URL + "/geocode")))
+                .andRespond(withSuccess("{\"result\":{\"items\":[]}}", MediaType.APPLICATION_JSON));
+
+        assertEquals(0, geocodingService.getCoordinates("Нет такого адреса").length);
+
+        server.verify();
+        verify(repository, never()).save(any());
+    }
+}
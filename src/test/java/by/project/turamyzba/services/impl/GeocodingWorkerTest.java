@@ -0,0 +1,232 @@
+package by.project.turamyzba.services.impl;
+
+import by.project.turamyzba.entities.Announcement;
+import by.project.turamyzba.entities.GeocodeStatus;
+import by.project.turamyzba.events.AnnouncementChangedEvent;
+import by.project.turamyzba.http.Deadline;
+import by.project.turamyzba.repositories.AnnouncementRepository;
+import by.project.turamyzba.services.GeocodingService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GeocodingWorkerTest {
+    private static final String[] COORDS = {"43.238949", "76.889709"};
+
+    private final Map<Long, Announcement> announcements = new ConcurrentHashMap<>();
+    private final AtomicInteger batches = new AtomicInteger();
+    private final List<Thread> drainThreads = new ArrayList<>();
+
+    private AnnouncementRepository announcementRepository;
+    private GeocodingService geocodingService;
+    private ApplicationEventPublisher eventPublisher;
+    private SimpleMeterRegistry meterRegistry;
+    private GeocodingWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        announcementRepository = mock(AnnouncementRepository.class);
+        geocodingService = mock(GeocodingService.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        meterRegistry = new SimpleMeterRegistry();
+        // Время в тесте не идет: каждый проход берет все PENDING, как будто задержка уже прошла
+        when(announcementRepository.findPendingGeocode(any(), any())).thenAnswer(invocation -> {
+            batches.incrementAndGet();
+            synchronized (drainThreads) {
+                drainThreads.add(Thread.currentThread());
+            }
+            return announcements.values().stream()
+                    .filter(announcement -> announcement.getGeocodeStatus() == GeocodeStatus.PENDING)
+                    .toList();
+        });
+        when(announcementRepository.findById(anyLong()))
+                .thenAnswer(invocation -> Optional.ofNullable(announcements.get((Long) invocation.getArgument(0))));
+        worker = new GeocodingWorker(2, 50, 4, 5, 12, 3000, announcementRepository, geocodingService, eventPublisher,
+                mock(PlatformTransactionManager.class), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        worker.shutdown();
+    }
+
+    @Test
+    void resolvedAddressGetsCoordinatesOncePerAddress() {
+        Announcement first = pending(1, "Абая 10");
+        Announcement second = pending(2, "Абая 10");
+        when(geocodingService.getCoordinates(anyString())).thenReturn(COORDS);
+
+        worker.drain();
+
+        verify(geocodingService, times(1)).getCoordinates(anyString());
+        for (Announcement announcement : List.of(first, second)) {
+            assertEquals(GeocodeStatus.RESOLVED, announcement.getGeocodeStatus());
+            assertEquals(43.238949, announcement.getLatitude());
+            assertEquals(76.889709, announcement.getLongitude());
+        }
+        verify(eventPublisher, times(2)).publishEvent(any(AnnouncementChangedEvent.class));
+        assertEquals(2, count("resolved"));
+    }
+
+    @Test
+    void transientErrorsRetryWithCappedExponentialBackoff() {
+        Announcement announcement = pending(1, "Абая 10");
+        when(geocodingService.getCoordinates(anyString())).thenThrow(new IllegalStateException("503"));
+
+        // 5 с, 10 с, затем потолок 12 с вместо 20 с
+        for (long expectedSeconds : new long[]{5, 10, 12}) {
+            LocalDateTime before = LocalDateTime.now();
+            worker.drain();
+            assertEquals(GeocodeStatus.PENDING, announcement.getGeocodeStatus());
+            Duration delay = Duration.between(before, announcement.getGeocodeNextAttemptAt());
+            assertTrue(delay.compareTo(Duration.ofSeconds(expectedSeconds)) >= 0
+                    && delay.compareTo(Duration.ofSeconds(expectedSeconds + 1)) < 0, delay.toString());
+        }
+        assertEquals(3, announcement.getGeocodeAttempts());
+        assertEquals(3, count("retry"));
+
+        // Четвертая попытка - последняя
+        worker.drain();
+        assertEquals(GeocodeStatus.FAILED, announcement.getGeocodeStatus());
+        assertEquals(4, announcement.getGeocodeAttempts());
+        assertNull(announcement.getGeocodeNextAttemptAt());
+        assertEquals(1, count("failed"));
+
+        worker.drain();
+        verify(geocodingService, times(4)).getCoordinates(anyString());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void lookupRunsWithinWorkerDeadline() {
+        Announcement announcement = pending(1, "Абая 10");
+        List<Duration> remaining = new ArrayList<>();
+        when(geocodingService.getCoordinates(anyString())).thenAnswer(invocation -> {
+            remaining.add(Deadline.remaining(Duration.ofMinutes(1)));
+            return COORDS;
+        });
+
+        worker.drain();
+
+        assertEquals(GeocodeStatus.RESOLVED, announcement.getGeocodeStatus());
+        assertEquals(1, remaining.size());
+        assertTrue(remaining.get(0).compareTo(Duration.ofSeconds(3)) <= 0, remaining.get(0).toString());
+    }
+
+    @Test
+    void addressNotFoundFailsWithoutRetry() {
+        Announcement announcement = pending(1, "Несуществующая 1");
+        when(geocodingService.getCoordinates(anyString())).thenReturn(new String[0]);
+
+        worker.drain();
+
+        assertEquals(GeocodeStatus.FAILED, announcement.getGeocodeStatus());
+        assertEquals(1, announcement.getGeocodeAttempts());
+        assertNull(announcement.getGeocodeNextAttemptAt());
+        assertEquals(0, count("retry"));
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void resultForChangedAddressIsDropped() {
+        Announcement announcement = pending(1, "Абая 10");
+        when(geocodingService.getCoordinates(anyString())).thenAnswer(invocation -> {
+            // Пользователь сменил адрес, пока шел запрос к 2GIS
+            announcement.setAddress("Абая 12");
+            return COORDS;
+        });
+
+        worker.drain();
+
+        assertEquals(GeocodeStatus.PENDING, announcement.getGeocodeStatus());
+        assertNull(announcement.getLatitude());
+        assertNull(announcement.getGeocodeAttempts());
+        verify(announcementRepository, never()).save(any());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void triggersRunOnWorkerThreadAndCoalesce() throws InterruptedException {
+        Announcement announcement = pending(1, "Абая 10");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(geocodingService.getCoordinates(anyString())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return COORDS;
+        });
+
+        worker.onAnnouncementChanged(new AnnouncementChangedEvent(announcement));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // Пока идет проход, десять новых объявлений дают один следующий проход, а не десять
+        for (int i = 0; i < 10; i++) {
+            worker.onAnnouncementChanged(new AnnouncementChangedEvent(pending(100 + i, "Абая 10")));
+        }
+        release.countDown();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (announcements.values().stream().anyMatch(a -> a.getGeocodeStatus() == GeocodeStatus.PENDING)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(100);
+        assertEquals(2, batches.get());
+        synchronized (drainThreads) {
+            assertTrue(drainThreads.stream().noneMatch(thread -> thread instanceof ForkJoinWorkerThread));
+            assertTrue(drainThreads.stream().allMatch(thread -> thread.getName().equals("geocode-drain")));
+        }
+
+        // Событие без PENDING ничего не запускает
+        announcement.setGeocodeStatus(GeocodeStatus.RESOLVED);
+        worker.onAnnouncementChanged(new AnnouncementChangedEvent(announcement));
+        Thread.sleep(100);
+        assertEquals(2, batches.get());
+        assertFalse(announcements.values().stream().anyMatch(a -> a.getGeocodeStatus() != GeocodeStatus.RESOLVED));
+    }
+
+    private Announcement pending(long id, String address) {
+        Announcement announcement = Announcement.builder()
+                .id(id)
+                .region("Алматы")
+                .district("Алмалинский")
+                .address(address)
+                .geocodeStatus(GeocodeStatus.PENDING)
+                .isDeleted(false)
+                .isArchived(false)
+                .build();
+        announcements.put(id, announcement);
+        return announcement;
+    }
+
+    private double count(String result) {
+        return meterRegistry.counter("geocode.pending.processed", "result", result).count();
+    }
+}
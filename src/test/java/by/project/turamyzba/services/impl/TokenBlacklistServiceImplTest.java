@@ -0,0 +1,117 @@
+package by.project.turamyzba.services.impl;
+
+import by.project.turamyzba.jwt.TokenDigest;
+import by.project.turamyzba.repositories.RevokedTokenRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.globally_quoted_identifiers=true")
+// Каждый экземпляр списка сам открывает транзакции, как два узла над одной БД
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TokenBlacklistServiceImplTest {
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private TokenBlacklistServiceImpl blacklist;
+
+    @BeforeEach
+    void setUp() {
+        revokedTokenRepository.deleteAll();
+        blacklist = node(meterRegistry);
+    }
+
+    @Test
+    void revokedTokensAreFoundAndOthersPassTheFilter() {
+        for (int i = 0; i < 500; i++) {
+            blacklist.addTokenToBlacklist("revoked-" + i, inSeconds(60));
+        }
+
+        for (int i = 0; i < 500; i++) {
+            assertTrue(blacklist.isTokenBlacklisted("revoked-" + i));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertFalse(blacklist.isTokenBlacklisted("active-" + i));
+        }
+    }
+
+    @Test
+    void expiredTokensAreEvictedAndLiveOnesSurviveFilterRebuild() throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            blacklist.addTokenToBlacklist("short-" + i, new Date(System.currentTimeMillis() + 50));
+        }
+        blacklist.addTokenToBlacklist("long", inSeconds(60));
+
+        Thread.sleep(100);
+        blacklist.evictExpired();
+
+        assertEquals(1, meterRegistry.get("security.blacklist.size").gauge().value());
+        assertFalse(blacklist.isTokenBlacklisted("short-0"));
+        assertTrue(blacklist.isTokenBlacklisted("long"));
+    }
+
+    @Test
+    void revocationReachesOtherNodesAndSurvivesRestart() {
+        SimpleMeterRegistry otherRegistry = new SimpleMeterRegistry();
+        TokenBlacklistServiceImpl other = node(otherRegistry);
+
+        blacklist.addTokenToBlacklist("logged-out", inSeconds(60));
+        assertFalse(other.isTokenBlacklisted("logged-out"));
+
+        other.pollRevocations();
+        assertTrue(other.isTokenBlacklisted("logged-out"));
+        assertEquals(1, otherRegistry.get("security.blacklist.propagation_lag").timer().count());
+
+        TokenBlacklistServiceImpl restarted = node(new SimpleMeterRegistry());
+        assertTrue(restarted.isTokenBlacklisted("logged-out"));
+    }
+
+    @Test
+    void revocationFromNodeInAnotherTimeZoneIsPolled() {
+        TimeZone defaultZone = TimeZone.getDefault();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+            TokenBlacklistServiceImpl other = node(new SimpleMeterRegistry());
+
+            // Узел, чьи часы идут по зоне позади опрашивающего, не должен оказаться до курсора опроса
+            TimeZone.setDefault(TimeZone.getTimeZone("America/Los_Angeles"));
+            Date expiresAt = inSeconds(60);
+            blacklist.addTokenToBlacklist("logged-out", expiresAt);
+
+            TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+            assertEquals(expiresAt.toInstant(),
+                    revokedTokenRepository.findById(TokenDigest.of("logged-out").toHex()).orElseThrow().getExpiresAt());
+            other.pollRevocations();
+            assertTrue(other.isTokenBlacklisted("logged-out"));
+        } finally {
+            TimeZone.setDefault(defaultZone);
+        }
+    }
+
+    private TokenBlacklistServiceImpl node(SimpleMeterRegistry registry) {
+        TokenBlacklistServiceImpl node = new TokenBlacklistServiceImpl(1_000, 10_000, revokedTokenRepository, transactionManager, registry);
+        node.pollRevocations();
+        return node;
+    }
+
+    private static Date inSeconds(int seconds) {
+        return new Date(System.currentTimeMillis() + seconds * 1000L);
+    }
+}
@@ -0,0 +1,57 @@
+package by.project.turamyzba.services.impl;
+
+import by.project.turamyzba.entities.User;
+import by.project.turamyzba.jwt.AuthenticatedUser;
+import by.project.turamyzba.jwt.PrincipalCache;
+import by.project.turamyzba.repositories.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserServiceImplTest {
+    private static final String EMAIL = "owner@turamyzba.kz";
+    private static final String HASH = "$2a$10$7EqJtq98hPqEX7fNZaFWoOhi5BWX4Z1/7pIqx8N9lQ9QFZ4n1yU5K";
+
+    private UserServiceImpl userService;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setId(1L);
+        user.setEmail(EMAIL);
+        user.setPassword(HASH);
+        user.setGender("Женщина");
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(user));
+        userService = new UserServiceImpl(userRepository, mock(PasswordEncoder.class), mock(EmailServiceImpl.class),
+                new PrincipalCache(60, 100, new SimpleMeterRegistry()), mock(ApplicationEventPublisher.class));
+    }
+
+    @Test
+    void cachedPrincipalHasNoPasswordHash() {
+        AuthenticatedUser principal = userService.loadPrincipal(EMAIL);
+
+        assertEquals(1L, principal.getId());
+        assertEquals("Женщина", principal.getGender());
+        assertNull(principal.getPassword());
+        assertSame(principal, userService.loadPrincipal(EMAIL));
+    }
+
+    @Test
+    void passwordLoginStillGetsHash() {
+        // Уже закэшированный principal без хэша не мешает входу по паролю
+        userService.loadPrincipal(EMAIL);
+
+        assertEquals(HASH, userService.loadUserByUsername(EMAIL).getPassword());
+    }
+}